@@ -0,0 +1,94 @@
+package com.unact.yandexmapkit;
+
+import com.google.gson.Gson;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.map.CameraPosition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encoding events sent to Dart: a JSON string per marker event and camera change, against the
+ * per-frame packed batch built by the map controller and packed camera positions.
+ * Writing the result with the channel codec is not included.
+ */
+@State(Scope.Benchmark)
+public class EventEncodingBenchmark {
+    private static final Gson gson = new Gson();
+
+    @Param({"1", "100"})
+    int events;
+
+    private Point[] points;
+    private CameraPosition position;
+
+    @Setup
+    public void setUp() {
+        points = new Point[events];
+
+        for (int i = 0; i < events; i++) {
+            points[i] = new Point(55.75 + i * 0.001, 37.62 - i * 0.001);
+        }
+
+        position = new CameraPosition(new Point(55.75, 37.62), 12.5f, 30, 10);
+    }
+
+    @Benchmark
+    public void jsonMarkerEvents(Blackhole blackhole) {
+        for (int i = 0; i < events; i++) {
+            blackhole.consume(gson.toJson(new YandexJsonEvents.JsonMapObjectEventWithPoint(String.valueOf(i), points[i])));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> packedMarkerEvents() {
+        int[] types = new int[16];
+        int[] ids = new int[16];
+        double[] coordinates = new double[32];
+        int count = 0;
+
+        for (int i = 0; i < events; i++) {
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+                coordinates = Arrays.copyOf(coordinates, count * 4);
+            }
+
+            types[count] = 0;
+            ids[count] = i;
+            coordinates[count * 2] = points[i].getLatitude();
+            coordinates[count * 2 + 1] = points[i].getLongitude();
+            count++;
+        }
+
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("seq", 1);
+        arguments.put("types", Arrays.copyOf(types, count));
+        arguments.put("ids", Arrays.copyOf(ids, count));
+        arguments.put("points", Arrays.copyOf(coordinates, count * 2));
+
+        return arguments;
+    }
+
+    @Benchmark
+    public String jsonCameraPosition() {
+        return gson.toJson(new YandexJsonEvents.JsonPositionChangedEvent(position, false));
+    }
+
+    @Benchmark
+    public Map<String, Object> packedCameraPosition() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("position", YandexBinaryConversion.fromCameraPosition(position));
+        arguments.put("finished", false);
+
+        return arguments;
+    }
+}
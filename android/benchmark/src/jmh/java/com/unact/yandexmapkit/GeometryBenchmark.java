@@ -0,0 +1,140 @@
+package com.unact.yandexmapkit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Native marker clustering, spatial index and snapshot queries and track thinning over many points.
+ */
+@State(Scope.Benchmark)
+public class GeometryBenchmark {
+    @Param({"100000"})
+    int count;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] track;
+    private YandexSpatialIndex<Integer> index;
+    private YandexPointSnapshot snapshot;
+    private ExecutorService executor;
+    private double[][] zone;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+
+        latitudes = new double[count];
+        longitudes = new double[count];
+        track = new double[count * 2];
+        index = new YandexSpatialIndex<>();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        double latitude = 55.75;
+        double longitude = 37.62;
+
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 55 + random.nextDouble();
+            longitudes[i] = 37 + random.nextDouble();
+            index.insert(latitudes[i], longitudes[i], i);
+
+            latitude += 0.00001 + random.nextGaussian() * 0.00001;
+            longitude += random.nextGaussian() * 0.00001;
+            track[i * 2] = latitude;
+            track[i * 2 + 1] = longitude;
+        }
+
+        int[] ids = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            ids[i] = i;
+        }
+
+        snapshot = new YandexPointSnapshot(
+                ids,
+                latitudes.clone(),
+                longitudes.clone(),
+                count,
+                Runtime.getRuntime().availableProcessors()
+        );
+
+        zone = new double[][] {new double[128]};
+
+        for (int i = 0; i < 64; i++) {
+            double angle = Math.PI * 2 * i / 63;
+            double radius = 0.3 + 0.1 * Math.sin(angle * 5);
+
+            zone[0][i * 2] = 55.5 + Math.sin(angle) * radius;
+            zone[0][i * 2 + 1] = 37.5 + Math.cos(angle) * radius;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public YandexMarkerClusterer cluster() {
+        return new YandexMarkerClusterer(latitudes, longitudes, count, 64);
+    }
+
+    @Benchmark
+    public void viewportQuery(final Blackhole blackhole) {
+        index.query(55.4, 37.4, 55.6, 37.6, new YandexSpatialIndex.Visitor<Integer>() {
+            @Override
+            public void visit(Integer value, double latitude, double longitude) {
+                blackhole.consume(value);
+            }
+        });
+    }
+
+    @Benchmark
+    public int[] pointsInPolygon() throws InterruptedException {
+        final int[][] result = new int[1][];
+
+        synchronized (result) {
+            snapshot.queryPolygon(zone, executor, new YandexPointSnapshot.Callback() {
+                @Override
+                public void onResult(int[] ids) {
+                    synchronized (result) {
+                        result[0] = ids;
+                        result.notify();
+                    }
+                }
+            });
+
+            while (result[0] == null) {
+                result.wait();
+            }
+        }
+
+        return result[0];
+    }
+
+    @Benchmark
+    public int[] nearest() {
+        return snapshot.nearest(55.5, 37.5, 10, Double.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public YandexPolylineBuffer appendWithThinning() {
+        YandexPolylineBuffer buffer = new YandexPolylineBuffer(0, 5000, 1);
+        double[] chunk = new double[200];
+
+        for (int i = 0; i + chunk.length <= track.length; i += chunk.length) {
+            System.arraycopy(track, i, chunk, 0, chunk.length);
+            buffer.append(chunk);
+        }
+
+        return buffer;
+    }
+}
@@ -0,0 +1,71 @@
+package com.unact.yandexmapkit;
+
+import com.google.gson.Gson;
+import com.yandex.mapkit.geometry.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Decoding the points of a marker batch: one Gson parsed JsonPoint per marker, as marker#init
+ * used to send them, against packed coordinates of marker#addAll.
+ */
+@State(Scope.Benchmark)
+public class MarkerDecodeBenchmark {
+    private static final Gson gson = new Gson();
+
+    @Param({"1000", "10000"})
+    int count;
+
+    private String[] jsonPoints;
+    private double[] coordinates;
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+
+        jsonPoints = new String[count];
+        coordinates = new double[count * 2];
+
+        for (int i = 0; i < count; i++) {
+            double latitude = 55 + random.nextDouble();
+            double longitude = 37 + random.nextDouble();
+
+            jsonPoints[i] = gson.toJson(new YandexJsonConversion.JsonPoint(latitude, longitude));
+            coordinates[i * 2] = latitude;
+            coordinates[i * 2 + 1] = longitude;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(coordinates.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.asDoubleBuffer().put(coordinates);
+        bytes = buffer.array();
+    }
+
+    @Benchmark
+    public void json(Blackhole blackhole) {
+        for (String jsonPoint : jsonPoints) {
+            blackhole.consume(gson.fromJson(jsonPoint, YandexJsonConversion.JsonPoint.class).toPoint());
+        }
+    }
+
+    @Benchmark
+    public List<Point> packedDoubles() {
+        return YandexBinaryConversion.toPoints(coordinates);
+    }
+
+    @Benchmark
+    public List<Point> packedBytes() {
+        return YandexBinaryConversion.toPoints(bytes);
+    }
+}
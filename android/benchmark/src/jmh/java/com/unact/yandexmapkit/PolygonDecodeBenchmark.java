@@ -0,0 +1,77 @@
+package com.unact.yandexmapkit;
+
+import com.google.gson.Gson;
+import com.yandex.mapkit.geometry.Polygon;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Decoding a polygon#add call: the JSON string read into LinkedLists of JsonPoint by Gson,
+ * against packed outer ring coordinates.
+ */
+@State(Scope.Benchmark)
+public class PolygonDecodeBenchmark {
+    private static final Gson gson = new Gson();
+
+    @Param({"100000"})
+    int vertices;
+
+    private String json;
+    private Map<String, Object> packed;
+    private double[][] rings;
+
+    @Setup
+    public void setUp() {
+        LinkedList<YandexJsonConversion.JsonPoint> outerPoints = new LinkedList<>();
+        double[] coordinates = new double[vertices * 2];
+
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = 0.1 + 0.01 * Math.sin(angle * 50);
+            double latitude = 55.75 + radius * Math.sin(angle);
+            double longitude = 37.62 + radius * Math.cos(angle);
+
+            outerPoints.add(new YandexJsonConversion.JsonPoint(latitude, longitude));
+            coordinates[i * 2] = latitude;
+            coordinates[i * 2 + 1] = longitude;
+        }
+
+        json = gson.toJson(new YandexJsonConversion.JsonPolygon(
+                outerPoints,
+                new LinkedList<YandexJsonConversion.JsonPoint>(),
+                0x800000ff,
+                0xff0000ff,
+                2,
+                1
+        ));
+
+        packed = new HashMap<>();
+        packed.put("outerPoints", coordinates);
+        packed.put("innerPoints", new double[0]);
+
+        rings = new double[][] { coordinates };
+    }
+
+    @Benchmark
+    public Polygon json() {
+        return gson.fromJson(json, YandexJsonConversion.JsonPolygon.class).getPolygon();
+    }
+
+    @Benchmark
+    public Polygon packed() {
+        return YandexBinaryConversion.toPolygon(packed);
+    }
+
+    @Benchmark
+    public YandexPolygonSimplifier simplify() {
+        return new YandexPolygonSimplifier(rings, 1);
+    }
+}
@@ -0,0 +1,32 @@
+package com.unact.yandexmapkit;
+
+import com.unact.yandexmapkit.YandexJsonConversion.JsonPoint;
+import com.unact.yandexmapkit.YandexJsonConversion.JsonPosition;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.map.CameraPosition;
+
+/**
+ * Marker and camera events as they were sent to Dart in JSON before packed events, kept as the
+ * baseline of EventEncodingBenchmark.
+ */
+class YandexJsonEvents {
+    static class JsonMapObjectEventWithPoint {
+        String id;
+        JsonPoint point;
+
+        JsonMapObjectEventWithPoint(String id, Point point) {
+            this.id = id;
+            this.point = new JsonPoint(point);
+        }
+    }
+
+    static class JsonPositionChangedEvent {
+        JsonPosition position;
+        boolean finished;
+
+        JsonPositionChangedEvent(CameraPosition position, boolean finished) {
+            this.position = new JsonPosition(position);
+            this.finished = finished;
+        }
+    }
+}
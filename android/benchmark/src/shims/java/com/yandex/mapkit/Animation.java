@@ -0,0 +1,27 @@
+package com.yandex.mapkit;
+
+/**
+ * Stand-in for the MapKit class with the members used by the shared sources.
+ */
+public class Animation {
+    public enum Type {
+        SMOOTH,
+        LINEAR
+    }
+
+    private final Type type;
+    private final float duration;
+
+    public Animation(Type type, float duration) {
+        this.type = type;
+        this.duration = duration;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public float getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,22 @@
+package com.yandex.mapkit.geometry;
+
+/**
+ * Stand-in for the MapKit class with the members used by the shared sources.
+ */
+public class BoundingBox {
+    private final Point southWest;
+    private final Point northEast;
+
+    public BoundingBox(Point southWest, Point northEast) {
+        this.southWest = southWest;
+        this.northEast = northEast;
+    }
+
+    public Point getSouthWest() {
+        return southWest;
+    }
+
+    public Point getNorthEast() {
+        return northEast;
+    }
+}
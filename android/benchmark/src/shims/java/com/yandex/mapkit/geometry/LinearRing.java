@@ -0,0 +1,18 @@
+package com.yandex.mapkit.geometry;
+
+import java.util.List;
+
+/**
+ * Stand-in for the MapKit class with the members used by the shared sources.
+ */
+public class LinearRing {
+    private final List<Point> points;
+
+    public LinearRing(List<Point> points) {
+        this.points = points;
+    }
+
+    public List<Point> getPoints() {
+        return points;
+    }
+}
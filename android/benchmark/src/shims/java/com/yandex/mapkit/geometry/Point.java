@@ -0,0 +1,22 @@
+package com.yandex.mapkit.geometry;
+
+/**
+ * Stand-in for the MapKit class with the members used by the shared sources.
+ */
+public class Point {
+    private final double latitude;
+    private final double longitude;
+
+    public Point(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+}
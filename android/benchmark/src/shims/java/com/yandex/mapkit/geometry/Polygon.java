@@ -0,0 +1,24 @@
+package com.yandex.mapkit.geometry;
+
+import java.util.List;
+
+/**
+ * Stand-in for the MapKit class with the members used by the shared sources.
+ */
+public class Polygon {
+    private final LinearRing outerRing;
+    private final List<LinearRing> innerRings;
+
+    public Polygon(LinearRing outerRing, List<LinearRing> innerRings) {
+        this.outerRing = outerRing;
+        this.innerRings = innerRings;
+    }
+
+    public LinearRing getOuterRing() {
+        return outerRing;
+    }
+
+    public List<LinearRing> getInnerRings() {
+        return innerRings;
+    }
+}
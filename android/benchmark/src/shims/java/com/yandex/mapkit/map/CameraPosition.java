@@ -0,0 +1,36 @@
+package com.yandex.mapkit.map;
+
+import com.yandex.mapkit.geometry.Point;
+
+/**
+ * Stand-in for the MapKit class with the members used by the shared sources.
+ */
+public class CameraPosition {
+    private final Point target;
+    private final float zoom;
+    private final float azimuth;
+    private final float tilt;
+
+    public CameraPosition(Point target, float zoom, float azimuth, float tilt) {
+        this.target = target;
+        this.zoom = zoom;
+        this.azimuth = azimuth;
+        this.tilt = tilt;
+    }
+
+    public Point getTarget() {
+        return target;
+    }
+
+    public float getZoom() {
+        return zoom;
+    }
+
+    public float getAzimuth() {
+        return azimuth;
+    }
+
+    public float getTilt() {
+        return tilt;
+    }
+}
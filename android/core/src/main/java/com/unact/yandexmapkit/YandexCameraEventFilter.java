@@ -0,0 +1,132 @@
+package com.unact.yandexmapkit;
+
+import java.util.Map;
+
+/**
+ * Decides which camera position changes are worth sending to Dart.
+ *
+ * Intermediate events are rate limited and must move the camera by at least one of the configured
+ * thresholds since the last sent event. Finished events are not rate limited and are compared
+ * with the last sent finished event, so a gesture always ends with one finished event unless
+ * the camera settled next to where it was before.
+ */
+class YandexCameraEventFilter {
+    private static final double EARTH_RADIUS = 6371000;
+
+    private boolean finishedOnly;
+    private long minInterval;
+    private double minZoomDelta;
+    private double minTargetDelta;
+    private double minAzimuthDelta;
+
+    private boolean hasLast;
+    private long lastTime;
+    private double lastLatitude;
+    private double lastLongitude;
+    private double lastZoom;
+    private double lastAzimuth;
+
+    private boolean hasLastFinished;
+    private double lastFinishedLatitude;
+    private double lastFinishedLongitude;
+    private double lastFinishedZoom;
+    private double lastFinishedAzimuth;
+
+    void configure(Map<?, ?> params) {
+        finishedOnly = "finished".equals(params.get("mode"));
+
+        Number maxEventsPerSecond = (Number) params.get("maxEventsPerSecond");
+        minInterval = maxEventsPerSecond != null && maxEventsPerSecond.intValue() > 0
+                ? 1000 / maxEventsPerSecond.intValue()
+                : 0;
+
+        minZoomDelta = doubleOrZero(params.get("minZoomDelta"));
+        minTargetDelta = doubleOrZero(params.get("minTargetDelta"));
+        minAzimuthDelta = doubleOrZero(params.get("minAzimuthDelta"));
+
+        hasLast = false;
+        hasLastFinished = false;
+    }
+
+    /**
+     * @param time monotonic time in milliseconds
+     * @return true if the event should be sent; the event is then remembered as the last sent one
+     */
+    boolean accept(double latitude, double longitude, double zoom, double azimuth, boolean finished, long time) {
+        if (finished) {
+            if (hasLastFinished && !exceedsThresholds(
+                    latitude - lastFinishedLatitude,
+                    longitude - lastFinishedLongitude,
+                    lastFinishedLatitude,
+                    zoom - lastFinishedZoom,
+                    azimuth - lastFinishedAzimuth
+            )) {
+                return false;
+            }
+
+            hasLastFinished = true;
+            lastFinishedLatitude = latitude;
+            lastFinishedLongitude = longitude;
+            lastFinishedZoom = zoom;
+            lastFinishedAzimuth = azimuth;
+        } else {
+            if (finishedOnly) {
+                return false;
+            }
+
+            if (hasLast && time - lastTime < minInterval) {
+                return false;
+            }
+
+            if (hasLast && !exceedsThresholds(
+                    latitude - lastLatitude,
+                    longitude - lastLongitude,
+                    lastLatitude,
+                    zoom - lastZoom,
+                    azimuth - lastAzimuth
+            )) {
+                return false;
+            }
+        }
+
+        hasLast = true;
+        lastTime = time;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastZoom = zoom;
+        lastAzimuth = azimuth;
+
+        return true;
+    }
+
+    private boolean exceedsThresholds(double dLatitude, double dLongitude, double latitude, double dZoom, double dAzimuth) {
+        if (minZoomDelta <= 0 && minTargetDelta <= 0 && minAzimuthDelta <= 0) {
+            return true;
+        }
+
+        if (minZoomDelta > 0 && Math.abs(dZoom) >= minZoomDelta) {
+            return true;
+        }
+
+        if (minAzimuthDelta > 0) {
+            double delta = Math.abs(dAzimuth) % 360;
+
+            if (Math.min(delta, 360 - delta) >= minAzimuthDelta) {
+                return true;
+            }
+        }
+
+        if (minTargetDelta > 0) {
+            double x = Math.toRadians(dLongitude) * Math.cos(Math.toRadians(latitude));
+            double y = Math.toRadians(dLatitude);
+
+            return Math.sqrt(x * x + y * y) * EARTH_RADIUS >= minTargetDelta;
+        }
+
+        return false;
+    }
+
+    private static double doubleOrZero(Object o) {
+        return o != null ? ((Number) o).doubleValue() : 0;
+    }
+}
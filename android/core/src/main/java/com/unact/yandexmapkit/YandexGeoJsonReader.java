@@ -0,0 +1,267 @@
+package com.unact.yandexmapkit;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming reader of points and polygons in GeoJSON.
+ *
+ * Only the coordinates of the geometry being read are held in memory, so a file of any size is read
+ * with flat memory. Points are passed to the listener as they are read, polygons as flat
+ * latitude/longitude rings with the outer ring first. Properties and other geometry types are
+ * skipped. Not thread safe.
+ */
+class YandexGeoJsonReader {
+    interface Listener {
+        void onPoint(double latitude, double longitude) throws IOException;
+
+        void onPolygon(double[][] rings) throws IOException;
+    }
+
+    private final CountingInputStream stream;
+    private final Listener listener;
+
+    private double[] coordinates = new double[64];
+    private int count;
+    private int skipped;
+
+    YandexGeoJsonReader(InputStream stream, Listener listener) {
+        this.stream = new CountingInputStream(stream);
+        this.listener = listener;
+    }
+
+    /**
+     * Bytes read from the stream so far, slightly ahead of the parsed position because of buffering.
+     */
+    long bytesRead() {
+        return stream.count;
+    }
+
+    /**
+     * Number of geometries of types other than points and polygons.
+     */
+    int skipped() {
+        return skipped;
+    }
+
+    void read() throws IOException {
+        JsonReader reader = new JsonReader(
+                new BufferedReader(new InputStreamReader(stream, Charset.forName("UTF-8")), 16384)
+        );
+
+        readObject(reader);
+    }
+
+    /**
+     * Reads a geometry, feature or collection, passing its geometries to the listener.
+     */
+    private void readObject(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return;
+        }
+
+        String type = null;
+        Object geometry = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    type = reader.nextString();
+                    break;
+                case "coordinates":
+                    geometry = readCoordinates(reader);
+                    break;
+                case "geometry":
+                    readObject(reader);
+                    break;
+                case "features":
+                case "geometries":
+                    reader.beginArray();
+
+                    while (reader.hasNext()) {
+                        readObject(reader);
+                    }
+
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+
+        reader.endObject();
+
+        if (geometry != null) {
+            emit(type, geometry);
+        }
+    }
+
+    /**
+     * Reads a coordinates array. A position or a list of positions is returned as a flat
+     * latitude/longitude array, deeper arrays as lists of what their items are read as.
+     */
+    private Object readCoordinates(JsonReader reader) throws IOException {
+        reader.beginArray();
+
+        return readOpenedCoordinates(reader);
+    }
+
+    /**
+     * Reads the rest of a coordinates array after its opening bracket.
+     */
+    private Object readOpenedCoordinates(JsonReader reader) throws IOException {
+        List<Object> items = new ArrayList<>();
+
+        if (!reader.hasNext()) {
+            reader.endArray();
+
+            return items;
+        }
+
+        count = 0;
+
+        if (reader.peek() == JsonToken.NUMBER) {
+            readPosition(reader);
+
+            return Arrays.copyOf(coordinates, count);
+        }
+
+        reader.beginArray();
+
+        if (reader.peek() == JsonToken.NUMBER) {
+            readPosition(reader);
+
+            while (reader.hasNext()) {
+                reader.beginArray();
+                readPosition(reader);
+            }
+
+            reader.endArray();
+
+            return Arrays.copyOf(coordinates, count);
+        }
+
+        items.add(readOpenedCoordinates(reader));
+
+        while (reader.hasNext()) {
+            items.add(readCoordinates(reader));
+        }
+
+        reader.endArray();
+
+        return items;
+    }
+
+    /**
+     * Reads the rest of a position after its opening bracket, ignoring altitude.
+     */
+    private void readPosition(JsonReader reader) throws IOException {
+        double longitude = reader.nextDouble();
+        double latitude = reader.nextDouble();
+
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+
+        reader.endArray();
+
+        if (count + 2 > coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+
+        coordinates[count++] = latitude;
+        coordinates[count++] = longitude;
+    }
+
+    private void emit(String type, Object geometry) throws IOException {
+        if (("Point".equals(type) || "MultiPoint".equals(type)) && geometry instanceof double[]) {
+            double[] points = (double[]) geometry;
+
+            for (int i = 0; i + 1 < points.length; i += 2) {
+                listener.onPoint(points[i], points[i + 1]);
+            }
+        } else if ("Polygon".equals(type) && geometry instanceof List) {
+            emitPolygon((List<?>) geometry);
+        } else if ("MultiPolygon".equals(type) && geometry instanceof List) {
+            for (Object polygon : (List<?>) geometry) {
+                if (polygon instanceof List) {
+                    emitPolygon((List<?>) polygon);
+                } else {
+                    skipped++;
+                }
+            }
+        } else {
+            skipped++;
+        }
+    }
+
+    private void emitPolygon(List<?> rings) throws IOException {
+        double[][] result = new double[rings.size()][];
+
+        for (int i = 0; i < result.length; i++) {
+            if (!(rings.get(i) instanceof double[])) {
+                skipped++;
+                return;
+            }
+
+            result[i] = (double[]) rings.get(i);
+        }
+
+        if (result.length > 0) {
+            listener.onPolygon(result);
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b >= 0) {
+                count++;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+
+            if (read > 0) {
+                count += read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+
+            count += skipped;
+
+            return skipped;
+        }
+    }
+}
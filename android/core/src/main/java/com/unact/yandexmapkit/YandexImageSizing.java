@@ -0,0 +1,30 @@
+package com.unact.yandexmapkit;
+
+/**
+ * Icon sizing math, kept apart from Bitmap handling so it runs on a plain JVM.
+ */
+class YandexImageSizing {
+    /**
+     * Largest size with the aspect ratio of width x height that fits into targetW x targetH.
+     */
+    static int[] fitSize(int width, int height, int targetW, int targetH) {
+        double widthRatio = (double) targetW / (double) width;
+        double heightRatio = (double) targetH / (double) height;
+        double ratio = widthRatio > heightRatio ? heightRatio : widthRatio;
+
+        return new int[] { (int) (width * ratio), (int) (height * ratio) };
+    }
+
+    /**
+     * Largest power of two sample size that still decodes to at least targetW x targetH.
+     */
+    static int sampleSize(int width, int height, int targetW, int targetH) {
+        int sampleSize = 1;
+
+        while (width / (sampleSize * 2) >= targetW && height / (sampleSize * 2) >= targetH) {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+}
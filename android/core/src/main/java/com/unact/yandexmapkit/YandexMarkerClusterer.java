@@ -0,0 +1,156 @@
+package com.unact.yandexmapkit;
+
+import java.util.Arrays;
+
+/**
+ * Grid clustering of points prepared for every zoom level at once.
+ *
+ * Points are projected to Web Mercator pixels at MAX_ZOOM and bucketed into cells of cellSize
+ * pixels. A cell at zoom z is the union of four cells at zoom z + 1, so clusters nest between
+ * levels and switching zoom never has to look at the points again.
+ */
+class YandexMarkerClusterer {
+    static final int MAX_ZOOM = 21;
+
+    static class Level {
+        final int clusterCount;
+        final double[] latitudes;
+        final double[] longitudes;
+        final int[] counts;
+        final int[] clusterOfPoint;
+
+        Level(int clusterCount, double[] latitudes, double[] longitudes, int[] counts, int[] clusterOfPoint) {
+            this.clusterCount = clusterCount;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.counts = counts;
+            this.clusterOfPoint = clusterOfPoint;
+        }
+
+        int[] members(int cluster) {
+            int[] members = new int[counts[cluster]];
+            int count = 0;
+
+            for (int i = 0; i < clusterOfPoint.length && count < members.length; i++) {
+                if (clusterOfPoint[i] == cluster) {
+                    members[count++] = i;
+                }
+            }
+
+            return members;
+        }
+    }
+
+    private final Level[] levels = new Level[MAX_ZOOM + 1];
+
+    YandexMarkerClusterer(double[] latitudes, double[] longitudes, int count, int cellSize) {
+        long[] cellX = new long[count];
+        long[] cellY = new long[count];
+        double worldSize = 256.0 * (1L << MAX_ZOOM);
+
+        for (int i = 0; i < count; i++) {
+            double sin = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, latitudes[i]))));
+            double x = (longitudes[i] + 180) / 360 * worldSize;
+            double y = (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldSize;
+
+            cellX[i] = (long) (x / cellSize);
+            cellY[i] = (long) (y / cellSize);
+        }
+
+        LongIntMap cells = new LongIntMap(count);
+
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            int shift = MAX_ZOOM - zoom;
+            int[] clusterOfPoint = new int[count];
+            double[] latitudeSums = new double[Math.max(count, 1)];
+            double[] longitudeSums = new double[Math.max(count, 1)];
+            int[] counts = new int[Math.max(count, 1)];
+            int clusterCount = 0;
+
+            cells.clear();
+
+            for (int i = 0; i < count; i++) {
+                long key = ((cellX[i] >> shift) << 32) | (cellY[i] >> shift);
+                int cluster = cells.get(key);
+
+                if (cluster < 0) {
+                    cluster = clusterCount++;
+                    cells.put(key, cluster);
+                }
+
+                clusterOfPoint[i] = cluster;
+                latitudeSums[cluster] += latitudes[i];
+                longitudeSums[cluster] += longitudes[i];
+                counts[cluster]++;
+            }
+
+            for (int cluster = 0; cluster < clusterCount; cluster++) {
+                latitudeSums[cluster] /= counts[cluster];
+                longitudeSums[cluster] /= counts[cluster];
+            }
+
+            levels[zoom] = new Level(
+                    clusterCount,
+                    Arrays.copyOf(latitudeSums, clusterCount),
+                    Arrays.copyOf(longitudeSums, clusterCount),
+                    Arrays.copyOf(counts, clusterCount),
+                    clusterOfPoint
+            );
+        }
+    }
+
+    Level level(float zoom) {
+        return levels[Math.max(0, Math.min(MAX_ZOOM, (int) zoom))];
+    }
+
+    /**
+     * Open addressing map from cell keys to cluster indices, -1 for missing keys.
+     */
+    private static class LongIntMap {
+        private final long[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private final int mask;
+
+        LongIntMap(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        void clear() {
+            Arrays.fill(used, false);
+        }
+
+        int get(long key) {
+            for (int i = index(key); used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+
+            return -1;
+        }
+
+        void put(long key, int value) {
+            int i = index(key);
+
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private int index(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.unact.yandexmapkit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide counters and histograms of channel calls, sent events, icon decoding and live
+ * map objects.
+ *
+ * Histograms have a bucket per power of two, so recording takes a few atomic increments and
+ * percentiles are exact within a factor of two. Calls, events and icon decoding are only recorded
+ * while enabled, live map objects are always counted.
+ */
+class YandexMetrics {
+    private static final YandexMetrics instance = new YandexMetrics();
+
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> events = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> objects = new ConcurrentHashMap<>();
+    private volatile Histogram iconDecode = new Histogram();
+    private volatile boolean enabled;
+
+    private YandexMetrics() {
+    }
+
+    static YandexMetrics getInstance() {
+        return instance;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records a call with the estimated size of its arguments.
+     */
+    void recordCall(String method, Object arguments) {
+        MethodStats stats = methodStats(method);
+
+        stats.count.incrementAndGet();
+        stats.payload.record(payloadSize(arguments));
+    }
+
+    void recordDecode(String method, long nanos) {
+        methodStats(method).decode.record(nanos);
+    }
+
+    void recordApply(String method, long nanos) {
+        methodStats(method).apply.record(nanos);
+    }
+
+    void recordEvent(String name) {
+        if (!enabled) {
+            return;
+        }
+
+        AtomicLong count = events.get(name);
+
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+
+            count = events.putIfAbsent(name, newCount);
+
+            if (count == null) {
+                count = newCount;
+            }
+        }
+
+        count.incrementAndGet();
+    }
+
+    void recordIconDecode(long nanos) {
+        if (enabled) {
+            iconDecode.record(nanos);
+        }
+    }
+
+    void adjustObjects(String kind, int delta) {
+        AtomicLong count = objects.get(kind);
+
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong();
+
+            count = objects.putIfAbsent(kind, newCount);
+
+            if (count == null) {
+                count = newCount;
+            }
+        }
+
+        count.addAndGet(delta);
+    }
+
+    /**
+     * Drops recorded calls, events and icon decoding times. Live map objects are kept.
+     */
+    void reset() {
+        methods.clear();
+        events.clear();
+        iconDecode = new Histogram();
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        Map<String, Object> methodSnapshots = new HashMap<>();
+        Map<String, Object> eventCounts = new HashMap<>();
+        Map<String, Object> objectCounts = new HashMap<>();
+
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet()) {
+            MethodStats stats = entry.getValue();
+            Map<String, Object> methodSnapshot = new HashMap<>();
+
+            methodSnapshot.put("count", stats.count.get());
+            methodSnapshot.put("decode", stats.decode.snapshot());
+            methodSnapshot.put("apply", stats.apply.snapshot());
+            methodSnapshot.put("payload", stats.payload.snapshot());
+            methodSnapshots.put(entry.getKey(), methodSnapshot);
+        }
+
+        for (Map.Entry<String, AtomicLong> entry : events.entrySet()) {
+            eventCounts.put(entry.getKey(), entry.getValue().get());
+        }
+
+        for (Map.Entry<String, AtomicLong> entry : objects.entrySet()) {
+            objectCounts.put(entry.getKey(), entry.getValue().get());
+        }
+
+        snapshot.put("uptime", (System.nanoTime() - startNanos) / 1000000);
+        snapshot.put("enabled", enabled);
+        snapshot.put("methods", methodSnapshots);
+        snapshot.put("events", eventCounts);
+        snapshot.put("iconDecode", iconDecode.snapshot());
+        snapshot.put("objects", objectCounts);
+
+        return snapshot;
+    }
+
+    private MethodStats methodStats(String method) {
+        MethodStats stats = methods.get(method);
+
+        if (stats == null) {
+            MethodStats newStats = new MethodStats();
+
+            stats = methods.putIfAbsent(method, newStats);
+
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+
+        return stats;
+    }
+
+    /**
+     * Rough size of channel arguments in bytes, as the standard codec would write their contents.
+     */
+    static long payloadSize(Object o) {
+        if (o == null) {
+            return 0;
+        } else if (o instanceof String) {
+            return ((String) o).length();
+        } else if (o instanceof byte[]) {
+            return ((byte[]) o).length;
+        } else if (o instanceof int[]) {
+            return ((int[]) o).length * 4L;
+        } else if (o instanceof long[]) {
+            return ((long[]) o).length * 8L;
+        } else if (o instanceof double[]) {
+            return ((double[]) o).length * 8L;
+        } else if (o instanceof List) {
+            long size = 0;
+
+            for (Object item : (List<?>) o) {
+                size += payloadSize(item);
+            }
+
+            return size;
+        } else if (o instanceof Map) {
+            long size = 0;
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) o).entrySet()) {
+                size += payloadSize(entry.getKey()) + payloadSize(entry.getValue());
+            }
+
+            return size;
+        } else if (o instanceof Boolean) {
+            return 1;
+        }
+
+        return 8;
+    }
+
+    private static class MethodStats {
+        final AtomicLong count = new AtomicLong();
+        final Histogram decode = new Histogram();
+        final Histogram apply = new Histogram();
+        final Histogram payload = new Histogram();
+    }
+
+    /**
+     * Histogram of non-negative values with a bucket per power of two.
+     */
+    static class Histogram {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            value = Math.max(value, 0);
+
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long currentMax = max.get();
+
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        /**
+         * Upper bound of the bucket holding the given fraction of values, at most the maximum.
+         */
+        long percentile(double fraction) {
+            long total = count.get();
+            long threshold = (long) Math.ceil(total * fraction);
+            long seen = 0;
+
+            if (total == 0) {
+                return 0;
+            }
+
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+
+                if (seen >= threshold) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+                }
+            }
+
+            return max.get();
+        }
+
+        Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new HashMap<>();
+
+            snapshot.put("count", count.get());
+            snapshot.put("sum", sum.get());
+            snapshot.put("max", max.get());
+            snapshot.put("p50", percentile(0.5));
+            snapshot.put("p90", percentile(0.9));
+            snapshot.put("p99", percentile(0.99));
+
+            return snapshot;
+        }
+    }
+}
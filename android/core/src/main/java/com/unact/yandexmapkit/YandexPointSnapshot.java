@@ -0,0 +1,516 @@
+package com.unact.yandexmapkit;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable copy of point positions for spatial queries off the main thread.
+ *
+ * The first query orders points along a Z-order curve and groups them in blocks of BLOCK_SIZE with
+ * their bounds, so queries only scan blocks their area touches. Queries that scan more than
+ * PARALLEL_THRESHOLD points split the blocks between tasks on the given executor. Queries may run
+ * on any number of threads at once.
+ */
+class YandexPointSnapshot {
+    interface Filter {
+        boolean accepts(double latitude, double longitude);
+    }
+
+    interface Callback {
+        void onResult(int[] ids);
+    }
+
+    private static final int BLOCK_SIZE = 256;
+    private static final int PARALLEL_THRESHOLD = 16384;
+    private static final double EARTH_RADIUS = 6371000;
+
+    private final int[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int size;
+    private final int parallelism;
+
+    /**
+     * Min latitude, min longitude, max latitude and max longitude of every block.
+     */
+    private double[] bounds;
+
+    /**
+     * Takes ownership of the arrays, of which the first size items are used.
+     */
+    YandexPointSnapshot(int[] ids, double[] latitudes, double[] longitudes, int size, int parallelism) {
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.size = size;
+        this.parallelism = parallelism;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes ids of points inside the box that the filter accepts to the callback, on the calling
+     * thread or on a thread of the executor. Boxes with a min longitude greater than the max one
+     * cross the antimeridian.
+     */
+    void query(
+            final double minLatitude,
+            final double minLongitude,
+            final double maxLatitude,
+            final double maxLongitude,
+            final Filter filter,
+            Executor executor,
+            final Callback callback
+    ) {
+        prepare();
+
+        if (minLongitude > maxLongitude) {
+            query(minLatitude, -180, maxLatitude, 180, new Filter() {
+                @Override
+                public boolean accepts(double latitude, double longitude) {
+                    return (longitude >= minLongitude || longitude <= maxLongitude) &&
+                            (filter == null || filter.accepts(latitude, longitude));
+                }
+            }, executor, callback);
+            return;
+        }
+
+        final int[] blocks = new int[bounds.length / 4];
+        int count = 0;
+
+        for (int block = 0; block < blocks.length; block++) {
+            if (bounds[block * 4] <= maxLatitude && bounds[block * 4 + 2] >= minLatitude &&
+                    bounds[block * 4 + 1] <= maxLongitude && bounds[block * 4 + 3] >= minLongitude) {
+                blocks[count++] = block;
+            }
+        }
+
+        int tasks = executor != null
+                ? Math.min(parallelism, count * BLOCK_SIZE / PARALLEL_THRESHOLD)
+                : 1;
+
+        if (tasks <= 1) {
+            callback.onResult(scan(blocks, 0, count, minLatitude, minLongitude, maxLatitude, maxLongitude, filter));
+            return;
+        }
+
+        final int[][] results = new int[tasks][];
+        final AtomicInteger remaining = new AtomicInteger(tasks);
+
+        for (int task = 0; task < tasks; task++) {
+            final int index = task;
+            final int from = count * task / tasks;
+            final int to = count * (task + 1) / tasks;
+            Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    results[index] = scan(blocks, from, to, minLatitude, minLongitude, maxLatitude, maxLongitude, filter);
+
+                    if (remaining.decrementAndGet() == 0) {
+                        callback.onResult(concat(results));
+                    }
+                }
+            };
+
+            if (task < tasks - 1) {
+                executor.execute(runnable);
+            } else {
+                runnable.run();
+            }
+        }
+    }
+
+    /**
+     * Passes ids of points within the radius in meters to the callback, see query.
+     */
+    void queryRadius(final double latitude, final double longitude, final double radius, Executor executor, Callback callback) {
+        double angularRadius = radius / EARTH_RADIUS;
+        double latitudeDelta = Math.toDegrees(angularRadius);
+        // The circle is widest on its pole side, at the latitude where the meridians touch it.
+        double sin = Math.sin(Math.min(angularRadius, Math.PI / 2)) / Math.cos(Math.toRadians(latitude));
+        double longitudeDelta = sin < 1 ? Math.toDegrees(Math.asin(sin)) : 360;
+        double minLongitude = longitude - longitudeDelta;
+        double maxLongitude = longitude + longitudeDelta;
+
+        if (longitudeDelta >= 180 || latitude + latitudeDelta >= 90 || latitude - latitudeDelta <= -90) {
+            minLongitude = -180;
+            maxLongitude = 180;
+        } else if (minLongitude < -180) {
+            minLongitude += 360;
+        } else if (maxLongitude > 180) {
+            maxLongitude -= 360;
+        }
+
+        query(
+                Math.max(-90, latitude - latitudeDelta),
+                minLongitude,
+                Math.min(90, latitude + latitudeDelta),
+                maxLongitude,
+                new Filter() {
+                    @Override
+                    public boolean accepts(double pointLatitude, double pointLongitude) {
+                        return distance(latitude, longitude, pointLatitude, pointLongitude) <= radius;
+                    }
+                },
+                executor,
+                callback
+        );
+    }
+
+    /**
+     * Passes ids of points inside the rings to the callback, see query and contains.
+     */
+    void queryPolygon(final double[][] rings, Executor executor, Callback callback) {
+        double[] ringBounds = bounds(rings);
+
+        if (ringBounds == null) {
+            callback.onResult(new int[0]);
+            return;
+        }
+
+        query(ringBounds[0], ringBounds[1], ringBounds[2], ringBounds[3], new Filter() {
+            @Override
+            public boolean accepts(double latitude, double longitude) {
+                return contains(rings, latitude, longitude);
+            }
+        }, executor, callback);
+    }
+
+    /**
+     * Ids of at most count points nearest to the given one and not farther than maxDistance meters,
+     * nearest first. Distances are measured in the equirectangular projection at the given latitude,
+     * which is accurate to a fraction of a percent within a few hundred kilometers.
+     */
+    int[] nearest(double latitude, double longitude, int count, double maxDistance) {
+        prepare();
+
+        int blockCount = bounds.length / 4;
+        double cos = Math.cos(Math.toRadians(latitude));
+        long[] order = new long[blockCount];
+
+        for (int block = 0; block < blockCount; block++) {
+            double latitudeGap = gap(latitude, bounds[block * 4], bounds[block * 4 + 2]);
+            double longitudeGap = longitudeGap(longitude, bounds[block * 4 + 1], bounds[block * 4 + 3]);
+            double distance = planarDistance(latitudeGap, longitudeGap, cos);
+            float lowerBound = (float) distance;
+
+            if (lowerBound > distance) {
+                lowerBound = Math.nextAfter(lowerBound, Double.NEGATIVE_INFINITY);
+            }
+
+            order[block] = (long) Float.floatToIntBits(lowerBound) << 32 | block;
+        }
+
+        Arrays.sort(order);
+
+        double[] heapDistances = new double[Math.max(count, 0)];
+        int[] heapIds = new int[heapDistances.length];
+        int heapSize = 0;
+
+        for (long key : order) {
+            float lowerBound = Float.intBitsToFloat((int) (key >>> 32));
+
+            if (heapDistances.length == 0 || lowerBound > maxDistance ||
+                    (heapSize == heapDistances.length && lowerBound > heapDistances[0])) {
+                break;
+            }
+
+            int block = (int) key;
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                double distance = planarDistance(
+                        latitudes[i] - latitude,
+                        angularDelta(longitudes[i], longitude),
+                        cos
+                );
+
+                if (distance > maxDistance) {
+                    continue;
+                }
+
+                if (heapSize < heapDistances.length) {
+                    heapDistances[heapSize] = distance;
+                    heapIds[heapSize] = ids[i];
+                    siftUp(heapDistances, heapIds, heapSize++);
+                } else if (distance < heapDistances[0]) {
+                    heapDistances[0] = distance;
+                    heapIds[0] = ids[i];
+                    siftDown(heapDistances, heapIds, 0, heapSize);
+                }
+            }
+        }
+
+        int[] result = new int[heapSize];
+
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = heapIds[0];
+            heapDistances[0] = heapDistances[i];
+            heapIds[0] = heapIds[i];
+            siftDown(heapDistances, heapIds, 0, i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Whether the point is inside the flat latitude/longitude rings by the even-odd rule, so inner
+     * rings are holes.
+     */
+    static boolean contains(double[][] rings, double latitude, double longitude) {
+        boolean inside = false;
+
+        for (double[] ring : rings) {
+            int count = ring.length / 2;
+
+            for (int i = 0, j = count - 1; i < count; j = i++) {
+                double latitudeI = ring[i * 2];
+                double longitudeI = ring[i * 2 + 1];
+                double latitudeJ = ring[j * 2];
+                double longitudeJ = ring[j * 2 + 1];
+
+                if ((latitudeI > latitude) != (latitudeJ > latitude) &&
+                        longitude < (longitudeJ - longitudeI) * (latitude - latitudeI) / (latitudeJ - latitudeI) + longitudeI) {
+                    inside = !inside;
+                }
+            }
+        }
+
+        return inside;
+    }
+
+    /**
+     * Min latitude, min longitude, max latitude and max longitude of the outer ring, null when it is
+     * empty.
+     */
+    static double[] bounds(double[][] rings) {
+        if (rings.length == 0 || rings[0].length < 2) {
+            return null;
+        }
+
+        double[] ring = rings[0];
+        double[] result = {ring[0], ring[1], ring[0], ring[1]};
+
+        for (int i = 2; i + 1 < ring.length; i += 2) {
+            result[0] = Math.min(result[0], ring[i]);
+            result[1] = Math.min(result[1], ring[i + 1]);
+            result[2] = Math.max(result[2], ring[i]);
+            result[3] = Math.max(result[3], ring[i + 1]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Great circle distance in meters.
+     */
+    static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude +
+                Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Sorts points along the Z-order curve and computes block bounds, once.
+     */
+    private synchronized void prepare() {
+        if (bounds != null) {
+            return;
+        }
+
+        long[] keys = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            keys[i] = zOrder(latitudes[i], longitudes[i]) << 32 | i;
+        }
+
+        Arrays.sort(keys);
+
+        int[] oldIds = Arrays.copyOf(ids, size);
+        double[] oldLatitudes = Arrays.copyOf(latitudes, size);
+        double[] oldLongitudes = Arrays.copyOf(longitudes, size);
+        double[] newBounds = new double[(size + BLOCK_SIZE - 1) / BLOCK_SIZE * 4];
+
+        for (int i = 0; i < size; i++) {
+            int index = (int) keys[i];
+            int block = i / BLOCK_SIZE * 4;
+
+            ids[i] = oldIds[index];
+            latitudes[i] = oldLatitudes[index];
+            longitudes[i] = oldLongitudes[index];
+
+            if (i % BLOCK_SIZE == 0) {
+                newBounds[block] = newBounds[block + 2] = latitudes[i];
+                newBounds[block + 1] = newBounds[block + 3] = longitudes[i];
+            } else {
+                newBounds[block] = Math.min(newBounds[block], latitudes[i]);
+                newBounds[block + 1] = Math.min(newBounds[block + 1], longitudes[i]);
+                newBounds[block + 2] = Math.max(newBounds[block + 2], latitudes[i]);
+                newBounds[block + 3] = Math.max(newBounds[block + 3], longitudes[i]);
+            }
+        }
+
+        bounds = newBounds;
+    }
+
+    private int[] scan(
+            int[] blocks,
+            int from,
+            int to,
+            double minLatitude,
+            double minLongitude,
+            double maxLatitude,
+            double maxLongitude,
+            Filter filter
+    ) {
+        int[] result = new int[64];
+        int count = 0;
+
+        for (int i = from; i < to; i++) {
+            int block = blocks[i];
+            boolean covered = bounds[block * 4] >= minLatitude && bounds[block * 4 + 2] <= maxLatitude &&
+                    bounds[block * 4 + 1] >= minLongitude && bounds[block * 4 + 3] <= maxLongitude;
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+
+            for (int j = block * BLOCK_SIZE; j < end; j++) {
+                double latitude = latitudes[j];
+                double longitude = longitudes[j];
+
+                if (!covered && (latitude < minLatitude || latitude > maxLatitude ||
+                        longitude < minLongitude || longitude > maxLongitude)) {
+                    continue;
+                }
+
+                if (filter != null && !filter.accepts(latitude, longitude)) {
+                    continue;
+                }
+
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+
+                result[count++] = ids[j];
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int[] concat(int[][] parts) {
+        int length = 0;
+
+        for (int[] part : parts) {
+            length += part.length;
+        }
+
+        int[] result = new int[length];
+        int offset = 0;
+
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+
+        return result;
+    }
+
+    /**
+     * Position along the Z-order curve of 2^15 by 2^15 cells.
+     */
+    private static long zOrder(double latitude, double longitude) {
+        int y = (int) ((Math.max(-90, Math.min(90, latitude)) + 90) / 180 * 32767);
+        int x = (int) ((Math.max(-180, Math.min(180, longitude)) + 180) / 360 * 32767);
+
+        return spread(y) << 1 | spread(x);
+    }
+
+    private static long spread(int value) {
+        long x = value & 0x7fff;
+
+        x = (x | x << 8) & 0x00ff00ffL;
+        x = (x | x << 4) & 0x0f0f0f0fL;
+        x = (x | x << 2) & 0x33333333L;
+        x = (x | x << 1) & 0x55555555L;
+
+        return x;
+    }
+
+    private static double planarDistance(double latitudeDelta, double longitudeDelta, double cos) {
+        double x = longitudeDelta * cos;
+
+        return Math.toRadians(Math.sqrt(latitudeDelta * latitudeDelta + x * x)) * EARTH_RADIUS;
+    }
+
+    private static double gap(double value, double min, double max) {
+        return value < min ? min - value : value > max ? value - max : 0;
+    }
+
+    private static double longitudeGap(double longitude, double min, double max) {
+        if (longitude >= min && longitude <= max) {
+            return 0;
+        }
+
+        return Math.min(Math.abs(angularDelta(longitude, min)), Math.abs(angularDelta(longitude, max)));
+    }
+
+    /**
+     * Difference of longitudes in degrees within -180 and 180.
+     */
+    private static double angularDelta(double longitude1, double longitude2) {
+        double delta = (longitude1 - longitude2) % 360;
+
+        return delta > 180 ? delta - 360 : delta < -180 ? delta + 360 : delta;
+    }
+
+    private static void siftUp(double[] distances, int[] ids, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            if (distances[parent] >= distances[index]) {
+                return;
+            }
+
+            swap(distances, ids, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(double[] distances, int[] ids, int index, int size) {
+        while (true) {
+            int largest = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+
+            if (left < size && distances[left] > distances[largest]) {
+                largest = left;
+            }
+
+            if (right < size && distances[right] > distances[largest]) {
+                largest = right;
+            }
+
+            if (largest == index) {
+                return;
+            }
+
+            swap(distances, ids, largest, index);
+            index = largest;
+        }
+    }
+
+    private static void swap(double[] distances, int[] ids, int i, int j) {
+        double distance = distances[i];
+        int id = ids[i];
+
+        distances[i] = distances[j];
+        ids[i] = ids[j];
+        distances[j] = distance;
+        ids[j] = id;
+    }
+}
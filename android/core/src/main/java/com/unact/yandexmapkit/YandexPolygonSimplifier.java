@@ -0,0 +1,187 @@
+package com.unact.yandexmapkit;
+
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of polygon rings for every zoom level at once.
+ *
+ * Rings are flat latitude/longitude arrays, the first one is the outer ring. Vertices are projected
+ * to Web Mercator and ranked once by the deviation at which Douglas-Peucker keeps them, so a level
+ * only filters vertices by the tolerance of its zoom. Levels with the same vertices share arrays.
+ */
+class YandexPolygonSimplifier {
+    static final int MAX_ZOOM = 21;
+
+    /**
+     * Width of the world in pixels at zoom 0.
+     */
+    private static final double WORLD_SIZE = 256;
+
+    private final double[][][] levels = new double[MAX_ZOOM + 1][][];
+
+    /**
+     * @param pixelTolerance allowed deviation in screen pixels at every zoom
+     */
+    YandexPolygonSimplifier(double[][] rings, double pixelTolerance) {
+        double[][] importances = new double[rings.length][];
+
+        for (int i = 0; i < rings.length; i++) {
+            importances[i] = importance(rings[i]);
+        }
+
+        int[] previousCounts = null;
+        double[][] previous = null;
+
+        for (int zoom = MAX_ZOOM; zoom >= 0; zoom--) {
+            double tolerance = pixelTolerance / (1L << zoom);
+            double sqTolerance = tolerance * tolerance;
+            int[] counts = new int[rings.length];
+            boolean same = previousCounts != null;
+
+            for (int i = 0; i < rings.length; i++) {
+                for (double value : importances[i]) {
+                    if (value > sqTolerance) {
+                        counts[i]++;
+                    }
+                }
+
+                if (counts[i] < 4 && i > 0) {
+                    counts[i] = 0;
+                }
+
+                same = same && counts[i] == previousCounts[i];
+            }
+
+            if (counts.length > 0 && counts[0] < 4 && previous != null) {
+                levels[zoom] = previous;
+                continue;
+            }
+
+            if (!same) {
+                previous = filter(rings, importances, counts, sqTolerance);
+                previousCounts = counts;
+            }
+
+            levels[zoom] = previous;
+        }
+    }
+
+    /**
+     * Rings to show at the zoom, with empty arrays for holes too small to be seen.
+     */
+    double[][] level(float zoom) {
+        return levels[Math.max(0, Math.min(MAX_ZOOM, (int) zoom))];
+    }
+
+    private static double[][] filter(double[][] rings, double[][] importances, int[] counts, double sqTolerance) {
+        double[][] result = new double[rings.length][];
+
+        for (int i = 0; i < rings.length; i++) {
+            double[] ring = rings[i];
+            double[] importance = importances[i];
+            double[] simplified = new double[counts[i] * 2];
+            int count = 0;
+
+            if (counts[i] > 0) {
+                for (int j = 0; j < importance.length; j++) {
+                    if (importance[j] > sqTolerance) {
+                        simplified[count++] = ring[j * 2];
+                        simplified[count++] = ring[j * 2 + 1];
+                    }
+                }
+            }
+
+            result[i] = simplified;
+        }
+
+        return result;
+    }
+
+    /**
+     * Squared Mercator deviation at which each vertex stops being dropped, never above the one of
+     * the vertex whose split made it a candidate. End points are always kept.
+     */
+    private static double[] importance(double[] ring) {
+        int count = ring.length / 2;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] importance = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            double sin = Math.sin(Math.toRadians(Math.max(-85.05112878, Math.min(85.05112878, ring[i * 2]))));
+
+            x[i] = (ring[i * 2 + 1] + 180) / 360 * WORLD_SIZE;
+            y[i] = (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * WORLD_SIZE;
+        }
+
+        if (count == 0) {
+            return importance;
+        }
+
+        importance[0] = Double.POSITIVE_INFINITY;
+        importance[count - 1] = Double.POSITIVE_INFINITY;
+
+        int[] stack = new int[64];
+        int size = 0;
+
+        stack[size++] = 0;
+        stack[size++] = count - 1;
+
+        while (size > 0) {
+            int last = stack[--size];
+            int first = stack[--size];
+            double maxSqDistance = 0;
+            int index = -1;
+
+            for (int i = first + 1; i < last; i++) {
+                double sqDistance = sqSegmentDistance(x[i], y[i], x[first], y[first], x[last], y[last]);
+
+                if (sqDistance > maxSqDistance) {
+                    maxSqDistance = sqDistance;
+                    index = i;
+                }
+            }
+
+            if (index < 0) {
+                continue;
+            }
+
+            // The vertex that split off this segment is one of its ends and has the smaller importance.
+            // Clamping to it keeps levels nested, so every level is the Douglas-Peucker result at its tolerance.
+            importance[index] = Math.min(maxSqDistance, Math.min(importance[first], importance[last]));
+
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+
+            stack[size++] = first;
+            stack[size++] = index;
+            stack[size++] = index;
+            stack[size++] = last;
+        }
+
+        return importance;
+    }
+
+    private static double sqSegmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+
+        if (dx != 0 || dy != 0) {
+            double t = ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy);
+
+            if (t > 1) {
+                ax = bx;
+                ay = by;
+            } else if (t > 0) {
+                ax += dx * t;
+                ay += dy * t;
+            }
+        }
+
+        dx = px - ax;
+        dy = py - ay;
+
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,215 @@
+package com.unact.yandexmapkit;
+
+import java.util.Arrays;
+
+/**
+ * Points of a growing track.
+ *
+ * With a capacity the buffer is a ring that keeps only the last capacity points.
+ * With a thinning threshold, once the buffer holds more points than the threshold, all but the
+ * newest half of them are simplified with Douglas-Peucker, doubling the tolerance until the buffer
+ * is down to three quarters of the threshold. Not thread safe.
+ */
+class YandexPolylineBuffer {
+    private static final double EARTH_RADIUS = 6371000;
+    private static final int MAX_THINNING_PASSES = 16;
+
+    private final int capacity;
+    private final int thinningThreshold;
+    private final double thinningTolerance;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private int head;
+    private int size;
+
+    /**
+     * @param capacity maximum number of points kept, 0 for no limit
+     * @param thinningThreshold number of points that triggers thinning, 0 to never thin
+     * @param thinningTolerance initial thinning tolerance in meters
+     */
+    YandexPolylineBuffer(int capacity, int thinningThreshold, double thinningTolerance) {
+        this.capacity = capacity;
+        this.thinningThreshold = thinningThreshold;
+        this.thinningTolerance = thinningTolerance;
+
+        latitudes = new double[capacity > 0 ? Math.min(capacity, 16) : 16];
+        longitudes = new double[latitudes.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    double latitude(int index) {
+        return latitudes[(head + index) % latitudes.length];
+    }
+
+    double longitude(int index) {
+        return longitudes[(head + index) % longitudes.length];
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Appends flat latitude/longitude pairs.
+     */
+    void append(double[] coordinates) {
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            add(coordinates[i], coordinates[i + 1]);
+        }
+
+        if (thinningThreshold > 0 && size > thinningThreshold) {
+            thin();
+        }
+    }
+
+    private void add(double latitude, double longitude) {
+        if (capacity > 0 && size == capacity) {
+            latitudes[head] = latitude;
+            longitudes[head] = longitude;
+            head = (head + 1) % capacity;
+            return;
+        }
+
+        if (size == latitudes.length) {
+            compact(capacity > 0 ? Math.min(size * 2, capacity) : size * 2);
+        }
+
+        int index = (head + size) % latitudes.length;
+
+        latitudes[index] = latitude;
+        longitudes[index] = longitude;
+        size++;
+    }
+
+    /**
+     * Moves the points to the start of arrays of the given length.
+     */
+    private void compact(int length) {
+        double[] newLatitudes = new double[length];
+        double[] newLongitudes = new double[length];
+
+        for (int i = 0; i < size; i++) {
+            newLatitudes[i] = latitude(i);
+            newLongitudes[i] = longitude(i);
+        }
+
+        latitudes = newLatitudes;
+        longitudes = newLongitudes;
+        head = 0;
+    }
+
+    private void thin() {
+        compact(latitudes.length);
+
+        int target = thinningThreshold * 3 / 4;
+        int recent = thinningThreshold / 2;
+        double tolerance = thinningTolerance > 0 ? thinningTolerance : 1;
+        boolean[] keep = new boolean[size];
+
+        for (int pass = 0; pass < MAX_THINNING_PASSES && size > target; pass++) {
+            int old = size - recent;
+
+            Arrays.fill(keep, 0, old, false);
+            simplify(old, tolerance, keep);
+
+            int count = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (i >= old || keep[i]) {
+                    latitudes[count] = latitudes[i];
+                    longitudes[count] = longitudes[i];
+                    count++;
+                }
+            }
+
+            size = count;
+            tolerance *= 2;
+        }
+    }
+
+    /**
+     * Marks points of the first count points kept by Douglas-Peucker with the tolerance in meters.
+     */
+    private void simplify(int count, double tolerance, boolean[] keep) {
+        if (count < 3) {
+            Arrays.fill(keep, 0, count, true);
+            return;
+        }
+
+        double cos = Math.cos(Math.toRadians(latitudes[0]));
+        double sqTolerance = Math.pow(tolerance / EARTH_RADIUS, 2);
+        int[] stack = new int[64];
+        int stackSize = 0;
+
+        keep[0] = true;
+        keep[count - 1] = true;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = count - 1;
+
+        while (stackSize > 0) {
+            int last = stack[--stackSize];
+            int first = stack[--stackSize];
+            double ax = Math.toRadians(longitudes[first]) * cos;
+            double ay = Math.toRadians(latitudes[first]);
+            double bx = Math.toRadians(longitudes[last]) * cos;
+            double by = Math.toRadians(latitudes[last]);
+            double maxSqDistance = sqTolerance;
+            int index = -1;
+
+            for (int i = first + 1; i < last; i++) {
+                double sqDistance = sqSegmentDistance(
+                        Math.toRadians(longitudes[i]) * cos,
+                        Math.toRadians(latitudes[i]),
+                        ax, ay, bx, by
+                );
+
+                if (sqDistance > maxSqDistance) {
+                    maxSqDistance = sqDistance;
+                    index = i;
+                }
+            }
+
+            if (index < 0) {
+                continue;
+            }
+
+            keep[index] = true;
+
+            if (stackSize + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+
+            stack[stackSize++] = first;
+            stack[stackSize++] = index;
+            stack[stackSize++] = index;
+            stack[stackSize++] = last;
+        }
+    }
+
+    private static double sqSegmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+
+        if (dx != 0 || dy != 0) {
+            double t = ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy);
+
+            if (t > 1) {
+                ax = bx;
+                ay = by;
+            } else if (t > 0) {
+                ax += dx * t;
+                ay += dy * t;
+            }
+        }
+
+        dx = px - ax;
+        dy = py - ay;
+
+        return dx * dx + dy * dy;
+    }
+}
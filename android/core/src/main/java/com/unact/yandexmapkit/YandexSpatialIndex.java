@@ -0,0 +1,198 @@
+package com.unact.yandexmapkit;
+
+import java.util.Arrays;
+
+/**
+ * Point quadtree over latitude/longitude.
+ *
+ * Leaves keep their entries in parallel arrays and split once they hold more than
+ * NODE_CAPACITY entries. Values are compared by identity. Not thread safe.
+ */
+class YandexSpatialIndex<T> {
+    interface Visitor<T> {
+        void visit(T value, double latitude, double longitude);
+    }
+
+    private static final int NODE_CAPACITY = 32;
+    private static final int MAX_DEPTH = 20;
+
+    private Node<T> root = new Node<>(-90, -180, 90, 180, 0);
+    private int size;
+    private int version;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Changes with every insert, remove and move.
+     */
+    int version() {
+        return version;
+    }
+
+    void clear() {
+        root = new Node<>(-90, -180, 90, 180, 0);
+        size = 0;
+        version++;
+    }
+
+    void insert(double latitude, double longitude, T value) {
+        root.insert(latitude, longitude, value);
+        size++;
+        version++;
+    }
+
+    boolean remove(double latitude, double longitude, T value) {
+        if (root.remove(latitude, longitude, value)) {
+            size--;
+            version++;
+            return true;
+        }
+
+        return false;
+    }
+
+    void move(double oldLatitude, double oldLongitude, double latitude, double longitude, T value) {
+        if (remove(oldLatitude, oldLongitude, value)) {
+            insert(latitude, longitude, value);
+        }
+    }
+
+    /**
+     * Visits every entry inside the box. Boxes crossing the antimeridian should be split by the caller.
+     */
+    void query(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, Visitor<T> visitor) {
+        root.query(minLatitude, minLongitude, maxLatitude, maxLongitude, visitor);
+    }
+
+    private static class Node<T> {
+        final double minLatitude;
+        final double minLongitude;
+        final double maxLatitude;
+        final double maxLongitude;
+        final int depth;
+
+        double[] latitudes = new double[4];
+        double[] longitudes = new double[4];
+        Object[] values = new Object[4];
+        int count;
+
+        Node<T>[] children;
+
+        Node(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, int depth) {
+            this.minLatitude = minLatitude;
+            this.minLongitude = minLongitude;
+            this.maxLatitude = maxLatitude;
+            this.maxLongitude = maxLongitude;
+            this.depth = depth;
+        }
+
+        void insert(double latitude, double longitude, T value) {
+            if (children != null) {
+                child(latitude, longitude).insert(latitude, longitude, value);
+                return;
+            }
+
+            if (count == values.length) {
+                if (count >= NODE_CAPACITY && depth < MAX_DEPTH) {
+                    split();
+                    child(latitude, longitude).insert(latitude, longitude, value);
+                    return;
+                }
+
+                int capacity = count * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+
+            latitudes[count] = latitude;
+            longitudes[count] = longitude;
+            values[count] = value;
+            count++;
+        }
+
+        boolean remove(double latitude, double longitude, T value) {
+            if (children != null) {
+                return child(latitude, longitude).remove(latitude, longitude, value);
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (values[i] == value) {
+                    count--;
+                    latitudes[i] = latitudes[count];
+                    longitudes[i] = longitudes[count];
+                    values[i] = values[count];
+                    values[count] = null;
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        void query(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude, Visitor<T> visitor) {
+            if (minLatitude > this.maxLatitude || maxLatitude < this.minLatitude ||
+                    minLongitude > this.maxLongitude || maxLongitude < this.minLongitude) {
+                return;
+            }
+
+            if (children != null) {
+                for (Node<T> child : children) {
+                    child.query(minLatitude, minLongitude, maxLatitude, maxLongitude, visitor);
+                }
+
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                double latitude = latitudes[i];
+                double longitude = longitudes[i];
+
+                if (latitude >= minLatitude && latitude <= maxLatitude &&
+                        longitude >= minLongitude && longitude <= maxLongitude) {
+                    visitor.visit((T) values[i], latitude, longitude);
+                }
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void split() {
+            double midLatitude = (minLatitude + maxLatitude) / 2;
+            double midLongitude = (minLongitude + maxLongitude) / 2;
+
+            children = new Node[] {
+                    new Node<T>(minLatitude, minLongitude, midLatitude, midLongitude, depth + 1),
+                    new Node<T>(minLatitude, midLongitude, midLatitude, maxLongitude, depth + 1),
+                    new Node<T>(midLatitude, minLongitude, maxLatitude, midLongitude, depth + 1),
+                    new Node<T>(midLatitude, midLongitude, maxLatitude, maxLongitude, depth + 1)
+            };
+
+            for (int i = 0; i < count; i++) {
+                child(latitudes[i], longitudes[i]).insert(latitudes[i], longitudes[i], (T) values[i]);
+            }
+
+            latitudes = null;
+            longitudes = null;
+            values = null;
+            count = 0;
+        }
+
+        private Node<T> child(double latitude, double longitude) {
+            int index = 0;
+
+            if (latitude >= (minLatitude + maxLatitude) / 2) {
+                index += 2;
+            }
+
+            if (longitude >= (minLongitude + maxLongitude) / 2) {
+                index += 1;
+            }
+
+            return children[index];
+        }
+    }
+}
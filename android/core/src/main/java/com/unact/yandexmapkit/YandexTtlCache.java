@@ -0,0 +1,66 @@
+package com.unact.yandexmapkit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small LRU cache whose entries also expire after a fixed time. Not thread safe.
+ */
+class YandexTtlCache<K, V> {
+    private final long ttlNanos;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    YandexTtlCache(final int maxEntries, long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1000000;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    V get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        if (now() - entry.time > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+
+        return entry.value;
+    }
+
+    void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, now()));
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Monotonic time in nanoseconds, overridden by tests.
+     */
+    long now() {
+        return System.nanoTime();
+    }
+
+    private static class CacheEntry<V> {
+        final V value;
+        final long time;
+
+        CacheEntry(V value, long time) {
+            this.value = value;
+            this.time = time;
+        }
+    }
+}
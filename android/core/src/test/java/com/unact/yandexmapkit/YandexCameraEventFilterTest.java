@@ -0,0 +1,188 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class YandexCameraEventFilterTest {
+    private static final double EARTH_RADIUS = 6371000;
+
+    @Test
+    public void randomStreamsMatchHistoryScan() {
+        Random random = new Random(1);
+        List<Map<String, Object>> configurations = new ArrayList<>();
+
+        configurations.add(params(null, null, null, null, null));
+        configurations.add(params("finished", null, null, null, null));
+        configurations.add(params(null, 30, null, null, null));
+        configurations.add(params(null, null, 0.5, null, null));
+        configurations.add(params(null, null, null, 50.0, null));
+        configurations.add(params(null, null, null, null, 10.0));
+        configurations.add(params(null, 20, 0.25, 20.0, 5.0));
+        configurations.add(params("finished", 20, 0.25, 20.0, 5.0));
+        configurations.add(params(null, 0, 0.0, 0.0, 0.0));
+
+        for (Map<String, Object> configuration : configurations) {
+            YandexCameraEventFilter filter = new YandexCameraEventFilter();
+            Reference reference = new Reference(configuration);
+            double latitude = 55.75;
+            double longitude = 37.62;
+            double zoom = 10;
+            double azimuth = 355;
+            long time = 0;
+
+            filter.configure(configuration);
+
+            for (int i = 0; i < 5000; i++) {
+                double scale = Math.pow(10, -1 - random.nextInt(5));
+
+                latitude += (random.nextDouble() - 0.5) * scale;
+                longitude += (random.nextDouble() - 0.5) * scale;
+                zoom = Math.max(0, Math.min(21, zoom + (random.nextDouble() - 0.5) * random.nextInt(3)));
+                azimuth = (azimuth + (random.nextDouble() - 0.5) * random.nextInt(30) + 360) % 360;
+                time += random.nextInt(60);
+
+                boolean finished = random.nextInt(8) == 0;
+
+                if (random.nextInt(1000) == 0) {
+                    filter.configure(configuration);
+                    reference.events.clear();
+                }
+
+                assertEquals(
+                        configuration + " event " + i,
+                        reference.accept(latitude, longitude, zoom, azimuth, finished, time),
+                        filter.accept(latitude, longitude, zoom, azimuth, finished, time)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void intermediateEventsAreRateLimited() {
+        YandexCameraEventFilter filter = new YandexCameraEventFilter();
+        long lastSent = Long.MIN_VALUE;
+        int sent = 0;
+
+        filter.configure(params(null, 10, null, null, null));
+
+        for (long time = 0; time < 2000; time += 7) {
+            if (filter.accept(55.75 + time * 0.001, 37.62, 10, 0, false, time)) {
+                assertTrue(lastSent == Long.MIN_VALUE || time - lastSent >= 100);
+                lastSent = time;
+                sent++;
+            }
+        }
+
+        assertEquals(20, sent);
+        // Finished events are never rate limited.
+        assertTrue(filter.accept(56, 37.62, 10, 0, true, lastSent + 1));
+    }
+
+    @Test
+    public void finishedEventNextToLastFinishedOneIsDropped() {
+        YandexCameraEventFilter filter = new YandexCameraEventFilter();
+
+        filter.configure(params(null, null, 1.0, 10.0, 100.0));
+
+        assertTrue(filter.accept(55.75, 37.62, 10, 0, true, 0));
+        assertTrue(filter.accept(55.80, 37.62, 10, 0, false, 10));
+        // Back within 100 meters of the last finished event.
+        assertFalse(filter.accept(55.7505, 37.62, 10, 0, true, 20));
+        // Azimuth differences are taken the short way around.
+        assertFalse(filter.accept(55.75, 37.62, 10.5, 355, true, 30));
+        assertTrue(filter.accept(55.75, 37.62, 10, 345, true, 40));
+
+        filter.configure(params(null, null, 1.0, 10.0, 100.0));
+
+        assertTrue(filter.accept(55.75, 37.62, 10, 345, true, 50));
+    }
+
+    private static Map<String, Object> params(
+            String mode,
+            Integer maxEventsPerSecond,
+            Double minZoomDelta,
+            Double minAzimuthDelta,
+            Double minTargetDelta
+    ) {
+        Map<String, Object> params = new HashMap<>();
+
+        params.put("mode", mode);
+        params.put("maxEventsPerSecond", maxEventsPerSecond);
+        params.put("minZoomDelta", minZoomDelta);
+        params.put("minAzimuthDelta", minAzimuthDelta);
+        params.put("minTargetDelta", minTargetDelta);
+
+        return params;
+    }
+
+    /**
+     * Keeps every event with whether it was sent, and compares new ones with the last sent event,
+     * or the last sent finished one for finished events, found by scanning back.
+     */
+    private static class Reference {
+        final List<double[]> events = new ArrayList<>();
+
+        final boolean finishedOnly;
+        final long minInterval;
+        final double minZoomDelta;
+        final double minAzimuthDelta;
+        final double minTargetDelta;
+
+        Reference(Map<String, Object> params) {
+            Number maxEventsPerSecond = (Number) params.get("maxEventsPerSecond");
+
+            finishedOnly = "finished".equals(params.get("mode"));
+            minInterval = maxEventsPerSecond != null && maxEventsPerSecond.intValue() > 0 ? 1000 / maxEventsPerSecond.intValue() : 0;
+            minZoomDelta = params.get("minZoomDelta") != null ? (Double) params.get("minZoomDelta") : 0;
+            minAzimuthDelta = params.get("minAzimuthDelta") != null ? (Double) params.get("minAzimuthDelta") : 0;
+            minTargetDelta = params.get("minTargetDelta") != null ? (Double) params.get("minTargetDelta") : 0;
+        }
+
+        boolean accept(double latitude, double longitude, double zoom, double azimuth, boolean finished, long time) {
+            double[] event = { latitude, longitude, zoom, azimuth, finished ? 1 : 0, time, 0 };
+            double[] last = null;
+
+            for (int i = events.size() - 1; i >= 0 && last == null; i--) {
+                if (events.get(i)[6] == 1 && (!finished || events.get(i)[4] == 1)) {
+                    last = events.get(i);
+                }
+            }
+
+            boolean sent;
+
+            if (finished) {
+                sent = last == null || moved(last, event);
+            } else {
+                sent = !finishedOnly && (last == null || (time - (long) last[5] >= minInterval && moved(last, event)));
+            }
+
+            event[6] = sent ? 1 : 0;
+            events.add(event);
+
+            return sent;
+        }
+
+        private boolean moved(double[] from, double[] to) {
+            if (minZoomDelta <= 0 && minAzimuthDelta <= 0 && minTargetDelta <= 0) {
+                return true;
+            }
+
+            double azimuthDelta = ((to[3] - from[3]) % 360 + 360) % 360;
+            double x = Math.toRadians(to[1] - from[1]) * Math.cos(Math.toRadians(from[0]));
+            double y = Math.toRadians(to[0] - from[0]);
+
+            return (minZoomDelta > 0 && Math.abs(to[2] - from[2]) >= minZoomDelta) ||
+                    (minAzimuthDelta > 0 && Math.min(azimuthDelta, 360 - azimuthDelta) >= minAzimuthDelta) ||
+                    (minTargetDelta > 0 && Math.sqrt(x * x + y * y) * EARTH_RADIUS >= minTargetDelta);
+        }
+    }
+}
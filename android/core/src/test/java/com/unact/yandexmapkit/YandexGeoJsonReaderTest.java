@@ -0,0 +1,327 @@
+package com.unact.yandexmapkit;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class YandexGeoJsonReaderTest {
+    private static final String[] TYPES = {
+            "Point", "MultiPoint", "LineString", "MultiLineString", "Polygon", "MultiPolygon", "GeometryCollection"
+    };
+
+    @Test
+    public void randomDocumentsMatchTreeWalk() throws IOException {
+        Random random = new Random(1);
+
+        for (int i = 0; i < 200; i++) {
+            JsonObject document = featureCollection(random);
+            Events expected = new Events();
+            Events actual = new Events();
+
+            walk(document, expected);
+            read(document.toString(), actual);
+
+            assertEquals(expected.events, actual.events);
+            assertEquals(expected.skipped, actual.skipped);
+        }
+    }
+
+    @Test
+    public void multiPolygonHolesKeepRingOrder() throws IOException {
+        Events events = new Events();
+
+        read("{\"type\": \"MultiPolygon\", \"coordinates\": [" +
+                "[[[0, 0], [10, 0], [10, 10], [0, 0]], [[1, 1], [2, 1], [2, 2], [1, 1]], [[5, 5, 100], [6, 5, 100], [6, 6, 100], [5, 5, 100]]]," +
+                "[[[20, 20], [30, 20], [30, 30], [20, 20]]]" +
+                "]}", events);
+
+        assertEquals(Arrays.asList(
+                "polygon " + Arrays.deepToString(new double[][] {
+                        {0, 0, 0, 10, 10, 10, 0, 0},
+                        {1, 1, 1, 2, 2, 2, 1, 1},
+                        {5, 5, 5, 6, 6, 6, 5, 5}
+                }),
+                "polygon " + Arrays.deepToString(new double[][] {
+                        {20, 20, 20, 30, 30, 30, 20, 20}
+                })
+        ), events.events);
+        assertEquals(0, events.skipped);
+    }
+
+    @Test
+    public void otherGeometryTypesAreSkipped() throws IOException {
+        Events events = new Events();
+
+        read("{\"type\": \"FeatureCollection\", \"features\": [" +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2], [3, 4]]}}," +
+                "{\"type\": \"Feature\", \"geometry\": null, \"properties\": {\"coordinates\": [5, 6]}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"MultiLineString\", \"coordinates\": [[[1, 2], [3, 4]]]}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Circle\", \"coordinates\": [1, 2]}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [7, 8]}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Polygon\", \"coordinates\": [[[0, 0], [1, 0], [1, 1], [0, 0]], []]}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"MultiPolygon\", \"coordinates\": [" +
+                "[[1, 2], [3, 4], [5, 6], [1, 2]], [[[0, 0], [1, 0], [1, 1], [0, 0]]]" +
+                "]}}" +
+                "]}", events);
+
+        assertEquals(Arrays.asList(
+                "point 8.0,7.0",
+                "polygon " + Arrays.deepToString(new double[][] { {0, 0, 0, 1, 1, 1, 0, 0} })
+        ), events.events);
+        // The line string, the multi line string, the circle, the polygon with an empty hole and the
+        // polygon that is a single ring.
+        assertEquals(5, events.skipped);
+    }
+
+    private static void read(String json, final Events events) throws IOException {
+        YandexGeoJsonReader reader = new YandexGeoJsonReader(
+                new ByteArrayInputStream(json.getBytes(Charset.forName("UTF-8"))),
+                events
+        );
+
+        reader.read();
+        events.skipped = reader.skipped();
+    }
+
+    /**
+     * Passes the geometries of the tree to the events in document order, counting the ones the
+     * reader does not support.
+     */
+    private static void walk(JsonElement element, Events events) {
+        if (element.isJsonNull()) {
+            return;
+        }
+
+        JsonObject object = element.getAsJsonObject();
+
+        for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+            if (entry.getKey().equals("geometry")) {
+                walk(entry.getValue(), events);
+            } else if (entry.getKey().equals("features") || entry.getKey().equals("geometries")) {
+                for (JsonElement child : entry.getValue().getAsJsonArray()) {
+                    walk(child, events);
+                }
+            }
+        }
+
+        if (!object.has("coordinates")) {
+            return;
+        }
+
+        JsonArray coordinates = object.getAsJsonArray("coordinates");
+
+        switch (object.get("type").getAsString()) {
+            case "Point":
+                events.onPoint(coordinates.get(1).getAsDouble(), coordinates.get(0).getAsDouble());
+                break;
+            case "MultiPoint":
+                for (JsonElement position : coordinates) {
+                    events.onPoint(position.getAsJsonArray().get(1).getAsDouble(), position.getAsJsonArray().get(0).getAsDouble());
+                }
+                break;
+            case "Polygon":
+                events.onPolygon(rings(coordinates));
+                break;
+            case "MultiPolygon":
+                for (JsonElement polygon : coordinates) {
+                    events.onPolygon(rings(polygon.getAsJsonArray()));
+                }
+                break;
+            default:
+                events.skipped++;
+                break;
+        }
+    }
+
+    private static double[][] rings(JsonArray polygon) {
+        double[][] rings = new double[polygon.size()][];
+
+        for (int i = 0; i < rings.length; i++) {
+            JsonArray ring = polygon.get(i).getAsJsonArray();
+
+            rings[i] = new double[ring.size() * 2];
+
+            for (int j = 0; j < ring.size(); j++) {
+                rings[i][j * 2] = ring.get(j).getAsJsonArray().get(1).getAsDouble();
+                rings[i][j * 2 + 1] = ring.get(j).getAsJsonArray().get(0).getAsDouble();
+            }
+        }
+
+        return rings;
+    }
+
+    private static JsonObject featureCollection(Random random) {
+        JsonObject collection = new JsonObject();
+        JsonArray features = new JsonArray();
+
+        collection.addProperty("type", "FeatureCollection");
+
+        for (int i = random.nextInt(10); i > 0; i--) {
+            JsonObject feature = new JsonObject();
+
+            feature.addProperty("type", "Feature");
+
+            if (random.nextBoolean()) {
+                feature.add("properties", noise(random, 3));
+            }
+
+            feature.add("geometry", random.nextInt(8) == 0 ? JsonNull.INSTANCE : geometry(random, 2));
+
+            if (random.nextBoolean()) {
+                feature.add("id", noise(random, 1));
+            }
+
+            features.add(feature);
+        }
+
+        collection.add("features", features);
+
+        return collection;
+    }
+
+    private static JsonObject geometry(Random random, int depth) {
+        String type = TYPES[random.nextInt(depth > 0 ? TYPES.length : TYPES.length - 1)];
+        JsonObject geometry = new JsonObject();
+
+        geometry.addProperty("type", type);
+
+        if (random.nextInt(4) == 0) {
+            geometry.add("bbox", positions(random, 2));
+        }
+
+        switch (type) {
+            case "Point":
+                geometry.add("coordinates", position(random));
+                break;
+            case "MultiPoint":
+            case "LineString":
+                geometry.add("coordinates", positions(random, 1 + random.nextInt(5)));
+                break;
+            case "MultiLineString":
+            case "Polygon":
+                geometry.add("coordinates", rings(random));
+                break;
+            case "MultiPolygon": {
+                JsonArray polygons = new JsonArray();
+
+                for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                    polygons.add(rings(random));
+                }
+
+                geometry.add("coordinates", polygons);
+                break;
+            }
+            default: {
+                JsonArray geometries = new JsonArray();
+
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    geometries.add(geometry(random, depth - 1));
+                }
+
+                geometry.add("geometries", geometries);
+                break;
+            }
+        }
+
+        return geometry;
+    }
+
+    private static JsonArray rings(Random random) {
+        JsonArray rings = new JsonArray();
+
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            rings.add(positions(random, 1 + random.nextInt(6)));
+        }
+
+        return rings;
+    }
+
+    private static JsonArray positions(Random random, int count) {
+        JsonArray positions = new JsonArray();
+
+        for (int i = 0; i < count; i++) {
+            positions.add(position(random));
+        }
+
+        return positions;
+    }
+
+    /**
+     * A position, sometimes with an altitude.
+     */
+    private static JsonArray position(Random random) {
+        JsonArray position = new JsonArray();
+
+        position.add(random.nextDouble() * 360 - 180);
+        position.add(random.nextDouble() * 180 - 90);
+
+        if (random.nextInt(4) == 0) {
+            position.add(random.nextInt(1000));
+        }
+
+        return position;
+    }
+
+    /**
+     * Properties that look like geometries and have to be skipped as a whole.
+     */
+    private static JsonElement noise(Random random, int depth) {
+        switch (depth > 0 ? random.nextInt(4) : random.nextInt(2)) {
+            case 0:
+                return new JsonArray();
+            case 1: {
+                JsonObject object = new JsonObject();
+
+                object.addProperty("name", "feature " + random.nextInt(100));
+
+                return object;
+            }
+            case 2: {
+                JsonObject object = new JsonObject();
+
+                object.add("type", noise(random, depth - 1));
+                object.add("coordinates", position(random));
+                object.add("geometry", geometry(random, 0));
+
+                return object;
+            }
+            default: {
+                JsonArray array = new JsonArray();
+
+                array.add(noise(random, depth - 1));
+                array.add(positions(random, 2));
+
+                return array;
+            }
+        }
+    }
+
+    private static class Events implements YandexGeoJsonReader.Listener {
+        final List<String> events = new ArrayList<>();
+        int skipped;
+
+        @Override
+        public void onPoint(double latitude, double longitude) {
+            events.add("point " + latitude + "," + longitude);
+        }
+
+        @Override
+        public void onPolygon(double[][] rings) {
+            events.add("polygon " + Arrays.deepToString(rings));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class YandexMarkerClustererTest {
+    private static final int CELL_SIZE = 60;
+
+    @Test
+    public void levelsMatchBruteForceGrid() {
+        Random random = new Random(7);
+        int count = 400;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            // Dense spots next to sparse points, so clusters of many sizes show up at most zooms.
+            if (i % 2 == 0) {
+                latitudes[i] = 55.75 + random.nextGaussian() * 0.01;
+                longitudes[i] = 37.62 + random.nextGaussian() * 0.01;
+            } else {
+                latitudes[i] = -80 + random.nextDouble() * 160;
+                longitudes[i] = -179.9 + random.nextDouble() * 359.8;
+            }
+        }
+
+        YandexMarkerClusterer clusterer = new YandexMarkerClusterer(latitudes, longitudes, count, CELL_SIZE);
+
+        for (int zoom = 0; zoom <= YandexMarkerClusterer.MAX_ZOOM; zoom++) {
+            assertLevel(latitudes, longitudes, zoom, clusterer.level(zoom));
+        }
+    }
+
+    @Test
+    public void clustersNestBetweenZooms() {
+        Random random = new Random(11);
+        int count = 300;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 55 + random.nextDouble();
+            longitudes[i] = 37 + random.nextDouble();
+        }
+
+        YandexMarkerClusterer clusterer = new YandexMarkerClusterer(latitudes, longitudes, count, CELL_SIZE);
+
+        for (int zoom = 0; zoom < YandexMarkerClusterer.MAX_ZOOM; zoom++) {
+            YandexMarkerClusterer.Level coarse = clusterer.level(zoom);
+            YandexMarkerClusterer.Level fine = clusterer.level(zoom + 1);
+            int[] parents = new int[fine.clusterCount];
+
+            for (int i = 0; i < count; i++) {
+                parents[fine.clusterOfPoint[i]] = coarse.clusterOfPoint[i];
+            }
+
+            for (int i = 0; i < count; i++) {
+                assertEquals("zoom " + zoom + " point " + i, parents[fine.clusterOfPoint[i]], coarse.clusterOfPoint[i]);
+            }
+        }
+    }
+
+    @Test
+    public void wholeWorldIsOneCellAtZoomZero() {
+        double[] latitudes = { -60, 0, 60, 10 };
+        double[] longitudes = { -170, 0, 170, 90 };
+        YandexMarkerClusterer clusterer = new YandexMarkerClusterer(latitudes, longitudes, 4, 256);
+        YandexMarkerClusterer.Level level = clusterer.level(0);
+
+        assertEquals(1, level.clusterCount);
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, level.members(0));
+        assertEquals(2.5, level.latitudes[0], 1e-9);
+        assertEquals(22.5, level.longitudes[0], 1e-9);
+    }
+
+    @Test
+    public void zoomIsClampedAndTruncated() {
+        YandexMarkerClusterer clusterer = new YandexMarkerClusterer(new double[] { 55.75 }, new double[] { 37.62 }, 1, CELL_SIZE);
+
+        assertSame(clusterer.level(0), clusterer.level(-3));
+        assertSame(clusterer.level(YandexMarkerClusterer.MAX_ZOOM), clusterer.level(40));
+        assertSame(clusterer.level(5), clusterer.level(5.9f));
+    }
+
+    @Test
+    public void noPointsGiveNoClusters() {
+        YandexMarkerClusterer clusterer = new YandexMarkerClusterer(new double[0], new double[0], 0, CELL_SIZE);
+
+        for (int zoom = 0; zoom <= YandexMarkerClusterer.MAX_ZOOM; zoom++) {
+            assertEquals(0, clusterer.level(zoom).clusterCount);
+        }
+    }
+
+    /**
+     * Groups points by the cell of CELL_SIZE pixels they fall in at the zoom, with cells at lower
+     * zooms made of whole cells of MAX_ZOOM. Groups are keyed by cell.
+     */
+    private static Map<String, List<Integer>> bruteForce(double[] latitudes, double[] longitudes, int zoom) {
+        Map<String, List<Integer>> cells = new HashMap<>();
+        double worldSize = 256.0 * Math.pow(2, YandexMarkerClusterer.MAX_ZOOM);
+        long scale = 1L << (YandexMarkerClusterer.MAX_ZOOM - zoom);
+
+        for (int i = 0; i < latitudes.length; i++) {
+            double latitude = Math.toRadians(latitudes[i]);
+            double x = (longitudes[i] + 180) / 360 * worldSize;
+            double y = (1 - Math.log(Math.tan(Math.PI / 4 + latitude / 2)) / Math.PI) / 2 * worldSize;
+            String key = Math.floorDiv((long) (x / CELL_SIZE), scale) + ":" + Math.floorDiv((long) (y / CELL_SIZE), scale);
+            List<Integer> members = cells.get(key);
+
+            if (members == null) {
+                members = new ArrayList<>();
+                cells.put(key, members);
+            }
+
+            members.add(i);
+        }
+
+        return cells;
+    }
+
+    private static void assertLevel(double[] latitudes, double[] longitudes, int zoom, YandexMarkerClusterer.Level level) {
+        Map<String, List<Integer>> expected = bruteForce(latitudes, longitudes, zoom);
+
+        assertEquals("clusters at zoom " + zoom, expected.size(), level.clusterCount);
+
+        for (List<Integer> members : expected.values()) {
+            int cluster = level.clusterOfPoint[members.get(0)];
+            int[] expectedMembers = new int[members.size()];
+            double latitude = 0;
+            double longitude = 0;
+
+            for (int i = 0; i < expectedMembers.length; i++) {
+                expectedMembers[i] = members.get(i);
+                latitude += latitudes[expectedMembers[i]];
+                longitude += longitudes[expectedMembers[i]];
+            }
+
+            assertArrayEquals("members at zoom " + zoom, expectedMembers, level.members(cluster));
+            assertEquals(expectedMembers.length, level.counts[cluster]);
+            assertEquals("latitude at zoom " + zoom, latitude / expectedMembers.length, level.latitudes[cluster], 1e-9);
+            assertEquals("longitude at zoom " + zoom, longitude / expectedMembers.length, level.longitudes[cluster], 1e-9);
+        }
+    }
+}
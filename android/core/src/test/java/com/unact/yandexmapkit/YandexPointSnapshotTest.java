@@ -0,0 +1,276 @@
+package com.unact.yandexmapkit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class YandexPointSnapshotTest {
+    private static final double EARTH_RADIUS = 6371000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void boxMatchesLinearScan() throws InterruptedException {
+        Random random = new Random(1);
+        Points points = new Points(random, 5000);
+        YandexPointSnapshot snapshot = points.snapshot(4);
+
+        for (int i = 0; i < 200; i++) {
+            double minLatitude = random.nextDouble() * 180 - 90;
+            double maxLatitude = minLatitude + random.nextDouble() * (90 - minLatitude);
+            double minLongitude = random.nextDouble() * 360 - 180;
+            double maxLongitude = minLongitude + random.nextDouble() * (180 - minLongitude);
+
+            assertBox(points, snapshot, minLatitude, minLongitude, maxLatitude, maxLongitude);
+        }
+    }
+
+    @Test
+    public void boxAcrossAntimeridianMatchesLinearScan() throws InterruptedException {
+        Random random = new Random(2);
+        Points points = new Points(random, 5000);
+        YandexPointSnapshot snapshot = points.snapshot(4);
+
+        for (int i = 0; i < 200; i++) {
+            double minLatitude = random.nextDouble() * 180 - 90;
+            double maxLatitude = minLatitude + random.nextDouble() * (90 - minLatitude);
+            double minLongitude = 180 - random.nextDouble() * 90;
+            double maxLongitude = -180 + random.nextDouble() * 90;
+
+            assertBox(points, snapshot, minLatitude, minLongitude, maxLatitude, maxLongitude);
+        }
+
+        // Points on the antimeridian itself belong to both halves of the box but are passed once.
+        Points edge = new Points(new double[] { 0, 10, -10 }, new double[] { 180, -180, 180 });
+
+        assertBox(edge, edge.snapshot(1), -20, 170, 20, -170);
+    }
+
+    @Test
+    public void parallelBoxMatchesLinearScan() throws InterruptedException {
+        Random random = new Random(3);
+        Points points = new Points(random, 100000);
+        YandexPointSnapshot snapshot = points.snapshot(4);
+
+        assertBox(points, snapshot, -90, -180, 90, 180);
+        assertBox(points, snapshot, -60, 100, 70, -100);
+
+        for (int i = 0; i < 20; i++) {
+            double minLatitude = random.nextDouble() * 90 - 90;
+            double minLongitude = random.nextDouble() * 180 - 180;
+
+            assertBox(points, snapshot, minLatitude, minLongitude, minLatitude + 90, minLongitude + 180);
+        }
+    }
+
+    @Test
+    public void radiusMatchesGreatCircleScan() throws InterruptedException {
+        Random random = new Random(4);
+        Points points = new Points(random, 5000);
+        YandexPointSnapshot snapshot = points.snapshot(4);
+        // Near the antimeridian, near a pole and far apart from both.
+        double[][] centers = { {10, 179.5}, {-20, -179.9}, {89.5, 0}, {-88, 120}, {55.75, 37.62} };
+
+        for (double[] center : centers) {
+            for (double radius : new double[] { 1000, 100000, 1000000, 5000000 }) {
+                List<Integer> expected = new ArrayList<>();
+
+                for (int i = 0; i < points.size(); i++) {
+                    if (greatCircle(center[0], center[1], points.latitudes[i], points.longitudes[i]) <= radius) {
+                        expected.add(points.ids[i]);
+                    }
+                }
+
+                LinkedBlockingQueue<int[]> results = new LinkedBlockingQueue<>();
+
+                snapshot.queryRadius(center[0], center[1], radius, executor, callback(results));
+                assertIds(Arrays.toString(center) + " " + radius, expected, results.poll(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    public void nearestMatchesSortedScan() {
+        Random random = new Random(5);
+        Points points = new Points(random, 5000);
+        YandexPointSnapshot snapshot = points.snapshot(4);
+
+        for (int i = 0; i < 100; i++) {
+            final double latitude = random.nextDouble() * 160 - 80;
+            final double longitude = i % 4 == 0 ? 179.9 : random.nextDouble() * 360 - 180;
+            int count = random.nextInt(40);
+            double maxDistance = i % 2 == 0 ? Double.POSITIVE_INFINITY : random.nextDouble() * 2000000;
+            List<Integer> order = new ArrayList<>();
+            final double[] distances = new double[points.size()];
+
+            for (int j = 0; j < points.size(); j++) {
+                distances[j] = equirectangular(latitude, longitude, points.latitudes[j], points.longitudes[j]);
+
+                if (distances[j] <= maxDistance) {
+                    order.add(j);
+                }
+            }
+
+            Collections.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(distances[a], distances[b]);
+                }
+            });
+
+            int[] expected = new int[Math.min(count, order.size())];
+
+            for (int j = 0; j < expected.length; j++) {
+                expected[j] = points.ids[order.get(j)];
+            }
+
+            assertArrayEquals(expected, snapshot.nearest(latitude, longitude, count, maxDistance));
+        }
+    }
+
+    private void assertBox(
+            Points points,
+            YandexPointSnapshot snapshot,
+            double minLatitude,
+            double minLongitude,
+            double maxLatitude,
+            double maxLongitude
+    ) throws InterruptedException {
+        List<Integer> expected = new ArrayList<>();
+
+        for (int i = 0; i < points.size(); i++) {
+            double latitude = points.latitudes[i];
+            double longitude = points.longitudes[i];
+            boolean insideLongitude = minLongitude <= maxLongitude
+                    ? longitude >= minLongitude && longitude <= maxLongitude
+                    : longitude >= minLongitude || longitude <= maxLongitude;
+
+            if (latitude >= minLatitude && latitude <= maxLatitude && insideLongitude) {
+                expected.add(points.ids[i]);
+            }
+        }
+
+        LinkedBlockingQueue<int[]> results = new LinkedBlockingQueue<>();
+
+        snapshot.query(minLatitude, minLongitude, maxLatitude, maxLongitude, null, executor, callback(results));
+        assertIds(minLatitude + "," + minLongitude + " " + maxLatitude + "," + maxLongitude, expected, results.poll(10, TimeUnit.SECONDS));
+    }
+
+    private static void assertIds(String message, List<Integer> expected, int[] actual) {
+        assertNotNull(message, actual);
+
+        int[] sorted = actual.clone();
+        int[] sortedExpected = new int[expected.size()];
+
+        for (int i = 0; i < sortedExpected.length; i++) {
+            sortedExpected[i] = expected.get(i);
+        }
+
+        Arrays.sort(sorted);
+        Arrays.sort(sortedExpected);
+        assertEquals(message, Arrays.toString(sortedExpected), Arrays.toString(sorted));
+    }
+
+    private static YandexPointSnapshot.Callback callback(LinkedBlockingQueue<int[]> results) {
+        return new YandexPointSnapshot.Callback() {
+            @Override
+            public void onResult(int[] ids) {
+                results.add(ids);
+            }
+        };
+    }
+
+    /**
+     * Haversine distance in meters.
+     */
+    private static double greatCircle(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinPhi = Math.sin((phi2 - phi1) / 2);
+        double sinLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinPhi * sinPhi + Math.cos(phi1) * Math.cos(phi2) * sinLambda * sinLambda;
+
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Distance in meters in the equirectangular projection at the first latitude, with the
+     * longitude difference taken the short way around.
+     */
+    private static double equirectangular(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double longitudeDelta = Math.abs(longitude2 - longitude1);
+
+        if (longitudeDelta > 180) {
+            longitudeDelta = 360 - longitudeDelta;
+        }
+
+        double x = longitudeDelta * Math.cos(Math.toRadians(latitude1));
+        double y = latitude2 - latitude1;
+
+        return Math.toRadians(Math.sqrt(x * x + y * y)) * EARTH_RADIUS;
+    }
+
+    /**
+     * Points with distinct ids, kept apart from the arrays the snapshot takes ownership of.
+     */
+    private static class Points {
+        final int[] ids;
+        final double[] latitudes;
+        final double[] longitudes;
+
+        Points(Random random, int count) {
+            ids = new int[count];
+            latitudes = new double[count];
+            longitudes = new double[count];
+
+            for (int i = 0; i < count; i++) {
+                ids[i] = i * 7 + 3;
+                latitudes[i] = random.nextDouble() * 180 - 90;
+                longitudes[i] = random.nextDouble() * 360 - 180;
+            }
+        }
+
+        Points(double[] latitudes, double[] longitudes) {
+            this.ids = new int[latitudes.length];
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = i;
+            }
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        YandexPointSnapshot snapshot(int parallelism) {
+            return new YandexPointSnapshot(
+                    ids.clone(),
+                    latitudes.clone(),
+                    longitudes.clone(),
+                    size(),
+                    parallelism
+            );
+        }
+    }
+}
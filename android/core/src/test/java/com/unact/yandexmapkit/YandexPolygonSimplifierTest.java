@@ -0,0 +1,186 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class YandexPolygonSimplifierTest {
+    private static final double PIXEL_TOLERANCE = 1.5;
+
+    @Test
+    public void levelsMatchDouglasPeuckerAtTheirTolerance() {
+        Random random = new Random(3);
+        double[][] rings = {
+                ring(random, 55.75, 37.62, 0.2, 600, 0.3),
+                ring(random, 55.75, 37.62, 0.05, 200, 0.2),
+                ring(random, 55.80, 37.70, 0.002, 40, 0.5)
+        };
+        YandexPolygonSimplifier simplifier = new YandexPolygonSimplifier(rings, PIXEL_TOLERANCE);
+        double[][] finer = null;
+
+        for (int zoom = YandexPolygonSimplifier.MAX_ZOOM; zoom >= 0; zoom--) {
+            double tolerance = PIXEL_TOLERANCE / (1L << zoom);
+            double[][] expected = new double[rings.length][];
+
+            for (int i = 0; i < rings.length; i++) {
+                expected[i] = douglasPeucker(rings[i], tolerance);
+
+                if (i > 0 && expected[i].length < 8) {
+                    expected[i] = new double[0];
+                }
+            }
+
+            // A level whose outer ring would degenerate shows the next finer one instead.
+            if (expected[0].length < 8 && finer != null) {
+                expected = finer;
+            }
+
+            double[][] level = simplifier.level(zoom);
+
+            assertEquals(rings.length, level.length);
+
+            for (int i = 0; i < rings.length; i++) {
+                assertArrayEquals("ring " + i + " at zoom " + zoom, expected[i], level[i], 0);
+            }
+
+            finer = expected;
+        }
+    }
+
+    @Test
+    public void childOfCloseSplitIsDroppedWithIt() {
+        // The third vertex is barely off the chord of the first edge, and the second vertex is
+        // farther off the segment the third one splits off. Douglas-Peucker never looks at that
+        // segment at tolerances the third vertex is dropped at, so neither may be kept.
+        double[] ring = {
+                0, 0,
+                -0.00095, 0.19,
+                0.001, 0.2,
+                0, 2,
+                1, 1,
+                0, 0
+        };
+        YandexPolygonSimplifier simplifier = new YandexPolygonSimplifier(new double[][] { ring }, PIXEL_TOLERANCE);
+
+        for (int zoom = 0; zoom <= YandexPolygonSimplifier.MAX_ZOOM; zoom++) {
+            double[] expected = douglasPeucker(ring, PIXEL_TOLERANCE / (1L << zoom));
+
+            if (expected.length >= 8) {
+                assertArrayEquals("zoom " + zoom, expected, simplifier.level(zoom)[0], 0);
+            }
+        }
+    }
+
+    @Test
+    public void levelsWithTheSameVerticesShareArrays() {
+        double[] square = { 0, 0, 0, 1, 1, 1, 1, 0, 0, 0 };
+        YandexPolygonSimplifier simplifier = new YandexPolygonSimplifier(new double[][] { square }, PIXEL_TOLERANCE);
+
+        for (int zoom = 1; zoom <= YandexPolygonSimplifier.MAX_ZOOM; zoom++) {
+            assertSame(simplifier.level(0), simplifier.level(zoom));
+        }
+
+        assertArrayEquals(square, simplifier.level(0)[0], 0);
+    }
+
+    @Test
+    public void zoomIsClampedAndTruncated() {
+        Random random = new Random(5);
+        YandexPolygonSimplifier simplifier = new YandexPolygonSimplifier(
+                new double[][] { ring(random, 0, 0, 1, 100, 0.3) },
+                PIXEL_TOLERANCE
+        );
+
+        assertSame(simplifier.level(0), simplifier.level(-1));
+        assertSame(simplifier.level(YandexPolygonSimplifier.MAX_ZOOM), simplifier.level(30));
+        assertSame(simplifier.level(7), simplifier.level(7.99f));
+    }
+
+    /**
+     * Closed ring of noisy vertices around the center, as flat latitude/longitude pairs.
+     */
+    private static double[] ring(Random random, double latitude, double longitude, double radius, int count, double noise) {
+        double[] ring = new double[(count + 1) * 2];
+
+        for (int i = 0; i < count; i++) {
+            double angle = 2 * Math.PI * i / count;
+            double r = radius * (1 + noise * (random.nextDouble() - 0.5));
+
+            ring[i * 2] = latitude + r * Math.sin(angle);
+            ring[i * 2 + 1] = longitude + r * Math.cos(angle);
+        }
+
+        ring[count * 2] = ring[0];
+        ring[count * 2 + 1] = ring[1];
+
+        return ring;
+    }
+
+    /**
+     * Recursive Douglas-Peucker in Web Mercator pixels at zoom 0, keeping vertices farther than the
+     * tolerance from the segment, and on ties the first of the farthest.
+     */
+    private static double[] douglasPeucker(double[] ring, double tolerance) {
+        int count = ring.length / 2;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        boolean[] kept = new boolean[count];
+
+        for (int i = 0; i < count; i++) {
+            double latitude = Math.toRadians(ring[i * 2]);
+
+            x[i] = (ring[i * 2 + 1] + 180) / 360 * 256;
+            y[i] = (1 - Math.log(Math.tan(Math.PI / 4 + latitude / 2)) / Math.PI) / 2 * 256;
+        }
+
+        kept[0] = true;
+        kept[count - 1] = true;
+        simplify(x, y, 0, count - 1, tolerance * tolerance, kept);
+
+        double[] result = new double[ring.length];
+        int size = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (kept[i]) {
+                result[size++] = ring[i * 2];
+                result[size++] = ring[i * 2 + 1];
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    private static void simplify(double[] x, double[] y, int first, int last, double sqTolerance, boolean[] kept) {
+        double maxSqDistance = sqTolerance;
+        int index = -1;
+
+        for (int i = first + 1; i < last; i++) {
+            double sqDistance = sqDistanceToSegment(x[i], y[i], x[first], y[first], x[last], y[last]);
+
+            if (sqDistance > maxSqDistance) {
+                maxSqDistance = sqDistance;
+                index = i;
+            }
+        }
+
+        if (index >= 0) {
+            kept[index] = true;
+            simplify(x, y, first, index, sqTolerance, kept);
+            simplify(x, y, index, last, sqTolerance, kept);
+        }
+    }
+
+    private static double sqDistanceToSegment(double px, double py, double ax, double ay, double bx, double by) {
+        double lengthSq = (bx - ax) * (bx - ax) + (by - ay) * (by - ay);
+        double t = lengthSq == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * (bx - ax) + (py - ay) * (by - ay)) / lengthSq));
+        double dx = px - (ax + t * (bx - ax));
+        double dy = py - (ay + t * (by - ay));
+
+        return dx * dx + dy * dy;
+    }
+}
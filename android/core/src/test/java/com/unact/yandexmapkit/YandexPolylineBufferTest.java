@@ -0,0 +1,206 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class YandexPolylineBufferTest {
+    private static final double EARTH_RADIUS = 6371000;
+
+    @Test
+    public void unlimitedBufferKeepsEveryPoint() {
+        Random random = new Random(1);
+        YandexPolylineBuffer buffer = new YandexPolylineBuffer(0, 0, 0);
+        List<double[]> expected = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            double[] coordinates = track(random, 55.75, 37.62, random.nextInt(20));
+
+            buffer.append(coordinates);
+            addAll(expected, coordinates, 0);
+            assertPoints(expected, buffer);
+        }
+    }
+
+    @Test
+    public void ringKeepsLastCapacityPoints() {
+        Random random = new Random(2);
+
+        for (int capacity : new int[] { 1, 7, 16, 50 }) {
+            YandexPolylineBuffer buffer = new YandexPolylineBuffer(capacity, 0, 0);
+            List<double[]> expected = new ArrayList<>();
+
+            for (int i = 0; i < 40; i++) {
+                double[] coordinates = track(random, 55.75, 37.62, random.nextInt(capacity * 2 + 1));
+
+                buffer.append(coordinates);
+                addAll(expected, coordinates, capacity);
+                assertPoints(expected, buffer);
+            }
+        }
+    }
+
+    @Test
+    public void thinningMatchesRecursiveDouglasPeucker() {
+        Random random = new Random(3);
+
+        for (int capacity : new int[] { 0, 210 }) {
+            YandexPolylineBuffer buffer = new YandexPolylineBuffer(capacity, 200, 5);
+            List<double[]> expected = new ArrayList<>();
+
+            for (int i = 0; i < 60; i++) {
+                double[] coordinates = track(random, 55.75, 37.62, random.nextInt(80));
+
+                buffer.append(coordinates);
+                addAll(expected, coordinates, capacity);
+
+                if (expected.size() > 200) {
+                    List<double[]> recent = new ArrayList<>(expected.subList(expected.size() - 100, expected.size()));
+
+                    thin(expected, 200, 5);
+                    assertTrue(expected.size() <= 150);
+                    assertEquals(recent, expected.subList(expected.size() - 100, expected.size()));
+                }
+
+                assertPoints(expected, buffer);
+            }
+        }
+    }
+
+    @Test
+    public void clearEmptiesBuffer() {
+        YandexPolylineBuffer buffer = new YandexPolylineBuffer(4, 0, 0);
+        List<double[]> expected = new ArrayList<>();
+
+        buffer.append(new double[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 });
+        buffer.clear();
+        assertEquals(0, buffer.size());
+
+        buffer.append(new double[] { 11, 12, 13, 14 });
+        addAll(expected, new double[] { 11, 12, 13, 14 }, 4);
+        assertPoints(expected, buffer);
+    }
+
+    private static void assertPoints(List<double[]> expected, YandexPolylineBuffer buffer) {
+        assertEquals(expected.size(), buffer.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("latitude " + i, expected.get(i)[0], buffer.latitude(i), 0);
+            assertEquals("longitude " + i, expected.get(i)[1], buffer.longitude(i), 0);
+        }
+    }
+
+    /**
+     * A random walk of the given number of points as flat latitude/longitude pairs.
+     */
+    private static double[] track(Random random, double latitude, double longitude, int count) {
+        double[] coordinates = new double[count * 2];
+
+        for (int i = 0; i < count; i++) {
+            latitude += (random.nextDouble() - 0.5) * 0.0005;
+            longitude += (random.nextDouble() - 0.5) * 0.0005;
+            coordinates[i * 2] = latitude;
+            coordinates[i * 2 + 1] = longitude;
+        }
+
+        return coordinates;
+    }
+
+    /**
+     * Appends the pairs to the points, dropping the oldest ones past the capacity.
+     */
+    private static void addAll(List<double[]> points, double[] coordinates, int capacity) {
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            points.add(new double[] { coordinates[i], coordinates[i + 1] });
+
+            if (capacity > 0 && points.size() > capacity) {
+                points.remove(0);
+            }
+        }
+    }
+
+    /**
+     * Simplifies all but the newest half of the threshold, doubling the tolerance until the points
+     * are down to three quarters of the threshold.
+     */
+    private static void thin(List<double[]> points, int threshold, double tolerance) {
+        int recent = threshold / 2;
+
+        for (int pass = 0; pass < 16 && points.size() > threshold * 3 / 4; pass++) {
+            List<double[]> old = points.subList(0, points.size() - recent);
+            boolean[] keep = new boolean[old.size()];
+
+            if (old.size() < 3) {
+                break;
+            }
+
+            double cos = Math.cos(Math.toRadians(points.get(0)[0]));
+
+            keep[0] = true;
+            keep[old.size() - 1] = true;
+            douglasPeucker(old, 0, old.size() - 1, Math.pow(tolerance / EARTH_RADIUS, 2), cos, keep);
+
+            for (int i = old.size() - 1; i >= 0; i--) {
+                if (!keep[i]) {
+                    old.remove(i);
+                }
+            }
+
+            tolerance *= 2;
+        }
+    }
+
+    private static void douglasPeucker(List<double[]> points, int first, int last, double sqTolerance, double cos, boolean[] keep) {
+        double maxSqDistance = sqTolerance;
+        int index = -1;
+
+        for (int i = first + 1; i < last; i++) {
+            double sqDistance = sqSegmentDistance(
+                    x(points.get(i), cos), y(points.get(i)),
+                    x(points.get(first), cos), y(points.get(first)),
+                    x(points.get(last), cos), y(points.get(last))
+            );
+
+            if (sqDistance > maxSqDistance) {
+                maxSqDistance = sqDistance;
+                index = i;
+            }
+        }
+
+        if (index >= 0) {
+            keep[index] = true;
+            douglasPeucker(points, first, index, sqTolerance, cos, keep);
+            douglasPeucker(points, index, last, sqTolerance, cos, keep);
+        }
+    }
+
+    private static double x(double[] point, double cos) {
+        return Math.toRadians(point[1]) * cos;
+    }
+
+    private static double y(double[] point) {
+        return Math.toRadians(point[0]);
+    }
+
+    private static double sqSegmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double t = dx != 0 || dy != 0 ? ((px - ax) * dx + (py - ay) * dy) / (dx * dx + dy * dy) : 0;
+
+        if (t > 1) {
+            dx = px - bx;
+            dy = py - by;
+        } else {
+            t = Math.max(0, t);
+            dx = px - (ax + dx * t);
+            dy = py - (ay + dy * t);
+        }
+
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,127 @@
+package com.unact.yandexmapkit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class YandexTtlCacheTest {
+    @Test
+    public void randomOperationsMatchListScan() {
+        Random random = new Random(1);
+
+        for (int maxEntries : new int[] { 1, 3, 16 }) {
+            TestCache cache = new TestCache(maxEntries, 100);
+            List<long[]> expected = new ArrayList<>();
+
+            for (int i = 0; i < 20000; i++) {
+                long key = random.nextInt(maxEntries * 2 + 2);
+
+                cache.time += random.nextInt(5) * 1000000L;
+
+                if (random.nextBoolean()) {
+                    long value = random.nextLong();
+
+                    cache.put(key, value);
+                    put(expected, key, value, cache.time, maxEntries);
+                } else {
+                    assertEquals("operation " + i, get(expected, key, cache.time, 100), cache.get(key));
+                }
+
+                assertEquals("operation " + i, expected.size(), cache.size());
+            }
+        }
+    }
+
+    @Test
+    public void entriesExpireAfterTtl() {
+        TestCache cache = new TestCache(10, 100);
+
+        cache.put(1L, 10L);
+        cache.time += 100 * 1000000L;
+
+        assertEquals(Long.valueOf(10), cache.get(1L));
+
+        // Reading an entry does not extend its life.
+        cache.time += 1;
+
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        TestCache cache = new TestCache(2, 100);
+
+        cache.put(1L, 10L);
+        cache.put(2L, 20L);
+        cache.get(1L);
+        cache.put(3L, 30L);
+
+        assertNull(cache.get(2L));
+        assertEquals(Long.valueOf(10), cache.get(1L));
+        assertEquals(Long.valueOf(30), cache.get(3L));
+    }
+
+    /**
+     * Appends the entry as the most recently used one, dropping the least recently used ones past
+     * maxEntries.
+     */
+    private static void put(List<long[]> entries, long key, long value, long time, int maxEntries) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i)[0] == key) {
+                entries.remove(i);
+                break;
+            }
+        }
+
+        entries.add(new long[] { key, value, time });
+
+        while (entries.size() > maxEntries) {
+            entries.remove(0);
+        }
+    }
+
+    /**
+     * Value of the entry, which becomes the most recently used one, or null when it is missing or
+     * older than the TTL, in which case it is dropped.
+     */
+    private static Long get(List<long[]> entries, long key, long time, long ttlMillis) {
+        for (int i = 0; i < entries.size(); i++) {
+            long[] entry = entries.get(i);
+
+            if (entry[0] != key) {
+                continue;
+            }
+
+            entries.remove(i);
+
+            if (time - entry[2] > ttlMillis * 1000000) {
+                return null;
+            }
+
+            entries.add(entry);
+
+            return entry[1];
+        }
+
+        return null;
+    }
+
+    private static class TestCache extends YandexTtlCache<Long, Long> {
+        long time;
+
+        TestCache(int maxEntries, long ttlMillis) {
+            super(maxEntries, ttlMillis);
+        }
+
+        @Override
+        long now() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.geometry.LinearRing;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.geometry.Polygon;
+import com.yandex.mapkit.map.CameraPosition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packed geometry format used on top of StandardMessageCodec.
+ *
+ * Coordinates are sent as flat latitude/longitude pairs, either as a Float64List (decoded as double[])
+ * or as a little-endian Uint8List (decoded as byte[]).
+ * Camera positions are packed as [latitude, longitude, zoom, azimuth, tilt].
+ */
+class YandexBinaryConversion {
+    static boolean isPacked(Object o) {
+        return o instanceof double[] || o instanceof byte[];
+    }
+
+    static double[] toCoordinates(Object o) {
+        if (o instanceof double[]) {
+            return (double[]) o;
+        }
+
+        DoubleBuffer buffer = ByteBuffer.wrap((byte[]) o).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        double[] coordinates = new double[buffer.remaining()];
+
+        buffer.get(coordinates);
+
+        return coordinates;
+    }
+
+    static List<Point> toPoints(Object o) {
+        return toPoints(toCoordinates(o));
+    }
+
+    static List<Point> toPoints(double[] coordinates) {
+        List<Point> points = new ArrayList<>(coordinates.length / 2);
+
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            points.add(new Point(coordinates[i], coordinates[i + 1]));
+        }
+
+        return points;
+    }
+
+    static Point toPoint(Object o) {
+        double[] coordinates = toCoordinates(o);
+
+        return new Point(coordinates[0], coordinates[1]);
+    }
+
+    static double[] fromPoint(Point point) {
+        return new double[] { point.getLatitude(), point.getLongitude() };
+    }
+
+    static CameraPosition toCameraPosition(Object o) {
+        double[] values = toCoordinates(o);
+
+        return new CameraPosition(
+                new Point(values[0], values[1]),
+                (float) values[2],
+                (float) values[3],
+                (float) values[4]
+        );
+    }
+
+    static double[] fromCameraPosition(CameraPosition position) {
+        return new double[] {
+                position.getTarget().getLatitude(),
+                position.getTarget().getLongitude(),
+                position.getZoom(),
+                position.getAzimuth(),
+                position.getTilt()
+        };
+    }
+
+    static Polygon toPolygon(Map<?, ?> params) {
+        return toPolygon(toRings(params));
+    }
+
+    /**
+     * Outer ring followed by non-empty inner rings as flat coordinate arrays.
+     * Inner rings are read from innerRings, or from innerPoints holding a single ring.
+     */
+    static double[][] toRings(Map<?, ?> params) {
+        List<double[]> rings = new ArrayList<>();
+        Object innerRings = params.get("innerRings");
+
+        rings.add(toCoordinates(params.get("outerPoints")));
+
+        if (innerRings instanceof List) {
+            for (Object innerRing : (List<?>) innerRings) {
+                addRing(rings, innerRing);
+            }
+        } else {
+            addRing(rings, params.get("innerPoints"));
+        }
+
+        return rings.toArray(new double[0][]);
+    }
+
+    private static void addRing(List<double[]> rings, Object points) {
+        if (points != null) {
+            double[] coordinates = toCoordinates(points);
+
+            if (coordinates.length > 0) {
+                rings.add(coordinates);
+            }
+        }
+    }
+
+    /**
+     * Builds a polygon from toRings output, skipping empty inner rings.
+     */
+    static Polygon toPolygon(double[][] rings) {
+        ArrayList<LinearRing> innerRings = new ArrayList<>();
+
+        for (int i = 1; i < rings.length; i++) {
+            if (rings[i].length > 0) {
+                innerRings.add(new LinearRing(toPoints(rings[i])));
+            }
+        }
+
+        return new Polygon(new LinearRing(toPoints(rings[0])), innerRings);
+    }
+
+    static int toColor(Object o) {
+        return (int) ((Number) o).longValue();
+    }
+}
@@ -0,0 +1,226 @@
+package com.unact.yandexmapkit;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Handles method calls in two stages.
+ *
+ * Arguments of calls the decoder decodes are read on a background thread, then what the call
+ * changes is applied on the main thread. Calls are applied in the order they came, as many ready
+ * ones per main loop pass as fit in APPLY_BUDGET_NANOS. Other calls are handled right away unless
+ * they have to wait for earlier decoded calls. Results are sent once a call is applied.
+ * While YandexMetrics is enabled, decode and apply times of each call are recorded.
+ */
+class YandexCallPipeline {
+    interface Decoder {
+        boolean decodes(String method);
+
+        /**
+         * Runs on the decoder thread. Returns null to handle the call as if it was not decoded.
+         */
+        Applier decode(MethodCall call);
+
+        /**
+         * Handles a call without decoding on the main thread.
+         */
+        void handle(MethodCall call, MethodChannel.Result result);
+    }
+
+    interface Applier {
+        /**
+         * Runs on the main thread, returns the result of the call.
+         */
+        Object apply();
+    }
+
+    private static final long APPLY_BUDGET_NANOS = 8000000;
+
+    private final Decoder decoder;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "YandexCallPipeline");
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    private boolean disposed;
+
+    private final Runnable applyRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyScheduled.set(false);
+            applyReady();
+        }
+    };
+
+    YandexCallPipeline(Decoder decoder) {
+        this.decoder = decoder;
+    }
+
+    void submit(MethodCall call, MethodChannel.Result result) {
+        if (disposed) {
+            result.error("disposed", "Map was disposed", null);
+            return;
+        }
+
+        boolean measured = YandexMetrics.getInstance().isEnabled();
+
+        if (measured) {
+            YandexMetrics.getInstance().recordCall(call.method, call.arguments);
+        }
+
+        if (!decoder.decodes(call.method)) {
+            if (entries.isEmpty()) {
+                handle(call, result, measured);
+            } else {
+                Entry entry = new Entry(call, result, measured);
+
+                entry.decoded = true;
+                entries.add(entry);
+            }
+
+            return;
+        }
+
+        final Entry entry = new Entry(call, result, measured);
+
+        entries.add(entry);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+
+                try {
+                    entry.applier = decoder.decode(entry.call);
+                } catch (RuntimeException e) {
+                    entry.error = e;
+                }
+
+                if (entry.measured) {
+                    YandexMetrics.getInstance().recordDecode(entry.call.method, System.nanoTime() - start);
+                }
+
+                entry.decoded = true;
+
+                if (applyScheduled.compareAndSet(false, true)) {
+                    mainHandler.post(applyRunnable);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops decoding and answers every queued call with an error, so callers do not wait forever.
+     */
+    void dispose() {
+        disposed = true;
+        executor.shutdownNow();
+        mainHandler.removeCallbacks(applyRunnable);
+
+        for (Entry entry : entries) {
+            entry.result.error("disposed", "Map was disposed before " + entry.call.method + " was applied", null);
+        }
+
+        entries.clear();
+    }
+
+    private void applyReady() {
+        long start = System.nanoTime();
+
+        while (!disposed && !entries.isEmpty() && entries.peek().decoded) {
+            if (System.nanoTime() - start > APPLY_BUDGET_NANOS) {
+                if (applyScheduled.compareAndSet(false, true)) {
+                    mainHandler.post(applyRunnable);
+                }
+
+                return;
+            }
+
+            apply(entries.poll());
+        }
+    }
+
+    private void apply(Entry entry) {
+        if (entry.error != null) {
+            Log.d("FLUTTER", "Cannot decode " + entry.call.method + ": " + entry.error.getLocalizedMessage());
+            entry.result.error("error", entry.error.getMessage(), null);
+            return;
+        }
+
+        if (entry.applier == null) {
+            handle(entry.call, entry.result, entry.measured);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Object value;
+
+        try {
+            value = entry.applier.apply();
+        } catch (RuntimeException e) {
+            Log.d("FLUTTER", "Cannot apply " + entry.call.method + ": " + e.getLocalizedMessage());
+            entry.result.error("error", e.getMessage(), null);
+            return;
+        } finally {
+            if (entry.measured) {
+                YandexMetrics.getInstance().recordApply(entry.call.method, System.nanoTime() - start);
+            }
+        }
+
+        entry.result.success(value);
+    }
+
+    private void handle(MethodCall call, MethodChannel.Result result, boolean measured) {
+        long start = System.nanoTime();
+
+        try {
+            decoder.handle(call, result);
+        } catch (RuntimeException e) {
+            Log.d("FLUTTER", "Cannot handle " + call.method + ": " + e.getLocalizedMessage());
+            result.error("error", e.getMessage(), null);
+        } finally {
+            if (measured) {
+                YandexMetrics.getInstance().recordApply(call.method, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static class Entry {
+        final MethodCall call;
+        final MethodChannel.Result result;
+        final boolean measured;
+
+        volatile Applier applier;
+        volatile RuntimeException error;
+        volatile boolean decoded;
+
+        Entry(MethodCall call, MethodChannel.Result result, boolean measured) {
+            this.call = call;
+            this.result = result;
+            this.measured = measured;
+        }
+    }
+}
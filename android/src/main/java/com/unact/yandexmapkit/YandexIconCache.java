@@ -0,0 +1,119 @@
+package com.unact.yandexmapkit;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import com.yandex.runtime.image.ImageProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide LRU cache of decoded marker icons, bounded by bitmap byte size.
+ *
+ * Markers that use the same asset at the same size share one Bitmap and one ImageProvider.
+ */
+class YandexIconCache {
+    private static final YandexIconCache instance = new YandexIconCache(defaultMaxBytes());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private IconLruCache cache;
+
+    private YandexIconCache(int maxBytes) {
+        cache = new IconLruCache(maxBytes);
+    }
+
+    static YandexIconCache getInstance() {
+        return instance;
+    }
+
+    static String key(String assetName, String size, float density) {
+        return assetName + "|" + size + "|" + density;
+    }
+
+    private static int defaultMaxBytes() {
+        return (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+    }
+
+    ImageProvider get(String key) {
+        CachedIcon icon = currentCache().get(key);
+
+        if (icon == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return icon.provider;
+    }
+
+    ImageProvider put(String key, Bitmap bitmap) {
+        CachedIcon icon = new CachedIcon(bitmap);
+
+        currentCache().put(key, icon);
+
+        return icon.provider;
+    }
+
+    /**
+     * Replaces the cache with an empty one limited to {@code maxBytes}.
+     * Counters are kept so that stats stay monotonic.
+     */
+    synchronized void setMaxBytes(int maxBytes) {
+        cache.evictAll();
+        cache = new IconLruCache(maxBytes);
+    }
+
+    synchronized void clear() {
+        cache.evictAll();
+    }
+
+    Map<String, Object> stats() {
+        IconLruCache current = currentCache();
+        Map<String, Object> stats = new HashMap<>();
+
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("size", current.size());
+        stats.put("maxSize", current.maxSize());
+
+        return stats;
+    }
+
+    private synchronized IconLruCache currentCache() {
+        return cache;
+    }
+
+    private static class CachedIcon {
+        final Bitmap bitmap;
+        final ImageProvider provider;
+
+        CachedIcon(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.provider = ImageProvider.fromBitmap(bitmap);
+        }
+    }
+
+    private class IconLruCache extends LruCache<String, CachedIcon> {
+        IconLruCache(int maxBytes) {
+            super(maxBytes);
+        }
+
+        @Override
+        protected int sizeOf(String key, CachedIcon icon) {
+            return icon.bitmap.getByteCount();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, String key, CachedIcon oldValue, CachedIcon newValue) {
+            if (evicted) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.unact.yandexmapkit;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.unact.yandexmapkit.YandexImageConversion.AssetImageRequest;
+import com.yandex.runtime.image.ImageProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Resolves marker icons without blocking the platform thread.
+ *
+ * Icons that need decoding are decoded on a background executor and delivered on the main thread.
+ * Concurrent requests for the same icon share one decode. Must be called from the main thread.
+ */
+class YandexIconLoader {
+    interface Callback {
+        /**
+         * Receives the decoded icon, or null when it cannot be loaded.
+         */
+        void onIconLoaded(ImageProvider provider);
+    }
+
+    private static final ExecutorService executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "YandexIconLoader");
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    });
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final Map<String, List<Callback>> pending = new HashMap<>();
+
+    private static ImageProvider placeholder;
+
+    /**
+     * Transparent icon shown while the real one is decoded.
+     */
+    static ImageProvider placeholder() {
+        if (placeholder == null) {
+            placeholder = ImageProvider.fromBitmap(Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888));
+        }
+
+        return placeholder;
+    }
+
+    /**
+     * Whether the icon is decoded in background. Only such icons need a placeholder meanwhile.
+     */
+    static boolean decodesInBackground(Object o) {
+        return o instanceof List && "fromAssetImage".equals(((List<?>) o).get(0));
+    }
+
+    /**
+     * Returns the icon right away when it is cached or needs no decoding, null standing for the
+     * default icon. Otherwise returns null and calls back on the main thread once the icon is decoded,
+     * or with null when it cannot be loaded. The callback is only called for icons decoded in background.
+     */
+    static ImageProvider load(final Context context, Object o, Callback callback) {
+        if (!decodesInBackground(o)) {
+            return YandexImageConversion.fromFlutter(context, o);
+        }
+
+        final AssetImageRequest request;
+
+        try {
+            request = AssetImageRequest.fromFlutter(context, o);
+        } catch (Exception e) {
+            Log.d("FLUTTER", e.getLocalizedMessage());
+            fail(callback);
+            return null;
+        }
+
+        if (request == null) {
+            fail(callback);
+            return null;
+        }
+
+        ImageProvider cached = YandexIconCache.getInstance().get(request.key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Callback> callbacks = pending.get(request.key);
+
+        if (callbacks != null) {
+            callbacks.add(callback);
+            return null;
+        }
+
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        pending.put(request.key, callbacks);
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ImageProvider provider = null;
+
+                long start = System.nanoTime();
+
+                try {
+                    provider = YandexIconCache.getInstance().put(
+                            request.key,
+                            YandexImageConversion.decodeAssetImage(context, request)
+                    );
+                    YandexMetrics.getInstance().recordIconDecode(System.nanoTime() - start);
+                } catch (Exception e) {
+                    Log.d("FLUTTER", "Cannot load icon " + request.assetName + ": " + e.getLocalizedMessage());
+                }
+
+                final ImageProvider result = provider;
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        List<Callback> callbacks = pending.remove(request.key);
+
+                        if (callbacks == null) {
+                            return;
+                        }
+
+                        for (Callback callback : callbacks) {
+                            callback.onIconLoaded(result);
+                        }
+                    }
+                });
+            }
+        });
+
+        return null;
+    }
+
+    /**
+     * Calls back with null on the main thread, so the caller first handles the null result.
+     */
+    private static void fail(final Callback callback) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onIconLoaded(null);
+            }
+        });
+    }
+}
@@ -0,0 +1,258 @@
+package com.unact.yandexmapkit;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.Log;
+
+import com.yandex.runtime.image.ImageProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import io.flutter.view.FlutterMain;
+
+class YandexImageConversion {
+    static Bitmap scaleBitmap(Bitmap bitmap, double scale) {
+        return resizeBitmap(bitmap, (int) (bitmap.getWidth() * scale), (int) (bitmap.getHeight() * scale));
+    }
+
+    static Bitmap resizeBitmap(Bitmap bitmap, int targetW, int targetH) {
+        int[] size = YandexImageSizing.fitSize(bitmap.getWidth(), bitmap.getHeight(), targetW, targetH);
+
+        return Bitmap.createScaledBitmap(bitmap, size[0], size[1], false);
+    }
+
+    private static double toDouble(Object o) {
+        return o instanceof Number ? ((Number) o).doubleValue() : Double.parseDouble((String) o);
+    }
+
+    /**
+     * Asset icon that has to be decoded and resized before use.
+     * Either scale or width and height (in pixels) are set.
+     */
+    static class AssetImageRequest {
+        final String assetName;
+        final String key;
+        final double scale;
+        final int width;
+        final int height;
+
+        private AssetImageRequest(String assetName, String key, double scale, int width, int height) {
+            this.assetName = assetName;
+            this.key = key;
+            this.scale = scale;
+            this.width = width;
+            this.height = height;
+        }
+
+        static AssetImageRequest fromFlutter(Context context, Object o) {
+            final List<?> data = (List<?>) o;
+
+            if (!"fromAssetImage".equals(data.get(0))) {
+                return null;
+            }
+
+            String assetName = FlutterMain.getLookupKeyForAsset((String) data.get(1));
+            float density = context.getResources().getDisplayMetrics().density;
+
+            if (data.size() == 3) {
+                double scale = toDouble(data.get(2));
+                String key = YandexIconCache.key(assetName, "scale:" + scale, density);
+
+                return new AssetImageRequest(assetName, key, scale, 0, 0);
+            } else if (data.size() == 4) {
+                int width = (int) toDouble(data.get(2));
+                int height = (int) toDouble(data.get(3));
+                String key = YandexIconCache.key(assetName, "size:" + width + "x" + height, density);
+
+                return new AssetImageRequest(assetName, key, 0, (int) (width * density), (int) (height * density));
+            }
+
+            return null;
+        }
+
+        int[] targetSize(int sourceW, int sourceH) {
+            if (width > 0 && height > 0) {
+                return YandexImageSizing.fitSize(sourceW, sourceH, width, height);
+            }
+
+            return new int[] { (int) (sourceW * scale), (int) (sourceH * scale) };
+        }
+    }
+
+    /**
+     * Decodes the asset straight to roughly the requested size using inSampleSize
+     * and scales the rest of the way.
+     */
+    static Bitmap decodeAssetImage(Context context, AssetImageRequest request) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+
+        InputStream stream = context.getAssets().open(request.assetName);
+
+        try {
+            BitmapFactory.decodeStream(stream, null, options);
+        } finally {
+            stream.close();
+        }
+
+        int[] size = request.targetSize(options.outWidth, options.outHeight);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = YandexImageSizing.sampleSize(options.outWidth, options.outHeight, size[0], size[1]);
+
+        Bitmap bitmap;
+
+        stream = context.getAssets().open(request.assetName);
+
+        try {
+            bitmap = BitmapFactory.decodeStream(stream, null, options);
+        } finally {
+            stream.close();
+        }
+
+        if (bitmap == null) {
+            throw new IOException("Cannot decode " + request.assetName);
+        }
+
+        if (bitmap.getWidth() == size[0] && bitmap.getHeight() == size[1]) {
+            return bitmap;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, size[0], size[1], true);
+
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+
+        return scaled;
+    }
+
+    static ImageProvider loadAssetImage(Context context, AssetImageRequest request) throws IOException {
+        YandexIconCache iconCache = YandexIconCache.getInstance();
+        ImageProvider cached = iconCache.get(request.key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        return iconCache.put(request.key, decodeAssetImage(context, request));
+    }
+
+    /**
+     * Round badge with the number of clustered markers, shared through the icon cache.
+     */
+    static ImageProvider clusterIcon(Context context, int count) {
+        float density = context.getResources().getDisplayMetrics().density;
+        String label = count < 1000 ? String.valueOf(count) : (count / 1000) + "k";
+        String key = YandexIconCache.key("cluster", label, density);
+        YandexIconCache iconCache = YandexIconCache.getInstance();
+        ImageProvider cached = iconCache.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextSize(14 * density);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setFakeBoldText(true);
+
+        float radius = Math.max(16 * density, textPaint.measureText(label) / 2 + 8 * density);
+        int size = (int) (radius * 2 + 2 * density);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        Paint circlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        circlePaint.setColor(Color.argb(230, 33, 150, 243));
+        canvas.drawCircle(size / 2f, size / 2f, radius, circlePaint);
+
+        circlePaint.setColor(Color.WHITE);
+        circlePaint.setStyle(Paint.Style.STROKE);
+        circlePaint.setStrokeWidth(2 * density);
+        canvas.drawCircle(size / 2f, size / 2f, radius, circlePaint);
+
+        canvas.drawText(label, size / 2f, size / 2f - (textPaint.descent() + textPaint.ascent()) / 2, textPaint);
+
+        return iconCache.put(key, bitmap);
+    }
+
+    /**
+     * Compares icon descriptors sent by Flutter, including byte arrays of fromBytes icons.
+     */
+    static boolean sameDescriptor(Object a, Object b) {
+        if (a == b) {
+            return true;
+        }
+
+        if (a == null || b == null) {
+            return false;
+        }
+
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[]) a, (byte[]) b);
+        }
+
+        if (a instanceof List && b instanceof List) {
+            List<?> listA = (List<?>) a;
+            List<?> listB = (List<?>) b;
+
+            if (listA.size() != listB.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < listA.size(); i++) {
+                if (!sameDescriptor(listA.get(i), listB.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        return a.equals(b);
+    }
+
+    static ImageProvider fromFlutter(Context context, Object o) {
+        try {
+            final List<?> data = (List<?>) o;
+
+            switch ((String) data.get(0)) {
+                case "defaultMarker": {
+                    break;
+                }
+
+                case "fromAsset": {
+                    String assetName;
+
+                    if (data.size() == 2) {
+                        assetName = FlutterMain.getLookupKeyForAsset((String) data.get(1));
+                    } else {
+                        assetName = FlutterMain.getLookupKeyForAsset((String) data.get(1), (String) data.get(2));
+                    }
+
+                    return ImageProvider.fromAsset(context, assetName);
+                }
+
+                case "fromAssetImage": {
+                    AssetImageRequest request = AssetImageRequest.fromFlutter(context, data);
+
+                    if (request != null) {
+                        return loadAssetImage(context, request);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.d("FLUTTER", e.getLocalizedMessage());
+        }
+
+        return null;
+    }
+}
@@ -5,7 +5,13 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.media.Image;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.Choreographer;
 import android.view.View;
 
 import androidx.annotation.NonNull;
@@ -14,21 +20,25 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.unact.yandexmapkit.YandexJsonConversion.JsonCameraMoveParameters;
 import com.unact.yandexmapkit.YandexJsonConversion.JsonPolygon;
-import com.unact.yandexmapkit.YandexJsonConversion.JsonPositionChangedEvent;
 import com.yandex.mapkit.Animation;
-import com.yandex.mapkit.MapKitFactory;
 import com.yandex.mapkit.geometry.LinearRing;
 import com.yandex.mapkit.geometry.Point;
 import com.yandex.mapkit.geometry.Polygon;
+import com.yandex.mapkit.geometry.Polyline;
 import com.yandex.mapkit.layers.ObjectEvent;
 import com.yandex.mapkit.map.CameraListener;
 import com.yandex.mapkit.map.CameraPosition;
 import com.yandex.mapkit.map.CameraUpdateSource;
+import com.yandex.mapkit.map.IconStyle;
 import com.yandex.mapkit.map.MapObject;
+import com.yandex.mapkit.map.MapObjectCollection;
 import com.yandex.mapkit.map.MapObjectDragListener;
 import com.yandex.mapkit.map.MapObjectTapListener;
 import com.yandex.mapkit.map.PlacemarkMapObject;
 import com.yandex.mapkit.map.PolygonMapObject;
+import com.yandex.mapkit.map.PolylineMapObject;
+import com.yandex.mapkit.map.RotationType;
+import com.yandex.mapkit.map.VisibleRegion;
 import com.yandex.mapkit.mapview.MapView;
 import com.yandex.mapkit.map.Map;
 import com.yandex.mapkit.user_location.UserLocationLayer;
@@ -36,11 +46,24 @@ import com.yandex.mapkit.user_location.UserLocationObjectListener;
 import com.yandex.mapkit.user_location.UserLocationView;
 import com.yandex.runtime.image.ImageProvider;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.flutter.plugin.common.MethodCall;
 import io.flutter.plugin.common.MethodChannel;
@@ -49,23 +72,50 @@ import io.flutter.plugin.platform.PlatformView;
 import io.flutter.view.FlutterMain;
 
 public class YandexMapController implements PlatformView, MethodChannel.MethodCallHandler, Map.CameraCallback {
+    private static final Gson gson = new Gson();
+
     private final MapView mapView;
     private final MethodChannel methodChannel;
     private final YandexCameraListener cameraListener;
 
-    private java.util.Map<String, YandexMapMarkerController> idToController = new HashMap<>();
+    private final SparseArray<YandexMapMarkerController> idToController = new SparseArray<>();
+    private final YandexMarkerListener markerListener = new YandexMarkerListener();
+    private final YandexMarkerEventBatch markerEvents = new YandexMarkerEventBatch();
+    private final YandexFleetAnimation fleet = new YandexFleetAnimation();
+    private final SparseArray<YandexMapPolylineController> idToPolyline = new SparseArray<>();
+    /**
+     * Polyline points by polyline ids. Only used on the decoder thread.
+     */
+    private final SparseArray<YandexPolylineBuffer> polylineBuffers = new SparseArray<>();
+    private final AtomicInteger lastMapObjectId = new AtomicInteger();
+    private final YandexSpatialIndex<YandexMapMarkerController> markerIndex = new YandexSpatialIndex<>();
+    private final YandexMarkerViewport viewport = new YandexMarkerViewport();
+    private final YandexMarkerClustering clustering = new YandexMarkerClustering();
+    private final YandexSpatialQueries queries = new YandexSpatialQueries();
+    private final SparseArray<YandexMapPolygonController> idToPolygonController = new SparseArray<>();
+    private final List<YandexMapPolygonController> simplifiedPolygons = new ArrayList<>();
+    private final java.util.Map<String, YandexMapMarkerController> stableIdToMarker = new HashMap<>();
+    private final java.util.Map<String, YandexMapPolygonController> stableIdToPolygon = new HashMap<>();
+    private int syncGeneration;
+    private final SparseArray<YandexGeoJsonLayer> idToLayer = new SparseArray<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final YandexCallPipeline pipeline = new YandexCallPipeline(new YandexCallDecoder());
+    private ExecutorService workerExecutor;
+    private ExecutorService layerExecutor;
 
     private YandexMapUserLayerController userLocationController;
 
+    private long lastIconRequest;
+
+    private boolean disposed;
+
     private Context context;
 
     YandexMapController(int id, Context context, PluginRegistry.Registrar registrar) {
-        MapKitFactory.initialize(context);
+        YandexMapKitLifecycle.start(context);
 
         mapView = new MapView(context);
-
-        MapKitFactory.getInstance().onStart();
-
         mapView.onStart();
 
         methodChannel = new MethodChannel(registrar.messenger(), "yandex_mapkit/yandex_map_" + id);
@@ -74,6 +124,7 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
         cameraListener = new YandexCameraListener();
 
         mapView.getMap().addCameraListener(cameraListener);
+        mapView.getMap().getMapObjects().addTapListener(markerListener);
 
         this.context = context;
     }
@@ -85,250 +136,2610 @@ public class YandexMapController implements PlatformView, MethodChannel.MethodCa
 
     @Override
     public void dispose() {
+        if (disposed) {
+            return;
+        }
+
+        disposed = true;
+        methodChannel.setMethodCallHandler(null);
+
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
+
+        if (layerExecutor != null) {
+            layerExecutor.shutdownNow();
+        }
+
+        queries.dispose();
+
+        pipeline.dispose();
+        YandexMetrics.getInstance().adjustObjects("markers", -idToController.size());
+        YandexMetrics.getInstance().adjustObjects("polygons", -idToPolygonController.size());
+        YandexMetrics.getInstance().adjustObjects("polylines", -idToPolyline.size());
+        mainHandler.removeCallbacksAndMessages(null);
+        markerEvents.cancel();
+        fleet.cancel();
         mapView.onStop();
-        MapKitFactory.getInstance().onStop();
+        YandexMapKitLifecycle.stop();
     }
 
-    @SuppressWarnings("unchecked")
-    private void move(MethodCall call) {
-        JsonCameraMoveParameters params = new Gson().fromJson(
-                (String) call.arguments,
-                JsonCameraMoveParameters.class
-        );
+    private ExecutorService getWorkerExecutor() {
+        if (workerExecutor == null) {
+            workerExecutor = Executors.newSingleThreadExecutor();
+        }
+
+        return workerExecutor;
+    }
+
+    /**
+     * Thread that reads GeoJSON layers one at a time, apart from the worker so long reads do not
+     * hold back polygon simplification.
+     */
+    private ExecutorService getLayerExecutor() {
+        if (layerExecutor == null) {
+            layerExecutor = Executors.newSingleThreadExecutor();
+        }
+
+        return layerExecutor;
+    }
+
+    private YandexCallPipeline.Applier decodeMove(MethodCall call) {
+        final CameraPosition position;
+        final Animation animation;
 
-        CameraPosition position = params.position.toCameraPosition();
-        Animation animation = params.getAnimation();
+        if (call.arguments instanceof String) {
+            JsonCameraMoveParameters params = gson.fromJson(
+                    (String) call.arguments,
+                    JsonCameraMoveParameters.class
+            );
 
-        if (animation != null) {
-            mapView.getMap().move(position, animation, this);
+            position = params.position.toCameraPosition();
+            animation = params.getAnimation();
         } else {
-            mapView.getMap().move(position);
+            position = YandexBinaryConversion.toCameraPosition(call.argument("position"));
+            animation = animationFromMap((java.util.Map<?, ?>) call.argument("animation"));
         }
+
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                if (animation != null) {
+                    mapView.getMap().move(position, animation, YandexMapController.this);
+                } else {
+                    mapView.getMap().move(position);
+                }
+
+                return null;
+            }
+        };
     }
 
-    @SuppressWarnings("unchecked")
-    private void addPolygon(MethodCall call) {
-        JsonPolygon params = new Gson().fromJson(
-                (String) call.arguments,
-                JsonPolygon.class
-        );
+    private static Animation animationFromMap(java.util.Map<?, ?> params) {
+        if (params == null) {
+            return null;
+        }
 
-        Polygon polygon = params.getPolygon();
+        Animation.Type type = (Boolean) params.get("smooth")
+                ? Animation.Type.SMOOTH
+                : Animation.Type.LINEAR;
 
-        PolygonMapObject mapObject = mapView.getMap().getMapObjects().addPolygon(polygon);
-        mapObject.setFillColor((int) params.fillColor);
-        mapObject.setStrokeColor((int) params.strokeColor);
-        mapObject.setStrokeWidth(params.strokeWidth);
-        mapObject.setZIndex(params.zIndex);
+        return new Animation(type, ((Number) params.get("duration")).floatValue() / 1000);
     }
 
+    private YandexCallPipeline.Applier decodeAddPolygon(MethodCall call) {
+        if (call.arguments instanceof String) {
+            final JsonPolygon params = gson.fromJson(
+                    (String) call.arguments,
+                    JsonPolygon.class
+            );
+            final Polygon polygon = params.getPolygon();
+
+            return new YandexCallPipeline.Applier() {
+                @Override
+                public Object apply() {
+                    YandexMapPolygonController polygonController = new YandexMapPolygonController(
+                            (int) params.fillColor,
+                            (int) params.strokeColor,
+                            params.strokeWidth,
+                            params.zIndex
+                    );
+                    polygonController.setGeometry(polygon);
+
+                    return polygonController.id;
+                }
+            };
+        }
 
-    private String addMarker(MethodCall call) {
-        YandexJsonConversion.JsonPoint point = new Gson().fromJson(
-                (String) call.argument("point"),
-                YandexJsonConversion.JsonPoint.class
-        );
+        final java.util.Map<?, ?> params = (java.util.Map<?, ?>) call.arguments;
+        final YandexPolygonGeometry geometry = new YandexPolygonGeometry(params);
+
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                YandexMapPolygonController polygonController = new YandexMapPolygonController(
+                        YandexBinaryConversion.toColor(params.get("fillColor")),
+                        YandexBinaryConversion.toColor(params.get("strokeColor")),
+                        ((Number) params.get("strokeWidth")).floatValue(),
+                        ((Number) params.get("zIndex")).floatValue()
+                );
+                updatePolygonGeometry(polygonController, geometry);
+
+                return polygonController.id;
+            }
+        };
+    }
 
-        YandexMapMarkerController markerController = new YandexMapMarkerController(point);
+    private YandexCallPipeline.Applier decodeUpdatePolygon(MethodCall call) {
+        final java.util.Map<?, ?> params = (java.util.Map<?, ?>) call.arguments;
+        final YandexPolygonGeometry geometry = new YandexPolygonGeometry(params);
 
-        updateMarkerWithController(markerController, call);
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                YandexMapPolygonController controller = idToPolygonController.get(((Number) params.get("id")).intValue());
 
-        return markerController.id;
+                if (controller != null) {
+                    updatePolygonGeometry(controller, geometry);
+                    updatePolygonProperties(controller, params);
+                }
+
+                return null;
+            }
+        };
     }
 
-    private void updateMarker(MethodCall call) {
-        String id = call.argument("id");
+    private void updatePolygons(MethodCall call) {
+        int[] ids = call.argument("ids");
 
-        YandexMapMarkerController controller = idToController.get(id);
+        for (int id : ids) {
+            YandexMapPolygonController controller = idToPolygonController.get(id);
 
-        if (controller != null) {
-            updateMarkerWithController(controller, call);
+            if (controller != null) {
+                updatePolygonProperties(controller, (java.util.Map<?, ?>) call.arguments);
+            }
         }
     }
 
-    private void updateMarkerWithController(YandexMapMarkerController markerController, MethodCall call) {
-        if (call.hasArgument("icon")) {
-            markerController.setIcon(call.argument("icon"));
+    private void updatePolygonGeometry(YandexMapPolygonController controller, YandexPolygonGeometry geometry) {
+        if (geometry.simplifyTolerance != null) {
+            controller.simplifyTolerance = geometry.simplifyTolerance;
         }
 
-        if (call.hasArgument("visible")) {
-            markerController.setVisible((boolean) call.argument("visible"));
+        if (geometry.rings != null) {
+            setPolygonGeometry(controller, geometry);
         }
+    }
 
-        if (call.hasArgument("draggable")) {
-            markerController.setDraggable((boolean) call.argument("draggable"));
+    private void setPolygonGeometry(YandexMapPolygonController controller, YandexPolygonGeometry geometry) {
+        controller.rings = geometry.rings;
+
+        if (controller.simplifyTolerance > 0) {
+            controller.setSimplifiedGeometry(geometry.rings);
+        } else {
+            controller.setGeometry(geometry.polygon != null
+                    ? geometry.polygon
+                    : YandexBinaryConversion.toPolygon(geometry.rings)
+            );
         }
+    }
 
-        if (call.hasArgument("zIndex")) {
-            markerController.setZIndex(((Double) call.argument("zIndex")).floatValue());
+    private void updatePolygonProperties(YandexMapPolygonController controller, java.util.Map<?, ?> params) {
+        if (params.get("fillColor") != null) {
+            controller.setFillColor(YandexBinaryConversion.toColor(params.get("fillColor")));
         }
 
-        if (call.hasArgument("opacity")) {
-            markerController.setZIndex(((Double) call.argument("opacity")).floatValue());
+        if (params.get("strokeColor") != null) {
+            controller.setStrokeColor(YandexBinaryConversion.toColor(params.get("strokeColor")));
+        }
+
+        if (params.get("strokeWidth") != null) {
+            controller.setStrokeWidth(((Number) params.get("strokeWidth")).floatValue());
+        }
+
+        if (params.get("zIndex") != null) {
+            controller.setZIndex(((Number) params.get("zIndex")).floatValue());
         }
     }
 
-    @Override
-    public void onMethodCall(MethodCall call, MethodChannel.Result result) {
-        switch (call.method) {
-            case "move":
-                move(call);
-                result.success(null);
-                break;
+    private YandexCallPipeline.Applier decodeAddPolyline(MethodCall call) {
+        final java.util.Map<?, ?> params = (java.util.Map<?, ?>) call.arguments;
+        final int id = lastMapObjectId.incrementAndGet();
+        YandexPolylineBuffer buffer = new YandexPolylineBuffer(
+                ((Number) params.get("maxPoints")).intValue(),
+                ((Number) params.get("thinningThreshold")).intValue(),
+                ((Number) params.get("thinningTolerance")).doubleValue()
+        );
 
-            case "showUserLocation": {
-                if (userLocationController == null) {
-                    ImageProvider image = YandexJsonConversion.ImageConversion.fromFlutter(context, call.arguments);
+        buffer.append(YandexBinaryConversion.toCoordinates(params.get("points")));
+        polylineBuffers.put(id, buffer);
 
-                    if (image != null) {
-                        userLocationController = new YandexMapUserLayerController(image);
-                    }
+        final Polyline polyline = toPolyline(buffer);
+
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                YandexMapPolylineController controller = new YandexMapPolylineController(
+                        id,
+                        YandexBinaryConversion.toColor(params.get("strokeColor")),
+                        ((Number) params.get("strokeWidth")).floatValue(),
+                        ((Number) params.get("zIndex")).floatValue()
+                );
+
+                controller.setGeometry(polyline);
+
+                return id;
+            }
+        };
+    }
+
+    private YandexCallPipeline.Applier decodeAppendPolyline(MethodCall call) {
+        final int id = call.argument("id");
+        YandexPolylineBuffer buffer = polylineBuffers.get(id);
+        final Polyline polyline;
+
+        if (buffer != null) {
+            buffer.append(YandexBinaryConversion.toCoordinates(call.argument("points")));
+            polyline = toPolyline(buffer);
+        } else {
+            polyline = null;
+        }
+
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                YandexMapPolylineController controller = idToPolyline.get(id);
+
+                if (controller != null && polyline != null) {
+                    controller.setGeometry(polyline);
                 }
+
+                return null;
             }
+        };
+    }
 
-            case "polygon#add":
-                addPolygon(call);
-                result.success(null);
-                break;
-            case "marker#init":
-                result.success(addMarker(call));
-                break;
-            case "marker#update":
-                updateMarker(call);
-                result.success(null);
-                break;
-            case "marker#remove": {
-                String id = call.argument("id");
+    /**
+     * Drops the point buffer on the pipeline thread, so later appends of the polyline are ignored.
+     */
+    private YandexCallPipeline.Applier decodeRemovePolyline(MethodCall call) {
+        final int id = call.argument("id");
 
-                YandexMapMarkerController controller = idToController.get(id);
+        polylineBuffers.remove(id);
+
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                YandexMapPolylineController controller = idToPolyline.get(id);
 
                 if (controller != null) {
                     controller.remove();
                 }
 
-                result.success(null);
-                break;
+                return null;
             }
-            default:
-                result.notImplemented();
-                break;
+        };
+    }
+
+    private static Polyline toPolyline(YandexPolylineBuffer buffer) {
+        List<Point> points = new ArrayList<>(buffer.size());
+
+        for (int i = 0; i < buffer.size(); i++) {
+            points.add(new Point(buffer.latitude(i), buffer.longitude(i)));
         }
+
+        return new Polyline(points);
     }
 
-    @Override
-    public void onMoveFinished(boolean b) {
+    private void updatePolyline(MethodCall call) {
+        YandexMapPolylineController controller = idToPolyline.get((Integer) call.argument("id"));
+
+        if (controller == null) {
+            return;
+        }
+
+        if (call.argument("strokeColor") != null) {
+            controller.setStrokeColor(YandexBinaryConversion.toColor(call.argument("strokeColor")));
+        }
+
+        if (call.argument("strokeWidth") != null) {
+            controller.setStrokeWidth(((Number) call.argument("strokeWidth")).floatValue());
+        }
+
+        if (call.argument("zIndex") != null) {
+            controller.setZIndex(((Number) call.argument("zIndex")).floatValue());
+        }
     }
 
+    /**
+     * Brings declaratively managed map objects to the sent state, touching only what differs.
+     * Returns native ids of added objects by their stable ids.
+     */
+    private YandexCallPipeline.Applier decodeSyncMapObjects(MethodCall call) {
+        final java.util.Map<?, ?> markers = call.argument("markers");
+        final double[] markerPoints = YandexBinaryConversion.toCoordinates(markers.get("points"));
+        final List<?> polygons = call.argument("polygons");
+        final List<YandexPolygonGeometry> polygonGeometries = new ArrayList<>(polygons.size());
+
+        for (Object polygon : polygons) {
+            polygonGeometries.add(new YandexPolygonGeometry((java.util.Map<?, ?>) polygon));
+        }
 
-    private class YandexMapUserLayerController implements UserLocationObjectListener {
-        private ImageProvider image;
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                int generation = ++syncGeneration;
+                java.util.Map<String, Object> result = new HashMap<>();
 
-        YandexMapUserLayerController(ImageProvider image) {
-            this.image = image;
+                result.put("markers", syncMarkers(markers, markerPoints, generation));
+                result.put("polygons", syncPolygons(polygons, polygonGeometries, generation));
 
-            UserLocationLayer userLocationLayer = mapView.getMap().getUserLocationLayer();
+                return result;
+            }
+        };
+    }
 
-            userLocationLayer.setEnabled(true);
-            userLocationLayer.setHeadingEnabled(true);
+    private java.util.Map<String, Integer> syncMarkers(java.util.Map<?, ?> params, double[] points, int generation) {
+        java.util.Map<String, Integer> newIds = new HashMap<>();
+        List<?> ids = (List<?>) params.get("ids");
+        double[] alphas = (double[]) params.get("alphas");
+        double[] zIndexes = (double[]) params.get("zIndexes");
+        int[] flags = (int[]) params.get("flags");
+        List<?> icons = (List<?>) params.get("icons");
+        int[] iconIndexes = (int[]) params.get("iconIndexes");
+
+        List<List<YandexMapMarkerController>> iconChanges = new ArrayList<>(icons.size());
+        List<YandexMapMarkerController> added = new ArrayList<>();
+        boolean moved = false;
+
+        for (int i = 0; i < icons.size(); i++) {
+            iconChanges.add(new ArrayList<YandexMapMarkerController>());
+        }
 
-            userLocationLayer.setObjectListener(this);
+        for (int i = 0; i < ids.size(); i++) {
+            String stableId = (String) ids.get(i);
+            double latitude = points[i * 2];
+            double longitude = points[i * 2 + 1];
+            YandexMapMarkerController controller = stableIdToMarker.get(stableId);
+
+            if (controller == null) {
+                controller = new YandexMapMarkerController(new Point(latitude, longitude));
+                stableIdToMarker.put(stableId, controller);
+                newIds.put(stableId, controller.id);
+                added.add(controller);
+            } else if (controller.point.getLatitude() != latitude || controller.point.getLongitude() != longitude) {
+                controller.setPoint(new Point(latitude, longitude));
+                moved = true;
+            }
+
+            controller.syncGeneration = generation;
+
+            Object icon = iconIndexes[i] >= 0 ? icons.get(iconIndexes[i]) : null;
+
+            controller.setVisible((flags[i] & 1) != 0);
+            controller.setDraggable((flags[i] & 2) != 0);
+            controller.setZIndex((float) zIndexes[i]);
+            controller.setOpacity((float) alphas[i]);
+
+            if (icon == null) {
+                if (controller.iconDescriptor != null) {
+                    controller.iconDescriptor = null;
+                    controller.resetIcon();
+                }
+            } else if (!YandexImageConversion.sameDescriptor(controller.iconDescriptor, icon)) {
+                iconChanges.get(iconIndexes[i]).add(controller);
+            }
         }
 
-        @Override
-        public void onObjectAdded(@NonNull UserLocationView userLocationView) {
-            userLocationView.getPin().setIcon(image);
-            userLocationView.getArrow().setVisible(false);
-            userLocationView.getAccuracyCircle().setVisible(false);
+        for (int i = 0; i < icons.size(); i++) {
+            if (!iconChanges.get(i).isEmpty()) {
+                setIcons(iconChanges.get(i), icons.get(i));
+            }
         }
 
-        @Override
-        public void onObjectRemoved(@NonNull UserLocationView userLocationView) {
+        Iterator<YandexMapMarkerController> iterator = stableIdToMarker.values().iterator();
 
+        while (iterator.hasNext()) {
+            YandexMapMarkerController controller = iterator.next();
+
+            if (controller.syncGeneration != generation) {
+                controller.remove();
+                iterator.remove();
+            }
         }
 
-        @Override
-        public void onObjectUpdated(@NonNull UserLocationView userLocationView, @NonNull ObjectEvent objectEvent) {
+        if (viewport.enabled) {
+            if (moved || !added.isEmpty()) {
+                viewport.update(true);
+            }
+        } else {
+            attachPlacemarks(added);
+        }
+
+        return newIds;
+    }
+
+    private java.util.Map<String, Integer> syncPolygons(List<?> polygons, List<YandexPolygonGeometry> geometries, int generation) {
+        java.util.Map<String, Integer> newIds = new HashMap<>();
+
+        for (int i = 0; i < polygons.size(); i++) {
+            java.util.Map<?, ?> params = (java.util.Map<?, ?>) polygons.get(i);
+            YandexPolygonGeometry geometry = geometries.get(i);
+            String stableId = (String) params.get("id");
+            YandexMapPolygonController controller = stableIdToPolygon.get(stableId);
+            double simplifyTolerance = geometry.simplifyTolerance != null ? geometry.simplifyTolerance : 0;
+
+            if (controller == null) {
+                controller = new YandexMapPolygonController(
+                        YandexBinaryConversion.toColor(params.get("fillColor")),
+                        YandexBinaryConversion.toColor(params.get("strokeColor")),
+                        ((Number) params.get("strokeWidth")).floatValue(),
+                        ((Number) params.get("zIndex")).floatValue()
+                );
+                controller.simplifyTolerance = simplifyTolerance;
+                setPolygonGeometry(controller, geometry);
+                stableIdToPolygon.put(stableId, controller);
+                newIds.put(stableId, controller.id);
+            } else {
+                if (controller.simplifyTolerance != simplifyTolerance || !Arrays.deepEquals(controller.rings, geometry.rings)) {
+                    controller.simplifyTolerance = simplifyTolerance;
+                    setPolygonGeometry(controller, geometry);
+                }
+
+                updatePolygonProperties(controller, params);
+            }
+
+            controller.syncGeneration = generation;
+        }
+
+        Iterator<YandexMapPolygonController> iterator = stableIdToPolygon.values().iterator();
 
+        while (iterator.hasNext()) {
+            YandexMapPolygonController controller = iterator.next();
+
+            if (controller.syncGeneration != generation) {
+                controller.remove();
+                iterator.remove();
+            }
         }
+
+        return newIds;
     }
 
-    private class YandexMapMarkerController implements MapObjectTapListener, MapObjectDragListener {
-        String id;
-        private PlacemarkMapObject mapObject;
+    private YandexCallPipeline.Applier decodeAddMarker(final MethodCall call) {
+        Object packedPoint = call.argument("point");
+        final Point point = YandexBinaryConversion.isPacked(packedPoint)
+                ? YandexBinaryConversion.toPoint(packedPoint)
+                : gson.fromJson((String) packedPoint, YandexJsonConversion.JsonPoint.class).toPoint();
 
-        YandexMapMarkerController(YandexJsonConversion.JsonPoint point) {
-            this(point.toPoint());
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                return addMarker(call, point);
+            }
+        };
+    }
+
+    private int addMarker(MethodCall call, Point point) {
+        YandexMapMarkerController markerController = new YandexMapMarkerController(point);
+
+        if (viewport.contains(point)) {
+            viewport.attach(markerController, mapView.getMap().getMapObjects().addPlacemark(point));
         }
 
-        YandexMapMarkerController(Point point) {
-            id = UUID.randomUUID().toString();
+        updateMarkerWithController(markerController, call);
+
+        return markerController.id;
+    }
+
+    private YandexCallPipeline.Applier decodeAddMarkers(final MethodCall call) {
+        final List<Point> points = YandexBinaryConversion.toPoints(call.argument("points"));
+
+        return new YandexCallPipeline.Applier() {
+            @Override
+            public Object apply() {
+                return addMarkers(call, points);
+            }
+        };
+    }
 
-            mapObject = mapView.getMap().getMapObjects().addPlacemark(point);
+    private int[] addMarkers(MethodCall call, List<Point> points) {
+        List<YandexMapMarkerController> controllers = new ArrayList<>(points.size());
+        int[] ids = new int[points.size()];
 
-            mapObject.addTapListener(this);
-            mapObject.setDragListener(this);
+        for (int i = 0; i < ids.length; i++) {
+            YandexMapMarkerController markerController = new YandexMapMarkerController(points.get(i));
 
-            idToController.put(id, this);
+            controllers.add(markerController);
+            ids[i] = markerController.id;
+        }
+
+        if (call.hasArgument("icon")) {
+            Object descriptor = call.argument("icon");
+            ImageProvider icon = loadIcon(controllers, descriptor);
+
+            if (icon != null || YandexIconLoader.decodesInBackground(descriptor)) {
+                for (YandexMapMarkerController markerController : controllers) {
+                    markerController.icon = icon != null ? icon : YandexIconLoader.placeholder();
+                    markerController.hasIcon = icon != null;
+                }
+            }
+        }
+
+        for (YandexMapMarkerController markerController : controllers) {
+            updateMarkerProperties(markerController, call);
+        }
+
+        if (viewport.enabled) {
+            viewport.update(true);
+        } else {
+            attachPlacemarks(controllers);
         }
 
+        return ids;
+    }
+
+    /**
+     * Adds placemarks for the markers with one addPlacemarks call per icon. MapKit has no bulk call
+     * for its default icon, so markers without an icon are added one by one.
+     */
+    private void attachPlacemarks(List<YandexMapMarkerController> controllers) {
+        MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
+        java.util.Map<ImageProvider, List<YandexMapMarkerController>> byIcon = new IdentityHashMap<>();
+
+        for (YandexMapMarkerController controller : controllers) {
+            if (controller.icon == null) {
+                controller.attach(mapObjects.addPlacemark(controller.point), null, false);
+                continue;
+            }
 
-        public void setIcon(Object o) {
-            ImageProvider provider = YandexJsonConversion.ImageConversion.fromFlutter(context, o);
+            List<YandexMapMarkerController> group = byIcon.get(controller.icon);
 
-            if (provider != null) {
-                mapObject.setIcon(provider);
+            if (group == null) {
+                group = new ArrayList<>();
+                byIcon.put(controller.icon, group);
             }
+
+            group.add(controller);
         }
 
-        public void setOpacity(float opacity) {
-            mapObject.setOpacity(opacity);
+        for (java.util.Map.Entry<ImageProvider, List<YandexMapMarkerController>> entry : byIcon.entrySet()) {
+            List<YandexMapMarkerController> group = entry.getValue();
+            List<Point> points = new ArrayList<>(group.size());
+
+            for (YandexMapMarkerController controller : group) {
+                points.add(controller.point);
+            }
+
+            List<PlacemarkMapObject> placemarks = mapObjects.addPlacemarks(points, entry.getKey(), new IconStyle());
+
+            for (int i = 0; i < placemarks.size(); i++) {
+                group.get(i).attach(placemarks.get(i), entry.getKey(), false);
+            }
         }
+    }
 
-        public void setZIndex(float zIndex) {
-            mapObject.setZIndex(zIndex);
+    private void updateMarkers(MethodCall call) {
+        int[] ids = call.argument("ids");
+        List<YandexMapMarkerController> controllers = new ArrayList<>(ids.length);
+
+        for (int id : ids) {
+            YandexMapMarkerController controller = idToController.get(id);
+
+            if (controller != null) {
+                updateMarkerProperties(controller, call);
+                controllers.add(controller);
+            }
         }
 
-        public void setDraggable(boolean draggable) {
-            mapObject.setDraggable(draggable);
+        if (call.hasArgument("icon")) {
+            setIcons(controllers, call.argument("icon"));
         }
+    }
 
-        public void setVisible(boolean visible) {
-            mapObject.setVisible(visible);
+    /**
+     * Sets one icon on all controllers that do not have it yet. Icons that need decoding are loaded
+     * in background, markers without an icon show a placeholder meanwhile. Icons without a provider,
+     * such as the default marker, put the default icon back.
+     */
+    private void setIcons(List<YandexMapMarkerController> controllers, Object icon) {
+        List<YandexMapMarkerController> changed = new ArrayList<>(controllers.size());
+
+        for (YandexMapMarkerController controller : controllers) {
+            if (!YandexImageConversion.sameDescriptor(controller.iconDescriptor, icon)) {
+                changed.add(controller);
+            }
         }
 
-        public void remove() {
-            mapView.getMap().getMapObjects().remove(mapObject);
-            idToController.remove(id);
+        if (changed.isEmpty()) {
+            return;
         }
 
-        @Override
-        public void onMapObjectDragStart(@NonNull MapObject mapObject) {
-            methodChannel.invokeMethod("onMapObjectDragStart", id);
+        controllers = changed;
+
+        ImageProvider provider = loadIcon(controllers, icon);
+
+        for (YandexMapMarkerController controller : controllers) {
+            controller.iconDescriptor = icon;
+
+            if (provider != null) {
+                controller.setIcon(provider);
+            } else if (!YandexIconLoader.decodesInBackground(icon)) {
+                if (controller.icon != null) {
+                    controller.resetIcon();
+                }
+            } else if (!controller.hasIcon) {
+                controller.setIcon(YandexIconLoader.placeholder());
+                controller.hasIcon = false;
+            }
         }
+    }
 
-        @Override
-        public void onMapObjectDrag(@NonNull MapObject mapObject, @NonNull Point point) {
-            methodChannel.invokeMethod("onMapObjectDrag", new Gson().toJson(new YandexJsonConversion.JsonMapObjectEventWithPoint(id, point)));
+    /**
+     * Returns the icon if it is available right away. Otherwise the icon is set on the controllers
+     * once decoded, unless they were given another icon or removed in the meantime. Controllers
+     * whose icon cannot be loaded go back to the default icon.
+     */
+    private ImageProvider loadIcon(final List<YandexMapMarkerController> controllers, Object icon) {
+        final long request = ++lastIconRequest;
+
+        for (YandexMapMarkerController controller : controllers) {
+            controller.iconRequest = request;
         }
 
-        @Override
-        public void onMapObjectDragEnd(@NonNull MapObject mapObject) {
-            methodChannel.invokeMethod("onMapObjectDragEnd", id);
+        return YandexIconLoader.load(context, icon, new YandexIconLoader.Callback() {
+            @Override
+            public void onIconLoaded(ImageProvider provider) {
+                for (YandexMapMarkerController controller : controllers) {
+                    if (controller.iconRequest != request || controller.removed) {
+                        continue;
+                    }
+
+                    if (provider != null) {
+                        controller.setIcon(provider);
+                    } else {
+                        controller.resetIcon();
+                    }
+                }
+            }
+        });
+    }
+
+    private void removeMarkers(MethodCall call) {
+        int[] ids = call.argument("ids");
+
+        for (int id : ids) {
+            YandexMapMarkerController controller = idToController.get(id);
+
+            if (controller != null) {
+                controller.remove();
+            }
         }
+    }
 
-        @Override
-        public boolean onMapObjectTap(@NonNull MapObject mapObject, @NonNull Point point) {
-            methodChannel.invokeMethod("onMapObjectTap", new Gson().toJson(new YandexJsonConversion.JsonMapObjectEventWithPoint(id, point)));
+    private void updateMarker(MethodCall call) {
+        Integer id = call.argument("id");
 
-            return true;
+        YandexMapMarkerController controller = idToController.get(id);
+
+        if (controller != null) {
+            updateMarkerWithController(controller, call);
         }
     }
 
-    private class YandexCameraListener implements CameraListener {
-        @Override
-        public void onCameraPositionChanged(@NonNull Map map, @NonNull CameraPosition position, @NonNull CameraUpdateSource cameraUpdateSource, boolean finished) {
-            JsonPositionChangedEvent event = new JsonPositionChangedEvent(position, finished);
-            methodChannel.invokeMethod("onCameraPositionChanged", new Gson().toJson(event));
+    private void updateMarkerWithController(YandexMapMarkerController markerController, MethodCall call) {
+        if (call.hasArgument("icon")) {
+            setIcons(Collections.singletonList(markerController), call.argument("icon"));
+        }
+
+        updateMarkerProperties(markerController, call);
+    }
+
+    private void updateMarkerProperties(YandexMapMarkerController markerController, MethodCall call) {
+        if (call.hasArgument("visible")) {
+            markerController.setVisible((boolean) call.argument("visible"));
+        }
+
+        if (call.hasArgument("draggable")) {
+            markerController.setDraggable((boolean) call.argument("draggable"));
+        }
+
+        if (call.hasArgument("zIndex")) {
+            markerController.setZIndex(((Number) call.argument("zIndex")).floatValue());
+        }
+
+        if (call.hasArgument("alpha")) {
+            markerController.setOpacity(((Number) call.argument("alpha")).floatValue());
+        } else if (call.hasArgument("opacity")) {
+            markerController.setOpacity(((Number) call.argument("opacity")).floatValue());
+        }
+    }
+
+    @Override
+    public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+        pipeline.submit(call, result);
+    }
+
+    private void handle(MethodCall call, MethodChannel.Result result) {
+        switch (call.method) {
+            case "showUserLocation": {
+                if (userLocationController == null) {
+                    ImageProvider image = YandexImageConversion.fromFlutter(context, call.arguments);
+
+                    if (image != null) {
+                        userLocationController = new YandexMapUserLayerController(image);
+                    }
+                }
+
+                result.success(null);
+                break;
+            }
+            case "polygon#updateAll":
+                updatePolygons(call);
+                result.success(null);
+                break;
+            case "polygon#remove": {
+                YandexMapPolygonController controller = idToPolygonController.get((Integer) call.argument("id"));
+
+                if (controller != null) {
+                    controller.remove();
+                }
+
+                result.success(null);
+                break;
+            }
+            case "polyline#update":
+                updatePolyline(call);
+                result.success(null);
+                break;
+            case "layer#loadGeoJson": {
+                final YandexGeoJsonLayer layer = new YandexGeoJsonLayer((java.util.Map<?, ?>) call.arguments);
+
+                getLayerExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        layer.load();
+                    }
+                });
+
+                result.success(layer.id);
+                break;
+            }
+            case "layer#remove": {
+                YandexGeoJsonLayer layer = idToLayer.get((Integer) call.argument("id"));
+
+                if (layer != null) {
+                    layer.remove();
+                }
+
+                result.success(null);
+                break;
+            }
+            case "query#markersInBox":
+            case "query#markersInRadius":
+            case "query#markersInPolygon":
+            case "query#nearestMarkers":
+            case "query#polygonsAtPoint":
+                queries.handle(call, result);
+                break;
+            case "marker#update":
+                updateMarker(call);
+                result.success(null);
+                break;
+            case "camera#setEventFilter":
+                cameraListener.eventFilter.configure((java.util.Map<?, ?>) call.arguments);
+                result.success(null);
+                break;
+            case "markers#setVirtualization":
+                viewport.configure((java.util.Map<?, ?>) call.arguments);
+                result.success(null);
+                break;
+            case "markers#setClustering":
+                clustering.configure((java.util.Map<?, ?>) call.arguments);
+                result.success(null);
+                break;
+            case "fleet#update":
+                fleet.update(call);
+                result.success(null);
+                break;
+            case "marker#updateAll":
+                updateMarkers(call);
+                result.success(null);
+                break;
+            case "marker#removeAll":
+                removeMarkers(call);
+                result.success(null);
+                break;
+            case "marker#remove": {
+                Integer id = call.argument("id");
+
+                YandexMapMarkerController controller = idToController.get(id);
+
+                if (controller != null) {
+                    controller.remove();
+                }
+
+                result.success(null);
+                break;
+            }
+            default:
+                result.notImplemented();
+                break;
+        }
+    }
+
+    @Override
+    public void onMoveFinished(boolean b) {
+    }
+
+
+    /**
+     * Reads arguments of calls that are expensive to read and builds their geometry on the
+     * pipeline thread, leaving only map object changes to the main thread.
+     */
+    private class YandexCallDecoder implements YandexCallPipeline.Decoder {
+        @Override
+        public boolean decodes(String method) {
+            switch (method) {
+                case "move":
+                case "polygon#add":
+                case "polygon#update":
+                case "polyline#add":
+                case "polyline#append":
+                case "polyline#remove":
+                case "mapObjects#sync":
+                case "marker#init":
+                case "marker#addAll":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public YandexCallPipeline.Applier decode(MethodCall call) {
+            switch (call.method) {
+                case "move":
+                    return decodeMove(call);
+                case "polygon#add":
+                    return decodeAddPolygon(call);
+                case "polygon#update":
+                    return decodeUpdatePolygon(call);
+                case "polyline#add":
+                    return decodeAddPolyline(call);
+                case "polyline#append":
+                    return decodeAppendPolyline(call);
+                case "polyline#remove":
+                    return decodeRemovePolyline(call);
+                case "mapObjects#sync":
+                    return decodeSyncMapObjects(call);
+                case "marker#init":
+                    return decodeAddMarker(call);
+                case "marker#addAll":
+                    return decodeAddMarkers(call);
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public void handle(MethodCall call, MethodChannel.Result result) {
+            YandexMapController.this.handle(call, result);
+        }
+    }
+
+    /**
+     * Polygon geometry read from call arguments. The polygon is only built when it is shown without
+     * simplification, rings and the simplify tolerance are null when not sent.
+     */
+    private static class YandexPolygonGeometry {
+        final double[][] rings;
+        final Double simplifyTolerance;
+        final Polygon polygon;
+
+        YandexPolygonGeometry(java.util.Map<?, ?> params) {
+            this(
+                    params.get("outerPoints") != null ? YandexBinaryConversion.toRings(params) : null,
+                    params.get("simplifyTolerance") != null
+                            ? ((Number) params.get("simplifyTolerance")).doubleValue()
+                            : null
+            );
+        }
+
+        YandexPolygonGeometry(double[][] rings, Double simplifyTolerance) {
+            this.rings = rings;
+            this.simplifyTolerance = simplifyTolerance;
+
+            polygon = rings != null && (simplifyTolerance == null || simplifyTolerance <= 0)
+                    ? YandexBinaryConversion.toPolygon(rings)
+                    : null;
+        }
+    }
+
+    private class YandexMapUserLayerController implements UserLocationObjectListener {
+        private ImageProvider image;
+
+        YandexMapUserLayerController(ImageProvider image) {
+            this.image = image;
+
+            UserLocationLayer userLocationLayer = mapView.getMap().getUserLocationLayer();
+
+            userLocationLayer.setEnabled(true);
+            userLocationLayer.setHeadingEnabled(true);
+
+            userLocationLayer.setObjectListener(this);
+        }
+
+        @Override
+        public void onObjectAdded(@NonNull UserLocationView userLocationView) {
+            userLocationView.getPin().setIcon(image);
+            userLocationView.getArrow().setVisible(false);
+            userLocationView.getAccuracyCircle().setVisible(false);
+        }
+
+        @Override
+        public void onObjectRemoved(@NonNull UserLocationView userLocationView) {
+
+        }
+
+        @Override
+        public void onObjectUpdated(@NonNull UserLocationView userLocationView, @NonNull ObjectEvent objectEvent) {
+
+        }
+    }
+
+    private class YandexMapMarkerController {
+        final int id;
+        long iconRequest;
+        boolean hasIcon;
+        boolean removed;
+        int viewportGeneration;
+        int syncGeneration;
+        Object iconDescriptor;
+
+        Point point;
+        ImageProvider icon;
+        boolean visible = true;
+        boolean clustered = false;
+        boolean draggable = false;
+        float zIndex = 0;
+        float opacity = 1;
+        float direction = 0;
+        boolean rotated = false;
+
+        private PlacemarkMapObject mapObject;
+
+        YandexMapMarkerController(Point point) {
+            id = lastMapObjectId.incrementAndGet();
+
+            this.point = point;
+
+            idToController.put(id, this);
+            markerIndex.insert(point.getLatitude(), point.getLongitude(), this);
+            clustering.invalidate();
+            YandexMetrics.getInstance().adjustObjects("markers", 1);
+        }
+
+        boolean isAttached() {
+            return mapObject != null;
+        }
+
+        /**
+         * Binds the marker to a placemark and applies its state.
+         * Recycled placemarks get every property, new ones only the non-default ones.
+         */
+        void attach(PlacemarkMapObject mapObject, ImageProvider currentIcon, boolean recycled) {
+            this.mapObject = mapObject;
+
+            mapObject.setUserData(id);
+            mapObject.setDragListener(markerListener);
+
+            if (icon != null && icon != currentIcon) {
+                mapObject.setIcon(icon);
+            }
+
+            if (recycled || !visible || clustered) {
+                mapObject.setVisible(visible && !clustered);
+            }
+
+            if (recycled || draggable) {
+                mapObject.setDraggable(draggable);
+            }
+
+            if (recycled || zIndex != 0) {
+                mapObject.setZIndex(zIndex);
+            }
+
+            if (recycled || opacity != 1) {
+                mapObject.setOpacity(opacity);
+            }
+
+            if (recycled || rotated) {
+                mapObject.setIconStyle(new IconStyle().setRotationType(rotated ? RotationType.ROTATE : RotationType.NO_ROTATION));
+                mapObject.setDirection(direction);
+            }
+        }
+
+        PlacemarkMapObject detach() {
+            PlacemarkMapObject detached = mapObject;
+
+            detached.setUserData(null);
+            detached.setDragListener(null);
+            mapObject = null;
+
+            return detached;
+        }
+
+        void setPoint(Point point) {
+            if (point.getLatitude() == this.point.getLatitude() && point.getLongitude() == this.point.getLongitude()) {
+                return;
+            }
+
+            markerIndex.move(
+                    this.point.getLatitude(),
+                    this.point.getLongitude(),
+                    point.getLatitude(),
+                    point.getLongitude(),
+                    this
+            );
+            this.point = point;
+
+            if (mapObject != null) {
+                mapObject.setGeometry(point);
+            }
+
+            clustering.invalidate();
+        }
+
+        public void setIcon(ImageProvider provider) {
+            icon = provider;
+            hasIcon = true;
+
+            if (mapObject != null) {
+                mapObject.setIcon(provider);
+            }
+        }
+
+        /**
+         * Goes back to the default icon. Placemarks only have it when created, so an attached
+         * placemark is replaced.
+         */
+        void resetIcon() {
+            icon = null;
+            hasIcon = false;
+            iconRequest = 0;
+
+            if (mapObject != null) {
+                MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
+
+                mapObjects.remove(detach());
+                attach(mapObjects.addPlacemark(point), null, false);
+            }
+        }
+
+        void setRotated() {
+            if (rotated) {
+                return;
+            }
+
+            rotated = true;
+
+            if (mapObject != null) {
+                mapObject.setIconStyle(new IconStyle().setRotationType(RotationType.ROTATE));
+            }
+        }
+
+        void setDirection(float direction) {
+            if (this.direction == direction) {
+                return;
+            }
+
+            this.direction = direction;
+
+            if (mapObject != null) {
+                mapObject.setDirection(direction);
+            }
+        }
+
+        public void setOpacity(float opacity) {
+            if (this.opacity == opacity) {
+                return;
+            }
+
+            this.opacity = opacity;
+
+            if (mapObject != null) {
+                mapObject.setOpacity(opacity);
+            }
+        }
+
+        public void setZIndex(float zIndex) {
+            if (this.zIndex == zIndex) {
+                return;
+            }
+
+            this.zIndex = zIndex;
+
+            if (mapObject != null) {
+                mapObject.setZIndex(zIndex);
+            }
+        }
+
+        public void setDraggable(boolean draggable) {
+            if (this.draggable == draggable) {
+                return;
+            }
+
+            this.draggable = draggable;
+
+            if (mapObject != null) {
+                mapObject.setDraggable(draggable);
+            }
+        }
+
+        public void setVisible(boolean visible) {
+            if (this.visible == visible) {
+                return;
+            }
+
+            this.visible = visible;
+
+            if (mapObject != null) {
+                mapObject.setVisible(visible && !clustered);
+            }
+        }
+
+        void setClustered(boolean clustered) {
+            this.clustered = clustered;
+
+            if (mapObject != null) {
+                mapObject.setVisible(visible && !clustered);
+            }
+        }
+
+        public void remove() {
+            if (removed) {
+                return;
+            }
+
+            if (mapObject != null) {
+                mapView.getMap().getMapObjects().remove(detach());
+            }
+
+            markerIndex.remove(point.getLatitude(), point.getLongitude(), this);
+            idToController.remove(id);
+            fleet.remove(id);
+            removed = true;
+            clustering.invalidate();
+            YandexMetrics.getInstance().adjustObjects("markers", -1);
+        }
+    }
+
+    /**
+     * Tap and drag listener shared by all marker placemarks, which carry their marker id as user data.
+     * Taps are received through the root collection, drag events are set on each placemark.
+     */
+    private class YandexMarkerListener implements MapObjectTapListener, MapObjectDragListener {
+        private YandexMapMarkerController controllerOf(MapObject mapObject) {
+            Object userData = mapObject.getUserData();
+
+            return userData instanceof Integer ? idToController.get((Integer) userData) : null;
+        }
+
+        @Override
+        public void onMapObjectDragStart(@NonNull MapObject mapObject) {
+            YandexMapMarkerController controller = controllerOf(mapObject);
+
+            if (controller != null) {
+                markerEvents.add(YandexMarkerEventBatch.DRAG_START, controller.id, null);
+            }
+        }
+
+        @Override
+        public void onMapObjectDrag(@NonNull MapObject mapObject, @NonNull Point point) {
+            YandexMapMarkerController controller = controllerOf(mapObject);
+
+            if (controller != null) {
+                markerEvents.add(YandexMarkerEventBatch.DRAG, controller.id, point);
+            }
+        }
+
+        @Override
+        public void onMapObjectDragEnd(@NonNull MapObject mapObject) {
+            YandexMapMarkerController controller = controllerOf(mapObject);
+
+            if (controller == null) {
+                return;
+            }
+
+            controller.setPoint(((PlacemarkMapObject) mapObject).getGeometry());
+            markerEvents.add(YandexMarkerEventBatch.DRAG_END, controller.id, null);
+        }
+
+        @Override
+        public boolean onMapObjectTap(@NonNull MapObject mapObject, @NonNull Point point) {
+            YandexMapMarkerController controller = controllerOf(mapObject);
+
+            if (controller == null) {
+                return false;
+            }
+
+            markerEvents.add(YandexMarkerEventBatch.TAP, controller.id, point);
+
+            return true;
+        }
+    }
+
+    /**
+     * Moves markers smoothly between reported positions.
+     *
+     * Each update starts an interpolation from the currently shown position and heading towards
+     * the reported ones. It lasts as long as the time between the marker's last two reports,
+     * capped by maxDuration, so markers keep moving until the next report arrives.
+     * Placemarks are updated every frame, the spatial index only when an interpolation ends.
+     */
+    private class YandexFleetAnimation implements Choreographer.FrameCallback {
+        private long maxDuration = 5000;
+        private boolean scheduled;
+
+        private final SparseArray<Track> tracks = new SparseArray<>();
+        private final List<Track> active = new ArrayList<>();
+
+        void update(MethodCall call) {
+            int[] ids = call.argument("ids");
+            double[] values = call.argument("values");
+            long now = System.nanoTime();
+
+            if (call.argument("maxDuration") != null) {
+                maxDuration = ((Number) call.argument("maxDuration")).longValue();
+            }
+
+            for (int i = 0; i < ids.length; i++) {
+                YandexMapMarkerController controller = idToController.get(ids[i]);
+
+                if (controller == null) {
+                    tracks.remove(ids[i]);
+                    continue;
+                }
+
+                Track track = tracks.get(ids[i]);
+                double latitude = values[i * 4];
+                double longitude = values[i * 4 + 1];
+                double heading = values[i * 4 + 2];
+                double timestamp = values[i * 4 + 3];
+
+                if (!Double.isNaN(heading)) {
+                    controller.setRotated();
+                }
+
+                if (track == null) {
+                    track = new Track(controller);
+                    tracks.put(ids[i], track);
+                } else if (timestamp <= track.timestamp) {
+                    continue;
+                }
+
+                long duration = track.timestamp > 0
+                        ? Math.min(maxDuration, (long) (timestamp - track.timestamp))
+                        : 0;
+
+                track.timestamp = timestamp;
+
+                if (duration <= 0 || !controller.isAttached()) {
+                    track.finish(latitude, longitude, heading);
+                    continue;
+                }
+
+                track.start(latitude, longitude, heading, now, duration * 1000000);
+            }
+
+            if (!active.isEmpty() && !scheduled) {
+                scheduled = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void cancel() {
+            if (scheduled) {
+                scheduled = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        /**
+         * Drops the track of a removed marker.
+         */
+        void remove(int id) {
+            Track track = tracks.get(id);
+
+            if (track == null) {
+                return;
+            }
+
+            tracks.remove(id);
+
+            if (track.listed) {
+                track.listed = false;
+                track.moving = false;
+                active.remove(track);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled = false;
+
+            for (int i = active.size() - 1; i >= 0; i--) {
+                Track track = active.get(i);
+
+                if (track.controller.removed) {
+                    tracks.remove(track.controller.id);
+                    track.moving = false;
+                } else if (track.moving) {
+                    track.step(frameTimeNanos);
+                }
+
+                if (!track.moving) {
+                    track.listed = false;
+                    active.set(i, active.get(active.size() - 1));
+                    active.remove(active.size() - 1);
+                }
+            }
+
+            if (!active.isEmpty()) {
+                scheduled = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        private class Track {
+            final YandexMapMarkerController controller;
+            double timestamp;
+            boolean moving;
+            boolean listed;
+
+            private double fromLatitude;
+            private double fromLongitude;
+            private double fromHeading;
+            private double toLatitude;
+            private double toLongitude;
+            private double toHeading;
+            private long startTime;
+            private long duration;
+
+            private double latitude;
+            private double longitude;
+            private double heading;
+
+            Track(YandexMapMarkerController controller) {
+                this.controller = controller;
+                this.latitude = controller.point.getLatitude();
+                this.longitude = controller.point.getLongitude();
+                this.heading = controller.direction;
+            }
+
+            void start(double latitude, double longitude, double heading, long now, long duration) {
+                fromLatitude = this.latitude;
+                fromLongitude = this.longitude;
+                fromHeading = this.heading;
+                toLatitude = latitude;
+                toLongitude = longitude;
+                toHeading = Double.isNaN(heading) ? this.heading : heading;
+                startTime = now;
+                this.duration = duration;
+
+                moving = true;
+
+                if (!listed) {
+                    listed = true;
+                    active.add(this);
+                }
+            }
+
+            void step(long frameTime) {
+                if (!controller.isAttached()) {
+                    finish(toLatitude, toLongitude, toHeading);
+                    return;
+                }
+
+                double t = Math.max(0, Math.min(1, (double) (frameTime - startTime) / duration));
+
+                if (t >= 1) {
+                    finish(toLatitude, toLongitude, toHeading);
+                    return;
+                }
+
+                double headingDelta = ((toHeading - fromHeading) % 360 + 540) % 360 - 180;
+
+                latitude = fromLatitude + (toLatitude - fromLatitude) * t;
+                longitude = fromLongitude + (toLongitude - fromLongitude) * t;
+                heading = fromHeading + headingDelta * t;
+
+                controller.mapObject.setGeometry(new Point(latitude, longitude));
+                controller.setDirection((float) heading);
+            }
+
+            void finish(double latitude, double longitude, double heading) {
+                this.latitude = latitude;
+                this.longitude = longitude;
+
+                if (!Double.isNaN(heading)) {
+                    this.heading = heading;
+                }
+
+                moving = false;
+                controller.setPoint(new Point(latitude, longitude));
+                controller.setDirection((float) this.heading);
+
+                if (controller.mapObject != null) {
+                    controller.mapObject.setGeometry(controller.point);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects marker events and sends them to Dart as one onMapObjectEvents call per frame.
+     *
+     * Consecutive drags of a marker within a frame are merged, keeping the last position.
+     * Batches are numbered so Dart can ignore stale ones.
+     */
+    private class YandexMarkerEventBatch implements Choreographer.FrameCallback {
+        static final int TAP = 0;
+        static final int DRAG_START = 1;
+        static final int DRAG = 2;
+        static final int DRAG_END = 3;
+
+        private int[] types = new int[16];
+        private int[] ids = new int[16];
+        private double[] points = new double[32];
+        private int count;
+        private int seq;
+        private boolean scheduled;
+
+        private final SparseIntArray pendingDrags = new SparseIntArray();
+
+        void add(int type, int id, Point point) {
+            if (type == DRAG) {
+                int index = pendingDrags.get(id, -1);
+
+                if (index >= 0) {
+                    points[index * 2] = point.getLatitude();
+                    points[index * 2 + 1] = point.getLongitude();
+                    return;
+                }
+
+                pendingDrags.put(id, count);
+            } else {
+                pendingDrags.delete(id);
+            }
+
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+                points = Arrays.copyOf(points, count * 4);
+            }
+
+            types[count] = type;
+            ids[count] = id;
+            points[count * 2] = point != null ? point.getLatitude() : Double.NaN;
+            points[count * 2 + 1] = point != null ? point.getLongitude() : Double.NaN;
+            count++;
+
+            if (!scheduled) {
+                scheduled = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        void cancel() {
+            if (scheduled) {
+                scheduled = false;
+                Choreographer.getInstance().removeFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduled = false;
+
+            java.util.Map<String, Object> arguments = new HashMap<>();
+            arguments.put("seq", ++seq);
+            arguments.put("types", Arrays.copyOf(types, count));
+            arguments.put("ids", Arrays.copyOf(ids, count));
+            arguments.put("points", Arrays.copyOf(points, count * 2));
+
+            count = 0;
+            pendingDrags.clear();
+
+            methodChannel.invokeMethod("onMapObjectEvents", arguments);
+            YandexMetrics.getInstance().recordEvent("onMapObjectEvents");
+        }
+    }
+
+    /**
+     * Keeps only markers inside the visible region plus a margin attached to placemarks.
+     * Placemarks of markers that leave the region are hidden and reused for markers that enter it.
+     */
+    private class YandexMarkerViewport {
+        private static final int POOL_SIZE = 256;
+
+        boolean enabled;
+        private double margin = 0.5;
+
+        private boolean hasRegion;
+        private double minLatitude;
+        private double minLongitude;
+        private double maxLatitude;
+        private double maxLongitude;
+
+        private int generation;
+        private List<YandexMapMarkerController> attached = new ArrayList<>();
+        private final ArrayDeque<PlacemarkMapObject> pool = new ArrayDeque<>();
+
+        void configure(java.util.Map<?, ?> params) {
+            enabled = (Boolean) params.get("enabled");
+
+            if (params.get("margin") != null) {
+                margin = ((Number) params.get("margin")).doubleValue();
+            }
+
+            if (enabled) {
+                attached.clear();
+
+                for (int i = 0; i < idToController.size(); i++) {
+                    YandexMapMarkerController controller = idToController.valueAt(i);
+
+                    if (controller.isAttached()) {
+                        attached.add(controller);
+                    }
+                }
+
+                update(true);
+            } else {
+                MapObjectCollection mapObjects = mapView.getMap().getMapObjects();
+
+                for (int i = 0; i < idToController.size(); i++) {
+                    YandexMapMarkerController controller = idToController.valueAt(i);
+
+                    if (!controller.isAttached()) {
+                        attach(controller, mapObjects.addPlacemark(controller.point));
+                    }
+                }
+
+                for (PlacemarkMapObject placemark : pool) {
+                    mapObjects.remove(placemark);
+                }
+
+                pool.clear();
+                attached.clear();
+                hasRegion = false;
+            }
+        }
+
+        boolean contains(Point point) {
+            if (!enabled) {
+                return true;
+            }
+
+            return hasRegion &&
+                    point.getLatitude() >= minLatitude && point.getLatitude() <= maxLatitude &&
+                    point.getLongitude() >= minLongitude && point.getLongitude() <= maxLongitude;
+        }
+
+        void attach(YandexMapMarkerController controller, PlacemarkMapObject placemark) {
+            controller.attach(placemark, null, false);
+
+            if (enabled) {
+                attached.add(controller);
+            }
+        }
+
+        /**
+         * Recomputes attached markers when the visible region left the attached region
+         * or became much smaller than it.
+         */
+        void update(boolean force) {
+            if (!enabled) {
+                return;
+            }
+
+            VisibleRegion region = mapView.getMap().getVisibleRegion();
+            Point[] corners = new Point[] {
+                    region.getTopLeft(),
+                    region.getTopRight(),
+                    region.getBottomLeft(),
+                    region.getBottomRight()
+            };
+
+            double visibleMinLatitude = 90;
+            double visibleMaxLatitude = -90;
+            double visibleMinLongitude = 180;
+            double visibleMaxLongitude = -180;
+
+            for (Point corner : corners) {
+                visibleMinLatitude = Math.min(visibleMinLatitude, corner.getLatitude());
+                visibleMaxLatitude = Math.max(visibleMaxLatitude, corner.getLatitude());
+                visibleMinLongitude = Math.min(visibleMinLongitude, corner.getLongitude());
+                visibleMaxLongitude = Math.max(visibleMaxLongitude, corner.getLongitude());
+            }
+
+            double latitudeSpan = visibleMaxLatitude - visibleMinLatitude;
+            double longitudeSpan = visibleMaxLongitude - visibleMinLongitude;
+
+            if (!force && hasRegion &&
+                    visibleMinLatitude >= minLatitude && visibleMaxLatitude <= maxLatitude &&
+                    visibleMinLongitude >= minLongitude && visibleMaxLongitude <= maxLongitude &&
+                    latitudeSpan * longitudeSpan * 16 > (maxLatitude - minLatitude) * (maxLongitude - minLongitude)) {
+                return;
+            }
+
+            hasRegion = true;
+            minLatitude = Math.max(-90, visibleMinLatitude - latitudeSpan * margin);
+            maxLatitude = Math.min(90, visibleMaxLatitude + latitudeSpan * margin);
+
+            if (longitudeSpan > 180) {
+                minLongitude = -180;
+                maxLongitude = 180;
+            } else {
+                minLongitude = visibleMinLongitude - longitudeSpan * margin;
+                maxLongitude = visibleMaxLongitude + longitudeSpan * margin;
+            }
+
+            final int currentGeneration = ++generation;
+            final List<YandexMapMarkerController> inside = new ArrayList<>();
+            YandexSpatialIndex.Visitor<YandexMapMarkerController> visitor = new YandexSpatialIndex.Visitor<YandexMapMarkerController>() {
+                @Override
+                public void visit(YandexMapMarkerController controller, double latitude, double longitude) {
+                    controller.viewportGeneration = currentGeneration;
+                    inside.add(controller);
+                }
+            };
+
+            markerIndex.query(minLatitude, minLongitude, maxLatitude, maxLongitude, visitor);
+
+            if (minLongitude < -180) {
+                markerIndex.query(minLatitude, minLongitude + 360, maxLatitude, 180, visitor);
+            }
+
+            if (maxLongitude > 180) {
+                markerIndex.query(minLatitude, -180, maxLatitude, maxLongitude - 360, visitor);
+            }
+
+            for (YandexMapMarkerController controller : attached) {
+                if (!controller.removed && controller.isAttached() && controller.viewportGeneration != currentGeneration) {
+                    recycle(controller.detach());
+                }
+            }
+
+            for (YandexMapMarkerController controller : inside) {
+                if (!controller.isAttached()) {
+                    obtain(controller);
+                }
+            }
+
+            attached = inside;
+        }
+
+        private void obtain(YandexMapMarkerController controller) {
+            PlacemarkMapObject placemark = controller.icon != null ? pool.poll() : null;
+
+            if (placemark != null) {
+                placemark.setGeometry(controller.point);
+                controller.attach(placemark, null, true);
+            } else {
+                controller.attach(mapView.getMap().getMapObjects().addPlacemark(controller.point), null, false);
+            }
+        }
+
+        private void recycle(PlacemarkMapObject placemark) {
+            if (pool.size() < POOL_SIZE) {
+                placemark.setVisible(false);
+                pool.add(placemark);
+            } else {
+                mapView.getMap().getMapObjects().remove(placemark);
+            }
+        }
+    }
+
+    /**
+     * Replaces groups of nearby markers with count badges.
+     *
+     * Clusters for all zoom levels are built on the worker thread from a snapshot of marker positions
+     * whenever markers change; finished camera moves only pick the level for the current zoom.
+     */
+    private class YandexMarkerClustering implements MapObjectTapListener {
+        boolean enabled;
+        private int cellSize = 64;
+        private int minClusterSize = 2;
+
+        private boolean dirty = true;
+        private boolean updateScheduled;
+        private int generation;
+
+        private MapObjectCollection clusters;
+        private YandexMarkerClusterer clusterer;
+        private YandexMapMarkerController[] snapshot;
+        private YandexMarkerClusterer.Level shownLevel;
+
+        private final Runnable updateRunnable = new Runnable() {
+            @Override
+            public void run() {
+                updateScheduled = false;
+                update();
+            }
+        };
+
+        void configure(java.util.Map<?, ?> params) {
+            enabled = (Boolean) params.get("enabled");
+
+            if (params.get("cellSize") != null) {
+                cellSize = ((Number) params.get("cellSize")).intValue();
+            }
+
+            if (params.get("minClusterSize") != null) {
+                minClusterSize = ((Number) params.get("minClusterSize")).intValue();
+            }
+
+            dirty = true;
+            shownLevel = null;
+
+            if (enabled) {
+                if (clusters == null) {
+                    clusters = mapView.getMap().getMapObjects().addCollection();
+                    clusters.addTapListener(this);
+                }
+
+                update();
+            } else {
+                generation++;
+                clusterer = null;
+                snapshot = null;
+
+                if (clusters != null) {
+                    clusters.clear();
+                }
+
+                for (int i = 0; i < idToController.size(); i++) {
+                    YandexMapMarkerController controller = idToController.valueAt(i);
+
+                    if (controller.clustered) {
+                        controller.setClustered(false);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Marks clusters as stale and schedules one rebuild for all changes made in this loop pass.
+         */
+        void invalidate() {
+            dirty = true;
+
+            if (enabled && !updateScheduled) {
+                updateScheduled = true;
+                mainHandler.post(updateRunnable);
+            }
+        }
+
+        void update() {
+            if (!enabled) {
+                return;
+            }
+
+            if (!dirty && clusterer != null) {
+                render(clusterer.level(mapView.getMap().getCameraPosition().getZoom()));
+                return;
+            }
+
+            dirty = false;
+
+            final int currentGeneration = ++generation;
+            final YandexMapMarkerController[] markers = new YandexMapMarkerController[idToController.size()];
+            final double[] latitudes = new double[markers.length];
+            final double[] longitudes = new double[markers.length];
+            final int currentCellSize = cellSize;
+
+            for (int i = 0; i < markers.length; i++) {
+                markers[i] = idToController.valueAt(i);
+                latitudes[i] = markers[i].point.getLatitude();
+                longitudes[i] = markers[i].point.getLongitude();
+            }
+
+            getWorkerExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final YandexMarkerClusterer result = new YandexMarkerClusterer(
+                            latitudes,
+                            longitudes,
+                            markers.length,
+                            currentCellSize
+                    );
+
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!enabled || currentGeneration != generation) {
+                                return;
+                            }
+
+                            clusterer = result;
+                            snapshot = markers;
+                            shownLevel = null;
+                            render(result.level(mapView.getMap().getCameraPosition().getZoom()));
+                        }
+                    });
+                }
+            });
+        }
+
+        private void render(YandexMarkerClusterer.Level level) {
+            if (level == shownLevel) {
+                return;
+            }
+
+            shownLevel = level;
+            clusters.clear();
+
+            for (int i = 0; i < snapshot.length; i++) {
+                YandexMapMarkerController controller = snapshot[i];
+                boolean inCluster = level.counts[level.clusterOfPoint[i]] >= minClusterSize;
+
+                if (!controller.removed && controller.clustered != inCluster) {
+                    controller.setClustered(inCluster);
+                }
+            }
+
+            for (int cluster = 0; cluster < level.clusterCount; cluster++) {
+                int count = level.counts[cluster];
+
+                if (count < minClusterSize) {
+                    continue;
+                }
+
+                PlacemarkMapObject placemark = clusters.addPlacemark(
+                        new Point(level.latitudes[cluster], level.longitudes[cluster]),
+                        YandexImageConversion.clusterIcon(context, count)
+                );
+                // Negative, so the root marker listener never mistakes badges for markers
+                placemark.setUserData(-cluster - 1);
+            }
+        }
+
+        @Override
+        public boolean onMapObjectTap(@NonNull MapObject mapObject, @NonNull Point point) {
+            if (shownLevel == null || !(mapObject.getUserData() instanceof Integer)) {
+                return false;
+            }
+
+            int[] members = shownLevel.members(-(Integer) mapObject.getUserData() - 1);
+            int[] ids = new int[members.length];
+            int count = 0;
+
+            for (int member : members) {
+                if (!snapshot[member].removed) {
+                    ids[count++] = snapshot[member].id;
+                }
+            }
+
+            java.util.Map<String, Object> arguments = new HashMap<>();
+            arguments.put("ids", Arrays.copyOf(ids, count));
+            arguments.put("point", YandexBinaryConversion.fromPoint(point));
+
+            methodChannel.invokeMethod("onClusterTap", arguments);
+            YandexMetrics.getInstance().recordEvent("onClusterTap");
+
+            return true;
+        }
+    }
+
+    /**
+     * Polygon with its style kept natively, so updates touch only properties that changed.
+     *
+     * With a simplify tolerance, simplified versions for all zoom levels are computed on the worker
+     * thread, the polygon is shown once they are ready and its geometry is swapped when the zoom
+     * crosses a level.
+     */
+    private class YandexMapPolygonController {
+        final int id;
+        boolean removed;
+        int syncGeneration;
+        double simplifyTolerance;
+        double[][] rings;
+
+        int fillColor;
+        int strokeColor;
+        float strokeWidth;
+        float zIndex;
+
+        private int geometryGeneration;
+        private YandexPolygonSimplifier simplifier;
+        private java.util.Map<double[][], Polygon> polygons;
+        private double[][] shownLevel;
+        private PolygonMapObject mapObject;
+
+        YandexMapPolygonController(int fillColor, int strokeColor, float strokeWidth, float zIndex) {
+            id = lastMapObjectId.incrementAndGet();
+
+            this.fillColor = fillColor;
+            this.strokeColor = strokeColor;
+            this.strokeWidth = strokeWidth;
+            this.zIndex = zIndex;
+
+            idToPolygonController.put(id, this);
+            YandexMetrics.getInstance().adjustObjects("polygons", 1);
+        }
+
+        void setGeometry(Polygon polygon) {
+            geometryGeneration++;
+
+            if (simplifier != null) {
+                simplifier = null;
+                polygons = null;
+                shownLevel = null;
+                simplifiedPolygons.remove(this);
+            }
+
+            show(polygon);
+        }
+
+        void setSimplifiedGeometry(final double[][] rings) {
+            final int currentGeneration = ++geometryGeneration;
+            final double tolerance = simplifyTolerance;
+
+            getWorkerExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    final YandexPolygonSimplifier result = new YandexPolygonSimplifier(rings, tolerance);
+                    final java.util.Map<double[][], Polygon> resultPolygons = new IdentityHashMap<>();
+
+                    for (int zoom = 0; zoom <= YandexPolygonSimplifier.MAX_ZOOM; zoom++) {
+                        double[][] level = result.level(zoom);
+
+                        if (!resultPolygons.containsKey(level)) {
+                            resultPolygons.put(level, YandexBinaryConversion.toPolygon(level));
+                        }
+                    }
+
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (removed || currentGeneration != geometryGeneration) {
+                                return;
+                            }
+
+                            if (simplifier == null) {
+                                simplifiedPolygons.add(YandexMapPolygonController.this);
+                            }
+
+                            simplifier = result;
+                            polygons = resultPolygons;
+                            shownLevel = result.level(mapView.getMap().getCameraPosition().getZoom());
+                            show(polygons.get(shownLevel));
+                        }
+                    });
+                }
+            });
+        }
+
+        private void show(Polygon polygon) {
+            if (mapObject != null) {
+                mapObject.setGeometry(polygon);
+                return;
+            }
+
+            mapObject = mapView.getMap().getMapObjects().addPolygon(polygon);
+            mapObject.setFillColor(fillColor);
+            mapObject.setStrokeColor(strokeColor);
+            mapObject.setStrokeWidth(strokeWidth);
+            mapObject.setZIndex(zIndex);
+        }
+
+        void update(float zoom) {
+            double[][] level = simplifier.level(zoom);
+
+            if (level != shownLevel) {
+                shownLevel = level;
+                mapObject.setGeometry(polygons.get(level));
+            }
+        }
+
+        void setFillColor(int fillColor) {
+            if (this.fillColor != fillColor) {
+                this.fillColor = fillColor;
+
+                if (mapObject != null) {
+                    mapObject.setFillColor(fillColor);
+                }
+            }
+        }
+
+        void setStrokeColor(int strokeColor) {
+            if (this.strokeColor != strokeColor) {
+                this.strokeColor = strokeColor;
+
+                if (mapObject != null) {
+                    mapObject.setStrokeColor(strokeColor);
+                }
+            }
+        }
+
+        void setStrokeWidth(float strokeWidth) {
+            if (this.strokeWidth != strokeWidth) {
+                this.strokeWidth = strokeWidth;
+
+                if (mapObject != null) {
+                    mapObject.setStrokeWidth(strokeWidth);
+                }
+            }
+        }
+
+        void setZIndex(float zIndex) {
+            if (this.zIndex != zIndex) {
+                this.zIndex = zIndex;
+
+                if (mapObject != null) {
+                    mapObject.setZIndex(zIndex);
+                }
+            }
+        }
+
+        void remove() {
+            if (removed) {
+                return;
+            }
+
+            removed = true;
+            idToPolygonController.remove(id);
+            YandexMetrics.getInstance().adjustObjects("polygons", -1);
+
+            if (simplifier != null) {
+                simplifiedPolygons.remove(this);
+            }
+
+            if (mapObject != null) {
+                mapView.getMap().getMapObjects().remove(mapObject);
+                mapObject = null;
+            }
+        }
+    }
+
+    /**
+     * Spatial queries over markers and polygons, answered with ids.
+     *
+     * Queries run on a pool with a thread per core against a snapshot of marker positions, which is
+     * copied on the main thread only when markers were added, removed or moved since the last query.
+     * Large marker queries are split between the pool threads.
+     */
+    private class YandexSpatialQueries {
+        private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private ExecutorService executor;
+        private YandexPointSnapshot markerSnapshot;
+        private int markerSnapshotVersion;
+
+        void handle(final MethodCall call, final MethodChannel.Result result) {
+            if (call.method.equals("query#polygonsAtPoint")) {
+                queryPolygons(call, result);
+                return;
+            }
+
+            final YandexPointSnapshot snapshot = markerSnapshot();
+            final double[][] polygonRings;
+
+            if (call.method.equals("query#markersInPolygon") && call.argument("id") != null) {
+                YandexMapPolygonController controller = idToPolygonController.get((Integer) call.argument("id"));
+
+                polygonRings = controller != null && controller.rings != null ? controller.rings : new double[0][];
+            } else {
+                polygonRings = null;
+            }
+
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        query(snapshot, call, polygonRings, result);
+                    } catch (RuntimeException e) {
+                        sendError(result, e);
+                    }
+                }
+            });
+        }
+
+        void dispose() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Runs on the pool.
+         */
+        private void query(YandexPointSnapshot snapshot, MethodCall call, double[][] polygonRings, final MethodChannel.Result result) {
+            YandexPointSnapshot.Callback callback = new YandexPointSnapshot.Callback() {
+                @Override
+                public void onResult(int[] ids) {
+                    sendResult(result, ids);
+                }
+            };
+
+            switch (call.method) {
+                case "query#markersInBox": {
+                    double[] southWest = YandexBinaryConversion.toCoordinates(call.argument("southWest"));
+                    double[] northEast = YandexBinaryConversion.toCoordinates(call.argument("northEast"));
+
+                    snapshot.query(southWest[0], southWest[1], northEast[0], northEast[1], null, executor, callback);
+                    break;
+                }
+                case "query#markersInRadius": {
+                    double[] point = YandexBinaryConversion.toCoordinates(call.argument("point"));
+
+                    snapshot.queryRadius(point[0], point[1], ((Number) call.argument("radius")).doubleValue(), executor, callback);
+                    break;
+                }
+                case "query#markersInPolygon":
+                    snapshot.queryPolygon(
+                            polygonRings != null ? polygonRings : YandexBinaryConversion.toRings((java.util.Map<?, ?>) call.arguments),
+                            executor,
+                            callback
+                    );
+                    break;
+                case "query#nearestMarkers": {
+                    double[] point = YandexBinaryConversion.toCoordinates(call.argument("point"));
+                    Number maxDistance = call.argument("maxDistance");
+
+                    sendResult(result, snapshot.nearest(
+                            point[0],
+                            point[1],
+                            ((Number) call.argument("count")).intValue(),
+                            maxDistance != null ? maxDistance.doubleValue() : Double.POSITIVE_INFINITY
+                    ));
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Ids of polygons containing the point. Rings are only referenced on the main thread, they are
+         * replaced rather than changed.
+         */
+        private void queryPolygons(MethodCall call, final MethodChannel.Result result) {
+            final double[] point = YandexBinaryConversion.toCoordinates(call.argument("point"));
+            final int[] ids = new int[idToPolygonController.size()];
+            final double[][][] rings = new double[ids.length][][];
+            int size = 0;
+
+            for (int i = 0; i < idToPolygonController.size(); i++) {
+                YandexMapPolygonController controller = idToPolygonController.valueAt(i);
+
+                if (controller.rings != null) {
+                    ids[size] = controller.id;
+                    rings[size] = controller.rings;
+                    size++;
+                }
+            }
+
+            final int count = size;
+
+            getExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    int[] found = new int[count];
+                    int foundCount = 0;
+
+                    for (int i = 0; i < count; i++) {
+                        double[] bounds = YandexPointSnapshot.bounds(rings[i]);
+
+                        if (bounds != null && point[0] >= bounds[0] && point[0] <= bounds[2] &&
+                                point[1] >= bounds[1] && point[1] <= bounds[3] &&
+                                YandexPointSnapshot.contains(rings[i], point[0], point[1])) {
+                            found[foundCount++] = ids[i];
+                        }
+                    }
+
+                    sendResult(result, Arrays.copyOf(found, foundCount));
+                }
+            });
+        }
+
+        private YandexPointSnapshot markerSnapshot() {
+            if (markerSnapshot != null && markerSnapshotVersion == markerIndex.version()) {
+                return markerSnapshot;
+            }
+
+            int size = idToController.size();
+            int[] ids = new int[size];
+            double[] latitudes = new double[size];
+            double[] longitudes = new double[size];
+
+            for (int i = 0; i < size; i++) {
+                YandexMapMarkerController controller = idToController.valueAt(i);
+
+                ids[i] = controller.id;
+                latitudes[i] = controller.point.getLatitude();
+                longitudes[i] = controller.point.getLongitude();
+            }
+
+            markerSnapshot = new YandexPointSnapshot(ids, latitudes, longitudes, size, parallelism);
+            markerSnapshotVersion = markerIndex.version();
+
+            return markerSnapshot;
+        }
+
+        private ExecutorService getExecutor() {
+            if (executor == null) {
+                executor = Executors.newFixedThreadPool(parallelism);
+            }
+
+            return executor;
+        }
+
+        private void sendResult(final MethodChannel.Result result, final int[] ids) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    result.success(ids);
+                }
+            });
+        }
+
+        private void sendError(final MethodChannel.Result result, final RuntimeException e) {
+            Log.d("FLUTTER", "Cannot query map objects: " + e.getLocalizedMessage());
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    result.error("error", e.getMessage(), null);
+                }
+            });
+        }
+    }
+
+    /**
+     * Markers and polygons read from a GeoJSON asset or file.
+     *
+     * The file is read on the layer thread and its objects are added on the main thread in batches
+     * of BATCH_SIZE. Reading waits while two batches are not added yet, so memory use does not depend
+     * on the file size. Progress is sent after every batch.
+     */
+    private class YandexGeoJsonLayer implements YandexGeoJsonReader.Listener {
+        private static final int BATCH_SIZE = 500;
+
+        final int id;
+
+        private final String asset;
+        private final String path;
+        private final MethodCall markerCall;
+        private final int fillColor;
+        private final int strokeColor;
+        private final float strokeWidth;
+        private final float zIndex;
+        private final Double simplifyTolerance;
+
+        private final Semaphore pendingBatches = new Semaphore(2);
+        private final List<YandexMapMarkerController> markers = new ArrayList<>();
+        private final List<YandexMapPolygonController> polygons = new ArrayList<>();
+        private volatile boolean removed;
+
+        private YandexGeoJsonReader reader;
+        private long totalBytes;
+        private List<Point> points = new ArrayList<>();
+        private List<YandexPolygonGeometry> geometries = new ArrayList<>();
+
+        YandexGeoJsonLayer(java.util.Map<?, ?> params) {
+            java.util.Map<?, ?> marker = (java.util.Map<?, ?>) params.get("marker");
+            java.util.Map<?, ?> polygon = (java.util.Map<?, ?>) params.get("polygon");
+
+            id = lastMapObjectId.incrementAndGet();
+            asset = (String) params.get("asset");
+            path = (String) params.get("path");
+            markerCall = new MethodCall("marker#addAll", marker != null ? marker : new HashMap<>());
+            fillColor = YandexBinaryConversion.toColor(polygon.get("fillColor"));
+            strokeColor = YandexBinaryConversion.toColor(polygon.get("strokeColor"));
+            strokeWidth = ((Number) polygon.get("strokeWidth")).floatValue();
+            zIndex = ((Number) polygon.get("zIndex")).floatValue();
+            simplifyTolerance = polygon.get("simplifyTolerance") != null
+                    ? ((Number) polygon.get("simplifyTolerance")).doubleValue()
+                    : null;
+
+            idToLayer.put(id, this);
+        }
+
+        /**
+         * Runs on the layer thread.
+         */
+        void load() {
+            InputStream stream = null;
+
+            try {
+                if (asset != null) {
+                    stream = context.getAssets().open(FlutterMain.getLookupKeyForAsset(asset));
+                    // Asset streams report the whole remaining length.
+                    totalBytes = stream.available();
+                } else {
+                    File file = new File(path);
+
+                    totalBytes = file.length();
+                    stream = new FileInputStream(file);
+                }
+
+                reader = new YandexGeoJsonReader(stream, this);
+                reader.read();
+                flush(true, null);
+            } catch (InterruptedIOException e) {
+                // Removed or disposed while reading.
+            } catch (IOException | RuntimeException e) {
+                Log.d("FLUTTER", "Cannot load GeoJSON layer: " + e.getLocalizedMessage());
+
+                try {
+                    flush(true, e.getMessage() != null ? e.getMessage() : e.toString());
+                } catch (InterruptedIOException ignored) {
+                }
+            } finally {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void onPoint(double latitude, double longitude) throws IOException {
+            points.add(new Point(latitude, longitude));
+
+            if (points.size() + geometries.size() >= BATCH_SIZE) {
+                flush(false, null);
+            }
+        }
+
+        @Override
+        public void onPolygon(double[][] rings) throws IOException {
+            geometries.add(new YandexPolygonGeometry(rings, simplifyTolerance));
+
+            if (points.size() + geometries.size() >= BATCH_SIZE) {
+                flush(false, null);
+            }
+        }
+
+        /**
+         * Hands the objects read since the last batch to the main thread, waiting while two batches
+         * are not added yet.
+         */
+        private void flush(final boolean done, final String error) throws InterruptedIOException {
+            final List<Point> batchPoints = points;
+            final List<YandexPolygonGeometry> batchGeometries = geometries;
+            final long bytesRead = reader != null ? reader.bytesRead() : 0;
+            final int skipped = reader != null ? reader.skipped() : 0;
+
+            if (removed) {
+                throw new InterruptedIOException();
+            }
+
+            try {
+                pendingBatches.acquire();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+
+            points = new ArrayList<>();
+            geometries = new ArrayList<>();
+
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    pendingBatches.release();
+
+                    if (removed || disposed) {
+                        return;
+                    }
+
+                    add(batchPoints, batchGeometries);
+                    sendProgress(bytesRead, skipped, done, error);
+                }
+            });
+        }
+
+        private void add(List<Point> batchPoints, List<YandexPolygonGeometry> batchGeometries) {
+            if (!batchPoints.isEmpty()) {
+                for (int markerId : addMarkers(markerCall, batchPoints)) {
+                    markers.add(idToController.get(markerId));
+                }
+            }
+
+            for (YandexPolygonGeometry geometry : batchGeometries) {
+                YandexMapPolygonController polygonController = new YandexMapPolygonController(
+                        fillColor,
+                        strokeColor,
+                        strokeWidth,
+                        zIndex
+                );
+
+                updatePolygonGeometry(polygonController, geometry);
+                polygons.add(polygonController);
+            }
+        }
+
+        private void sendProgress(long bytesRead, int skipped, boolean done, String error) {
+            java.util.Map<String, Object> arguments = new HashMap<>();
+
+            arguments.put("id", id);
+            arguments.put("bytesRead", done && error == null ? Math.max(bytesRead, totalBytes) : bytesRead);
+            arguments.put("totalBytes", totalBytes);
+            arguments.put("markers", markers.size());
+            arguments.put("polygons", polygons.size());
+            arguments.put("skipped", skipped);
+            arguments.put("done", done);
+            arguments.put("error", error);
+
+            methodChannel.invokeMethod("onLayerProgress", arguments);
+            YandexMetrics.getInstance().recordEvent("onLayerProgress");
+        }
+
+        /**
+         * Stops reading and removes the objects added so far.
+         */
+        void remove() {
+            removed = true;
+            idToLayer.remove(id);
+
+            for (YandexMapMarkerController marker : markers) {
+                marker.remove();
+            }
+
+            for (YandexMapPolygonController polygon : polygons) {
+                polygon.remove();
+            }
+
+            markers.clear();
+            polygons.clear();
+        }
+    }
+
+    /**
+     * Track whose points are kept natively, so Dart only sends the points added since the last call.
+     *
+     * Points are kept and thinned on the pipeline thread, geometries sent during one pass of the
+     * main loop are shown with a single update.
+     */
+    private class YandexMapPolylineController {
+        final int id;
+        boolean removed;
+
+        int strokeColor;
+        float strokeWidth;
+        float zIndex;
+
+        private Polyline pendingGeometry;
+        private PolylineMapObject mapObject;
+
+        private final Runnable geometryRunnable = new Runnable() {
+            @Override
+            public void run() {
+                Polyline polyline = pendingGeometry;
+
+                pendingGeometry = null;
+
+                if (!removed) {
+                    show(polyline);
+                }
+            }
+        };
+
+        YandexMapPolylineController(int id, int strokeColor, float strokeWidth, float zIndex) {
+            this.id = id;
+            this.strokeColor = strokeColor;
+            this.strokeWidth = strokeWidth;
+            this.zIndex = zIndex;
+
+            idToPolyline.put(id, this);
+            YandexMetrics.getInstance().adjustObjects("polylines", 1);
+        }
+
+        void setGeometry(Polyline polyline) {
+            if (pendingGeometry == null) {
+                mainHandler.post(geometryRunnable);
+            }
+
+            pendingGeometry = polyline;
+        }
+
+        private void show(Polyline polyline) {
+            if (mapObject != null) {
+                mapObject.setGeometry(polyline);
+                return;
+            }
+
+            mapObject = mapView.getMap().getMapObjects().addPolyline(polyline);
+            mapObject.setUserData(id);
+            mapObject.setStrokeColor(strokeColor);
+            mapObject.setStrokeWidth(strokeWidth);
+            mapObject.setZIndex(zIndex);
+        }
+
+        void setStrokeColor(int strokeColor) {
+            if (this.strokeColor != strokeColor) {
+                this.strokeColor = strokeColor;
+
+                if (mapObject != null) {
+                    mapObject.setStrokeColor(strokeColor);
+                }
+            }
+        }
+
+        void setStrokeWidth(float strokeWidth) {
+            if (this.strokeWidth != strokeWidth) {
+                this.strokeWidth = strokeWidth;
+
+                if (mapObject != null) {
+                    mapObject.setStrokeWidth(strokeWidth);
+                }
+            }
+        }
+
+        void setZIndex(float zIndex) {
+            if (this.zIndex != zIndex) {
+                this.zIndex = zIndex;
+
+                if (mapObject != null) {
+                    mapObject.setZIndex(zIndex);
+                }
+            }
+        }
+
+        void remove() {
+            if (removed) {
+                return;
+            }
+
+            removed = true;
+            idToPolyline.remove(id);
+            YandexMetrics.getInstance().adjustObjects("polylines", -1);
+            mainHandler.removeCallbacks(geometryRunnable);
+
+            if (mapObject != null) {
+                mapView.getMap().getMapObjects().remove(mapObject);
+                mapObject = null;
+            }
+        }
+    }
+
+    private class YandexCameraListener implements CameraListener {
+        final YandexCameraEventFilter eventFilter = new YandexCameraEventFilter();
+
+        @Override
+        public void onCameraPositionChanged(@NonNull Map map, @NonNull CameraPosition position, @NonNull CameraUpdateSource cameraUpdateSource, boolean finished) {
+            viewport.update(false);
+
+            for (YandexMapPolygonController polygon : simplifiedPolygons) {
+                polygon.update(position.getZoom());
+            }
+
+            if (finished) {
+                clustering.update();
+            }
+
+            Point target = position.getTarget();
+
+            if (!eventFilter.accept(
+                    target.getLatitude(),
+                    target.getLongitude(),
+                    position.getZoom(),
+                    position.getAzimuth(),
+                    finished,
+                    SystemClock.uptimeMillis()
+            )) {
+                return;
+            }
+
+            java.util.Map<String, Object> arguments = new HashMap<>();
+            arguments.put("position", YandexBinaryConversion.fromCameraPosition(position));
+            arguments.put("finished", finished);
+
+            methodChannel.invokeMethod("onCameraPositionChanged", arguments);
+            YandexMetrics.getInstance().recordEvent("onCameraPositionChanged");
         }
     }
 }
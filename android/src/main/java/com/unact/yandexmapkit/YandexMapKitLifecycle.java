@@ -0,0 +1,54 @@
+package com.unact.yandexmapkit;
+
+import android.content.Context;
+
+import com.yandex.mapkit.MapKitFactory;
+import com.yandex.mapkit.search.Search;
+import com.yandex.mapkit.search.SearchFactory;
+
+/**
+ * MapKit state shared by all map views and searches of the process.
+ *
+ * MapKit is initialized once and stays started while at least one map view is alive.
+ * Search is initialized on first use. Must be used on the main thread.
+ */
+class YandexMapKitLifecycle {
+    private static boolean initialized;
+    private static boolean searchInitialized;
+    private static int startCount;
+
+    private YandexMapKitLifecycle() {
+    }
+
+    static void start(Context context) {
+        initialize(context);
+
+        if (startCount++ == 0) {
+            MapKitFactory.getInstance().onStart();
+        }
+    }
+
+    static void stop() {
+        if (startCount > 0 && --startCount == 0) {
+            MapKitFactory.getInstance().onStop();
+        }
+    }
+
+    static Search getSearch(Context context) {
+        initialize(context);
+
+        if (!searchInitialized) {
+            SearchFactory.initialize(context.getApplicationContext());
+            searchInitialized = true;
+        }
+
+        return SearchFactory.getInstance();
+    }
+
+    private static void initialize(Context context) {
+        if (!initialized) {
+            MapKitFactory.initialize(context.getApplicationContext());
+            initialized = true;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.unact.yandexmapkit;
 
 import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
 
 import androidx.annotation.NonNull;
 
@@ -13,9 +16,10 @@ import io.flutter.plugin.common.PluginRegistry.Registrar;
 
 import com.google.gson.Gson;
 import com.unact.yandexmapkit.YandexJsonConversion.JsonBoundingBox;
-import com.unact.yandexmapkit.YandexJsonConversion.JsonSuggestResult;
+import com.unact.yandexmapkit.YandexSearchConversion.JsonSuggestResult;
 import com.yandex.mapkit.MapKitFactory;
-import com.yandex.mapkit.search.SearchFactory;
+import com.yandex.mapkit.geometry.BoundingBox;
+import com.yandex.mapkit.geometry.Point;
 import com.yandex.mapkit.search.SearchManager;
 import com.yandex.mapkit.search.SearchManagerType;
 import com.yandex.mapkit.search.SearchOptions;
@@ -23,9 +27,17 @@ import com.yandex.mapkit.search.SearchType;
 import com.yandex.mapkit.search.SuggestItem;
 import com.yandex.runtime.Error;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class YandexMapkitPlugin implements MethodCallHandler, EventChannel.StreamHandler {
+    private static final Gson gson = new Gson();
+
+    private static final int SUGGEST_CACHE_SIZE = 100;
+    private static final long SUGGEST_CACHE_TTL = 5 * 60 * 1000;
+    private static final double SUGGEST_WINDOW_QUANTUM = 0.005;
+
     private static boolean isApiKeySet = false;
 
     @SuppressWarnings("FieldCanBeLocal")
@@ -34,10 +46,27 @@ public class YandexMapkitPlugin implements MethodCallHandler, EventChannel.Strea
     @SuppressWarnings("FieldCanBeLocal")
     private static EventChannel suggestChannel;
 
+    @SuppressWarnings("FieldCanBeLocal")
+    private static EventChannel searchChannel;
+
     private Activity activity;
-    private SearchManager manager;
 
     private EventChannel.EventSink eventSink;
+    private EventChannel.EventSink searchEventSink;
+    private YandexSearchQueue searchQueue;
+
+    private final YandexTtlCache<String, JsonSuggestResult> suggestCache = new YandexTtlCache<>(SUGGEST_CACHE_SIZE, SUGGEST_CACHE_TTL);
+    private final SparseArray<SuggestSession> suggestSessions = new SparseArray<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private long metricsPushInterval;
+    private final Runnable metricsPushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            channel.invokeMethod("onMetrics", YandexMetrics.getInstance().snapshot());
+            mainHandler.postDelayed(this, metricsPushInterval);
+        }
+    };
 
     public static void registerWith(Registrar registrar) {
         YandexMapkitPlugin instance = new YandexMapkitPlugin(registrar.activity());
@@ -48,13 +77,16 @@ public class YandexMapkitPlugin implements MethodCallHandler, EventChannel.Strea
         suggestChannel = new EventChannel(registrar.messenger(), "yandex_mapkit_suggest_result");
         suggestChannel.setStreamHandler(instance);
 
+        searchChannel = new EventChannel(registrar.messenger(), "yandex_mapkit_search_result");
+        searchChannel.setStreamHandler(instance.new SearchStreamHandler());
+
         registrar.platformViewRegistry().registerViewFactory(
                 "yandex_mapkit/yandex_map",
                 new YandexMapFactory(registrar)
         );
     }
 
-    private YandexMapkitPlugin(Activity activity) {
+    YandexMapkitPlugin(Activity activity) {
         this.activity = activity;
     }
 
@@ -62,18 +94,9 @@ public class YandexMapkitPlugin implements MethodCallHandler, EventChannel.Strea
         if (!isApiKeySet) {
             isApiKeySet = true;
             MapKitFactory.setApiKey(call.arguments.toString());
-            SearchFactory.initialize(activity.getApplicationContext());
         }
     }
 
-    private SearchManager getManager() {
-        if (manager == null) {
-            manager = SearchFactory.getInstance().createSearchManager(SearchManagerType.COMBINED);
-        }
-
-        return manager;
-    }
-
     @Override
     public void onListen(Object o, EventChannel.EventSink eventSink) {
         this.eventSink = eventSink;
@@ -84,10 +107,25 @@ public class YandexMapkitPlugin implements MethodCallHandler, EventChannel.Strea
         this.eventSink = null;
     }
 
+    private class SearchStreamHandler implements EventChannel.StreamHandler {
+        @Override
+        public void onListen(Object o, EventChannel.EventSink eventSink) {
+            searchEventSink = eventSink;
+        }
+
+        @Override
+        public void onCancel(Object o) {
+            searchEventSink = null;
+        }
+    }
+
     class SuggestArguments {
         String text;
         String type;
         JsonBoundingBox window;
+        int sessionId;
+        long seq;
+        long debounce;
 
         public SuggestArguments(String text, String type, JsonBoundingBox window) {
             this.text = text;
@@ -96,56 +134,344 @@ public class YandexMapkitPlugin implements MethodCallHandler, EventChannel.Strea
         }
     }
 
+    private static String suggestCacheKey(SuggestArguments params) {
+        JsonBoundingBox window = params.window;
+
+        return params.text + "|" + params.type + "|" +
+                quantize(window.southWest.latitude) + "," +
+                quantize(window.southWest.longitude) + "," +
+                quantize(window.northEast.latitude) + "," +
+                quantize(window.northEast.longitude);
+    }
+
+    private static long quantize(double coordinate) {
+        return Math.round(coordinate / SUGGEST_WINDOW_QUANTUM);
+    }
+
+    private SuggestSession getSuggestSession(int sessionId) {
+        SuggestSession session = suggestSessions.get(sessionId);
+
+        if (session == null) {
+            session = new SuggestSession(sessionId);
+            suggestSessions.put(sessionId, session);
+        }
+
+        return session;
+    }
+
+    private static int sessionIdFromArguments(Object arguments) {
+        if (arguments instanceof Map) {
+            Object sessionId = ((Map<?, ?>) arguments).get("sessionId");
+
+            if (sessionId != null) {
+                return ((Number) sessionId).intValue();
+            }
+        }
+
+        return 0;
+    }
+
+    private void cancelSuggest(MethodCall call) {
+        SuggestSession session = suggestSessions.get(sessionIdFromArguments(call.arguments));
+
+        if (session != null) {
+            session.cancel();
+        }
+    }
+
+    private void closeSuggestSession(MethodCall call) {
+        int sessionId = sessionIdFromArguments(call.arguments);
+        SuggestSession session = suggestSessions.get(sessionId);
+
+        if (session != null) {
+            session.cancel();
+            suggestSessions.remove(sessionId);
+        }
+    }
+
+    private void suggest(MethodCall call) {
+        SuggestArguments params = gson.fromJson(
+                (String) call.arguments,
+                SuggestArguments.class
+        );
+
+        getSuggestSession(params.sessionId).suggest(params);
+    }
+
+    /**
+     * Suggest requests of one search field.
+     *
+     * Each session has its own SearchManager, so sessions do not cancel each other.
+     * Requests are debounced, requests older than the latest seen sequence number are dropped
+     * and only the response to the latest request is delivered.
+     */
+    private class SuggestSession {
+        final int id;
+
+        private SearchManager manager;
+        private long latestSeq;
+        private int generation;
+        private Runnable pendingRequest;
+
+        SuggestSession(int id) {
+            this.id = id;
+        }
+
+        void suggest(final SuggestArguments params) {
+            if (params.seq < latestSeq) {
+                return;
+            }
+
+            cancel();
+            latestSeq = params.seq;
+
+            final int requestGeneration = generation;
+            final String key = suggestCacheKey(params);
+            JsonSuggestResult cached = suggestCache.get(key);
+
+            if (cached != null) {
+                send(cached, params.seq, requestGeneration);
+                return;
+            }
+
+            pendingRequest = new Runnable() {
+                @Override
+                public void run() {
+                    pendingRequest = null;
+                    request(params, key, requestGeneration);
+                }
+            };
+
+            if (params.debounce > 0) {
+                mainHandler.postDelayed(pendingRequest, params.debounce);
+            } else {
+                pendingRequest.run();
+            }
+        }
+
+        void cancel() {
+            generation++;
+
+            if (pendingRequest != null) {
+                mainHandler.removeCallbacks(pendingRequest);
+                pendingRequest = null;
+            }
+
+            if (manager != null) {
+                manager.cancelSuggest();
+            }
+        }
+
+        private void request(SuggestArguments params, final String key, final int requestGeneration) {
+            final long seq = params.seq;
+            SearchOptions options = new SearchOptions();
+
+            if (params.type.equals("biz")) {
+                options.setSearchTypes(SearchType.BIZ.value);
+            } else if (params.type.equals("geo")) {
+                options.setSearchTypes(SearchType.GEO.value);
+            }
+
+            if (manager == null) {
+                manager = YandexMapKitLifecycle.getSearch(activity).createSearchManager(SearchManagerType.COMBINED);
+            }
+
+            manager.suggest(
+                    params.text,
+                    params.window.toBoundingBox(),
+                    options,
+                    new SearchManager.SuggestListener() {
+                        @Override
+                        public void onSuggestResponse(@NonNull List<SuggestItem> list) {
+                            JsonSuggestResult result = new JsonSuggestResult(list);
+
+                            suggestCache.put(key, result);
+                            send(result, seq, requestGeneration);
+                        }
+
+                        @Override
+                        public void onSuggestError(@NonNull Error error) {
+                            send(new JsonSuggestResult(error), seq, requestGeneration);
+                        }
+                    }
+            );
+        }
+
+        private void send(JsonSuggestResult result, long seq, int requestGeneration) {
+            if (requestGeneration == generation && eventSink != null) {
+                eventSink.success(gson.toJson(new JsonSuggestResult(result, id, seq)));
+                YandexMetrics.getInstance().recordEvent("suggestResult");
+            }
+        }
+    }
+
+    private YandexSearchQueue getSearchQueue() {
+        if (searchQueue == null) {
+            searchQueue = new YandexSearchQueue(activity);
+        }
+
+        return searchQueue;
+    }
+
+    /**
+     * Queues reverse geocoding of every point of the batch. Results are sent one by one as they
+     * come, with the batch id and the index of their point.
+     */
+    private void reverseBatch(MethodCall call) {
+        final int batchId = call.argument("batchId");
+        double[] points = YandexBinaryConversion.toCoordinates(call.argument("points"));
+        Number zoom = call.argument("zoom");
+        String type = call.argument("type");
+
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            final int index = i / 2;
+
+            getSearchQueue().reverse(
+                    new Point(points[i], points[i + 1]),
+                    zoom != null ? zoom.intValue() : null,
+                    type,
+                    batchId,
+                    new YandexSearchQueue.Callback() {
+                        @Override
+                        public void onResult(Map<String, Object> result) {
+                            sendSearchResult(batchId, index, result);
+                        }
+                    }
+            );
+        }
+    }
+
+    private void searchByText(MethodCall call, final Result result) {
+        double[] window = YandexBinaryConversion.toCoordinates(call.argument("window"));
+
+        getSearchQueue().text(
+                (String) call.argument("text"),
+                new BoundingBox(new Point(window[0], window[1]), new Point(window[2], window[3])),
+                (String) call.argument("type"),
+                call.argument("batchId"),
+                new YandexSearchQueue.Callback() {
+                    @Override
+                    public void onResult(Map<String, Object> searchResult) {
+                        result.success(searchResult);
+                        YandexMetrics.getInstance().recordEvent("searchResult");
+                    }
+                }
+        );
+    }
+
+    private void sendSearchResult(int batchId, int index, Map<String, Object> result) {
+        if (searchEventSink == null) {
+            return;
+        }
+
+        Map<String, Object> event = new HashMap<>(result);
+
+        event.put("batchId", batchId);
+        event.put("index", index);
+        searchEventSink.success(event);
+        YandexMetrics.getInstance().recordEvent("searchResult");
+    }
+
+    /**
+     * Enables or disables recording and sends snapshots every pushInterval milliseconds,
+     * or stops sending them when it is not positive.
+     */
+    private void configureMetrics(MethodCall call) {
+        Boolean enabled = call.argument("enabled");
+        Number pushInterval = call.argument("pushInterval");
+
+        if (enabled != null) {
+            YandexMetrics.getInstance().setEnabled(enabled);
+        }
+
+        mainHandler.removeCallbacks(metricsPushRunnable);
+        metricsPushInterval = pushInterval != null ? pushInterval.longValue() : 0;
+
+        if (metricsPushInterval > 0) {
+            mainHandler.postDelayed(metricsPushRunnable, metricsPushInterval);
+        }
+    }
+
     @Override
     public void onMethodCall(MethodCall call, Result result) {
+        YandexMetrics metrics = YandexMetrics.getInstance();
+
+        if (!metrics.isEnabled()) {
+            handle(call, result);
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        metrics.recordCall(call.method, call.arguments);
+        handle(call, result);
+        metrics.recordApply(call.method, System.nanoTime() - start);
+    }
+
+    private void handle(MethodCall call, Result result) {
         switch (call.method) {
             case "setApiKey": {
                 setApiKey(call);
                 result.success(null);
+                break;
             }
             case "cancelSuggest": {
-                setApiKey(call);
+                cancelSuggest(call);
+                result.success(null);
+                break;
+            }
+            case "closeSuggestSession": {
+                closeSuggestSession(call);
                 result.success(null);
+                break;
             }
             case "suggest": {
-                SuggestArguments params = new Gson().fromJson(
-                        (String) call.arguments,
-                        SuggestArguments.class
-                );
-                SearchOptions options = new SearchOptions();
-
-                if (params.type.equals("biz")) {
-                    options.setSearchTypes(SearchType.BIZ.value);
-                } else if (params.type.equals("geo")) {
-                    options.setSearchTypes(SearchType.GEO.value);
-                }
-
-                this.getManager().suggest(
-                        params.text,
-                        params.window.toBoundingBox(),
-                        options,
-                        new SearchManager.SuggestListener() {
-                            @Override
-                            public void onSuggestResponse(@NonNull List<SuggestItem> list) {
-                                JsonSuggestResult result = new JsonSuggestResult(list);
-
-                                if (eventSink != null) {
-                                    eventSink.success(new Gson().toJson(result));
-                                }
-                            }
-
-                            @Override
-                            public void onSuggestError(@NonNull Error error) {
-                                JsonSuggestResult result = new JsonSuggestResult(error);
-
-                                if (eventSink != null) {
-                                    eventSink.success(new Gson().toJson(result));
-                                }
-                            }
-                        }
-                );
+                suggest(call);
+                result.success(null);
+                break;
+            }
+            case "search#configure": {
+                getSearchQueue().setMaxConcurrent(((Number) call.argument("maxConcurrent")).intValue());
+                result.success(null);
+                break;
+            }
+            case "search#reverseBatch": {
+                reverseBatch(call);
+                result.success(null);
+                break;
+            }
+            case "search#byText": {
+                searchByText(call, result);
+                break;
+            }
+            case "search#cancelBatch": {
+                getSearchQueue().cancel(call.argument("batchId"));
+                result.success(null);
+                break;
+            }
+            case "iconCache#configure": {
+                YandexIconCache.getInstance().setMaxBytes(((Number) call.argument("maxBytes")).intValue());
+                result.success(null);
+                break;
+            }
+            case "iconCache#stats": {
+                result.success(YandexIconCache.getInstance().stats());
+                break;
+            }
+            case "metrics#configure": {
+                configureMetrics(call);
+                result.success(null);
+                break;
+            }
+            case "metrics#snapshot": {
+                result.success(YandexMetrics.getInstance().snapshot());
+                break;
+            }
+            case "metrics#reset": {
+                YandexMetrics.getInstance().reset();
+                result.success(null);
+                break;
             }
-            break;
             default:
                 result.notImplemented();
                 break;
@@ -0,0 +1,142 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.GeoObject;
+import com.yandex.mapkit.GeoObjectCollection;
+import com.yandex.mapkit.LocalizedValue;
+import com.yandex.mapkit.geometry.Geometry;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.search.Response;
+import com.yandex.mapkit.search.SuggestItem;
+import com.yandex.runtime.Error;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class YandexSearchConversion {
+    /**
+     * Name, description and the first point of every found object.
+     */
+    static List<Map<String, Object>> fromResponse(Response response) {
+        List<Map<String, Object>> items = new ArrayList<>();
+
+        for (GeoObjectCollection.Item child : response.getCollection().getChildren()) {
+            GeoObject object = child.getObj();
+
+            if (object == null) {
+                continue;
+            }
+
+            Map<String, Object> item = new HashMap<>();
+
+            item.put("name", object.getName());
+            item.put("description", object.getDescriptionText());
+
+            for (Geometry geometry : object.getGeometry()) {
+                Point point = geometry.getPoint();
+
+                if (point != null) {
+                    item.put("point", YandexBinaryConversion.fromPoint(point));
+                    break;
+                }
+            }
+
+            items.add(item);
+        }
+
+        return items;
+    }
+
+    static class JsonDistance {
+        double value;
+        String text;
+
+        JsonDistance(LocalizedValue distance) {
+            this.value = distance.getValue();
+            this.text = distance.getText();
+        }
+    }
+
+    static class JsonSuggestResult {
+        boolean isError;
+        String error;
+        List<JsonSuggestItem> items;
+        int sessionId;
+        long seq;
+
+        JsonSuggestResult(List<SuggestItem> list) {
+            isError = false;
+            error = null;
+
+            items = new ArrayList<>();
+
+            for (SuggestItem item : list) {
+                items.add(new JsonSuggestItem(item));
+            }
+        }
+
+        JsonSuggestResult(Error error) {
+            this.isError = true;
+            this.error = error.getClass().getCanonicalName();
+            this.items = new ArrayList<>();
+        }
+
+        JsonSuggestResult(JsonSuggestResult result, int sessionId, long seq) {
+            this.isError = result.isError;
+            this.error = result.error;
+            this.items = result.items;
+            this.sessionId = sessionId;
+            this.seq = seq;
+        }
+    }
+
+    static class JsonSuggestItem {
+        String type;
+        String title;
+        String subtitle;
+        String searchText;
+        String displayText;
+        String action;
+        boolean isPersonal;
+        boolean isWordItem;
+
+        JsonDistance distance;
+
+        List<String> tags;
+
+        JsonSuggestItem(SuggestItem item) {
+            switch (item.getType()) {
+                case UNKNOWN:
+                    this.type = "unknown";
+                    break;
+                case TOPONYM:
+                    this.type = "toponym";
+                    break;
+                case BUSINESS:
+                    this.type = "business";
+                    break;
+                case TRANSIT:
+                    this.type = "transit";
+                    break;
+            }
+
+            this.title = item.getTitle().getText();
+            if (item.getSubtitle() != null) {
+                this.subtitle = item.getSubtitle().getText();
+            }
+            this.searchText = item.getSearchText();
+            this.displayText = item.getDisplayText();
+            this.isPersonal = item.getIsPersonal();
+            this.isWordItem = item.getIsWordItem();
+
+            if (item.getDistance() != null) {
+                this.distance = new JsonDistance(item.getDistance());
+            }
+
+            this.action = item.getAction() == SuggestItem.Action.SEARCH ? "search" : "substitute";
+
+            this.tags = item.getTags();
+        }
+    }
+}
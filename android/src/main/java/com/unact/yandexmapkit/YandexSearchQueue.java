@@ -0,0 +1,235 @@
+package com.unact.yandexmapkit;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.yandex.mapkit.geometry.BoundingBox;
+import com.yandex.mapkit.geometry.Geometry;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.search.Response;
+import com.yandex.mapkit.search.SearchManager;
+import com.yandex.mapkit.search.SearchManagerType;
+import com.yandex.mapkit.search.SearchOptions;
+import com.yandex.mapkit.search.SearchType;
+import com.yandex.mapkit.search.Session;
+import com.yandex.runtime.Error;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search requests with a bounded number of them in flight.
+ *
+ * Requests wait in a queue until one of maxConcurrent slots is free. Identical requests are
+ * coalesced: while one is queued or in flight, later ones only wait for its result. Successful
+ * results are kept in an LRU cache with a TTL, reverse geocoding keys use coordinates quantized to
+ * REVERSE_QUANTUM degrees. Sessions are kept until they respond, since MapKit drops responses of
+ * sessions that are no longer referenced. Must be used on the main thread.
+ */
+class YandexSearchQueue {
+    interface Callback {
+        /**
+         * Receives a map with either items or an error.
+         */
+        void onResult(Map<String, Object> result);
+    }
+
+    private static final int CACHE_SIZE = 1000;
+    private static final long CACHE_TTL = 30 * 60 * 1000;
+    private static final double REVERSE_QUANTUM = 0.0001;
+    private static final double WINDOW_QUANTUM = 0.005;
+
+    private final Context context;
+    private final YandexTtlCache<String, Map<String, Object>> cache = new YandexTtlCache<>(CACHE_SIZE, CACHE_TTL);
+    private final Map<String, Request> requests = new HashMap<>();
+    private final ArrayDeque<Request> pending = new ArrayDeque<>();
+
+    private SearchManager manager;
+    private int maxConcurrent = 4;
+    private int running;
+
+    YandexSearchQueue(Context context) {
+        this.context = context;
+    }
+
+    void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        pump();
+    }
+
+    void reverse(final Point point, final Integer zoom, String type, Object tag, Callback callback) {
+        String key = "reverse|" + type + "|" + zoom + "|" +
+                quantize(point.getLatitude(), REVERSE_QUANTUM) + "," +
+                quantize(point.getLongitude(), REVERSE_QUANTUM);
+        final SearchOptions options = options(type);
+
+        enqueue(key, tag, callback, new Request(key) {
+            @Override
+            Session submit(SearchManager manager, Session.SearchListener listener) {
+                return manager.submit(point, zoom, options, listener);
+            }
+        });
+    }
+
+    void text(final String text, final BoundingBox window, String type, Object tag, Callback callback) {
+        String key = "text|" + type + "|" + text + "|" +
+                quantize(window.getSouthWest().getLatitude(), WINDOW_QUANTUM) + "," +
+                quantize(window.getSouthWest().getLongitude(), WINDOW_QUANTUM) + "," +
+                quantize(window.getNorthEast().getLatitude(), WINDOW_QUANTUM) + "," +
+                quantize(window.getNorthEast().getLongitude(), WINDOW_QUANTUM);
+        final SearchOptions options = options(type);
+
+        enqueue(key, tag, callback, new Request(key) {
+            @Override
+            Session submit(SearchManager manager, Session.SearchListener listener) {
+                return manager.submit(text, Geometry.fromBoundingBox(window), options, listener);
+            }
+        });
+    }
+
+    /**
+     * Answers callbacks added with the tag with a cancelled error. Requests nobody waits for anymore
+     * are dropped from the queue or cancelled. Callbacks added without a tag are never cancelled.
+     */
+    void cancel(Object tag) {
+        if (tag == null) {
+            return;
+        }
+
+        List<Callback> cancelled = new ArrayList<>();
+        Iterator<Request> iterator = requests.values().iterator();
+
+        while (iterator.hasNext()) {
+            Request request = iterator.next();
+
+            for (int i = request.tags.size() - 1; i >= 0; i--) {
+                if (tag.equals(request.tags.get(i))) {
+                    request.tags.remove(i);
+                    cancelled.add(request.callbacks.remove(i));
+                }
+            }
+
+            if (request.callbacks.isEmpty()) {
+                iterator.remove();
+
+                if (request.inFlight) {
+                    request.session.cancel();
+                    request.session = null;
+                    request.inFlight = false;
+                    running--;
+                } else {
+                    pending.remove(request);
+                }
+            }
+        }
+
+        for (Callback callback : cancelled) {
+            callback.onResult(Collections.<String, Object>singletonMap("error", "cancelled"));
+        }
+
+        pump();
+    }
+
+    private void enqueue(String key, Object tag, Callback callback, Request newRequest) {
+        Map<String, Object> cached = cache.get(key);
+
+        if (cached != null) {
+            callback.onResult(cached);
+            return;
+        }
+
+        Request request = requests.get(key);
+
+        if (request == null) {
+            request = newRequest;
+            requests.put(key, request);
+            pending.add(request);
+        }
+
+        request.tags.add(tag);
+        request.callbacks.add(callback);
+        pump();
+    }
+
+    private void pump() {
+        while (running < maxConcurrent && !pending.isEmpty()) {
+            final Request request = pending.poll();
+
+            if (manager == null) {
+                manager = YandexMapKitLifecycle.getSearch(context).createSearchManager(SearchManagerType.COMBINED);
+            }
+
+            running++;
+            request.inFlight = true;
+            request.session = request.submit(manager, new Session.SearchListener() {
+                @Override
+                public void onSearchResponse(@NonNull Response response) {
+                    Map<String, Object> result = new HashMap<>();
+
+                    result.put("items", YandexSearchConversion.fromResponse(response));
+                    cache.put(request.key, result);
+                    finish(request, result);
+                }
+
+                @Override
+                public void onSearchError(@NonNull Error error) {
+                    finish(request, Collections.<String, Object>singletonMap("error", error.getClass().getCanonicalName()));
+                }
+            });
+        }
+    }
+
+    private void finish(Request request, Map<String, Object> result) {
+        if (!request.inFlight) {
+            return;
+        }
+
+        request.inFlight = false;
+        request.session = null;
+        running--;
+        requests.remove(request.key);
+
+        for (Callback callback : request.callbacks) {
+            callback.onResult(result);
+        }
+
+        pump();
+    }
+
+    private static SearchOptions options(String type) {
+        SearchOptions options = new SearchOptions();
+
+        if ("biz".equals(type)) {
+            options.setSearchTypes(SearchType.BIZ.value);
+        } else if ("geo".equals(type)) {
+            options.setSearchTypes(SearchType.GEO.value);
+        }
+
+        return options;
+    }
+
+    private static long quantize(double coordinate, double quantum) {
+        return Math.round(coordinate / quantum);
+    }
+
+    private abstract static class Request {
+        final String key;
+        final List<Object> tags = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+
+        boolean inFlight;
+        Session session;
+
+        Request(String key) {
+            this.key = key;
+        }
+
+        abstract Session submit(SearchManager manager, Session.SearchListener listener);
+    }
+}
@@ -0,0 +1,108 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.map.MapObject;
+import com.yandex.mapkit.map.MapObjectDragListener;
+import com.yandex.mapkit.map.MapObjectTapListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory map object. Like MapKit objects, it becomes invalid once removed from its collection
+ * and throws when changed afterwards. Created through YandexFakes.
+ */
+public abstract class YandexFakeMapObject implements MapObject {
+    private final YandexFakeMapObjects parent;
+    private final List<MapObjectTapListener> tapListeners = new ArrayList<>();
+    private MapObjectDragListener dragListener;
+    private Object userData;
+    private boolean valid = true;
+    private boolean visible = true;
+    private boolean draggable;
+    private float zIndex;
+
+    public YandexFakeMapObject(YandexFakeMapObjects parent) {
+        this.parent = parent;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    void checkValid() {
+        if (!valid) {
+            throw new IllegalStateException("Map object was removed");
+        }
+    }
+
+    public boolean isDraggable() {
+        return draggable;
+    }
+
+    public MapObjectDragListener getDragListener() {
+        return dragListener;
+    }
+
+    @Override
+    public YandexFakeMapObjects getParent() {
+        return parent;
+    }
+
+    @Override
+    public boolean isValid() {
+        return valid;
+    }
+
+    @Override
+    public boolean isVisible() {
+        return visible;
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        checkValid();
+        this.visible = visible;
+    }
+
+    @Override
+    public float getZIndex() {
+        return zIndex;
+    }
+
+    @Override
+    public void setZIndex(float zIndex) {
+        checkValid();
+        this.zIndex = zIndex;
+    }
+
+    @Override
+    public void setDraggable(boolean draggable) {
+        checkValid();
+        this.draggable = draggable;
+    }
+
+    @Override
+    public Object getUserData() {
+        return userData;
+    }
+
+    @Override
+    public void setUserData(Object userData) {
+        this.userData = userData;
+    }
+
+    @Override
+    public void addTapListener(MapObjectTapListener tapListener) {
+        tapListeners.add(tapListener);
+    }
+
+    @Override
+    public void removeTapListener(MapObjectTapListener tapListener) {
+        tapListeners.remove(tapListener);
+    }
+
+    @Override
+    public void setDragListener(MapObjectDragListener dragListener) {
+        this.dragListener = dragListener;
+    }
+}
@@ -0,0 +1,298 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.geometry.Polygon;
+import com.yandex.mapkit.geometry.Polyline;
+import com.yandex.mapkit.map.IconStyle;
+import com.yandex.mapkit.map.MapObject;
+import com.yandex.mapkit.map.MapObjectCollection;
+import com.yandex.mapkit.map.PlacemarkMapObject;
+import com.yandex.mapkit.map.PolygonMapObject;
+import com.yandex.mapkit.map.PolylineMapObject;
+import com.yandex.runtime.image.ImageProvider;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-memory collection of map objects, with placemarks, polygons and polylines that keep what is
+ * set on them. Removing an object that is not in the collection throws. Created through YandexFakes.
+ */
+public abstract class YandexFakeMapObjects extends YandexFakeMapObject implements MapObjectCollection {
+    private final Set<YandexFakeMapObject> children = new LinkedHashSet<>();
+
+    public YandexFakeMapObjects(YandexFakeMapObjects parent) {
+        super(parent);
+    }
+
+    /**
+     * Direct children of the given type, in the order they were added.
+     */
+    public <T extends YandexFakeMapObject> List<T> children(Class<T> type) {
+        List<T> result = new ArrayList<>();
+
+        for (YandexFakeMapObject child : children) {
+            if (type.isInstance(child)) {
+                result.add(type.cast(child));
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public Placemark addPlacemark(Point point) {
+        return addPlacemark(point, null, null);
+    }
+
+    @Override
+    public Placemark addPlacemark(Point point, ImageProvider image) {
+        return addPlacemark(point, image, null);
+    }
+
+    @Override
+    public Placemark addPlacemark(Point point, ImageProvider image, IconStyle style) {
+        return add(YandexFakes.create(Placemark.class, this, point, image, style));
+    }
+
+    @Override
+    public List<PlacemarkMapObject> addPlacemarks(List<Point> points, ImageProvider image, IconStyle style) {
+        List<PlacemarkMapObject> placemarks = new ArrayList<>(points.size());
+
+        for (Point point : points) {
+            placemarks.add(addPlacemark(point, image, style));
+        }
+
+        return placemarks;
+    }
+
+    @Override
+    public PolygonObject addPolygon(Polygon polygon) {
+        return add(YandexFakes.create(PolygonObject.class, this, polygon));
+    }
+
+    @Override
+    public PolylineObject addPolyline(Polyline polyline) {
+        return add(YandexFakes.create(PolylineObject.class, this, polyline));
+    }
+
+    @Override
+    public YandexFakeMapObjects addCollection() {
+        return add(YandexFakes.create(YandexFakeMapObjects.class, this));
+    }
+
+    @Override
+    public void remove(MapObject mapObject) {
+        checkValid();
+
+        if (!children.remove(mapObject)) {
+            throw new IllegalArgumentException("Map object is not in the collection");
+        }
+
+        ((YandexFakeMapObject) mapObject).invalidate();
+    }
+
+    @Override
+    public void clear() {
+        checkValid();
+
+        for (YandexFakeMapObject child : children) {
+            child.invalidate();
+        }
+
+        children.clear();
+    }
+
+    @Override
+    void invalidate() {
+        super.invalidate();
+
+        for (YandexFakeMapObject child : children) {
+            child.invalidate();
+        }
+    }
+
+    private <T extends YandexFakeMapObject> T add(T mapObject) {
+        checkValid();
+        children.add(mapObject);
+
+        return mapObject;
+    }
+
+    public abstract static class Placemark extends YandexFakeMapObject implements PlacemarkMapObject {
+        private Point geometry;
+        private ImageProvider icon;
+        private IconStyle iconStyle;
+        private float opacity = 1;
+        private float direction;
+
+        public Placemark(YandexFakeMapObjects parent, Point geometry, ImageProvider icon, IconStyle iconStyle) {
+            super(parent);
+
+            this.geometry = geometry;
+            this.icon = icon;
+            this.iconStyle = iconStyle;
+        }
+
+        /**
+         * The icon, or null while the placemark shows the default one.
+         */
+        public ImageProvider getIcon() {
+            return icon;
+        }
+
+        public IconStyle getIconStyle() {
+            return iconStyle;
+        }
+
+        public float getOpacity() {
+            return opacity;
+        }
+
+        @Override
+        public Point getGeometry() {
+            return geometry;
+        }
+
+        @Override
+        public void setGeometry(Point geometry) {
+            checkValid();
+            this.geometry = geometry;
+        }
+
+        @Override
+        public float getDirection() {
+            return direction;
+        }
+
+        @Override
+        public void setDirection(float direction) {
+            checkValid();
+            this.direction = direction;
+        }
+
+        @Override
+        public void setOpacity(float opacity) {
+            checkValid();
+            this.opacity = opacity;
+        }
+
+        @Override
+        public void setIcon(ImageProvider image) {
+            checkValid();
+            this.icon = image;
+        }
+
+        @Override
+        public void setIcon(ImageProvider image, IconStyle style) {
+            checkValid();
+            this.icon = image;
+            this.iconStyle = style;
+        }
+
+        @Override
+        public void setIconStyle(IconStyle style) {
+            checkValid();
+            this.iconStyle = style;
+        }
+    }
+
+    public abstract static class PolygonObject extends YandexFakeMapObject implements PolygonMapObject {
+        private Polygon geometry;
+        private int strokeColor;
+        private float strokeWidth;
+        private int fillColor;
+
+        public PolygonObject(YandexFakeMapObjects parent, Polygon geometry) {
+            super(parent);
+
+            this.geometry = geometry;
+        }
+
+        public int getStrokeColor() {
+            return strokeColor;
+        }
+
+        public float getStrokeWidth() {
+            return strokeWidth;
+        }
+
+        public int getFillColor() {
+            return fillColor;
+        }
+
+        @Override
+        public Polygon getGeometry() {
+            return geometry;
+        }
+
+        @Override
+        public void setGeometry(Polygon geometry) {
+            checkValid();
+            this.geometry = geometry;
+        }
+
+        @Override
+        public void setStrokeColor(int strokeColor) {
+            checkValid();
+            this.strokeColor = strokeColor;
+        }
+
+        @Override
+        public void setStrokeWidth(float strokeWidth) {
+            checkValid();
+            this.strokeWidth = strokeWidth;
+        }
+
+        @Override
+        public void setFillColor(int fillColor) {
+            checkValid();
+            this.fillColor = fillColor;
+        }
+    }
+
+    public abstract static class PolylineObject extends YandexFakeMapObject implements PolylineMapObject {
+        private Polyline geometry;
+        private int strokeColor;
+        private float strokeWidth;
+
+        public PolylineObject(YandexFakeMapObjects parent, Polyline geometry) {
+            super(parent);
+
+            this.geometry = geometry;
+        }
+
+        public int getStrokeColor() {
+            return strokeColor;
+        }
+
+        public float getStrokeWidth() {
+            return strokeWidth;
+        }
+
+        @Override
+        public Polyline getGeometry() {
+            return geometry;
+        }
+
+        @Override
+        public void setGeometry(Polyline geometry) {
+            checkValid();
+            this.geometry = geometry;
+        }
+
+        @Override
+        public void setStrokeColor(int strokeColor) {
+            checkValid();
+            this.strokeColor = strokeColor;
+        }
+
+        @Override
+        public void setStrokeWidth(float strokeWidth) {
+            checkValid();
+            this.strokeWidth = strokeWidth;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.unact.yandexmapkit;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.yandex.mapkit.GeoObject;
+import com.yandex.mapkit.GeoObjectCollection;
+import com.yandex.mapkit.geometry.BoundingBox;
+import com.yandex.mapkit.geometry.Geometry;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.search.Response;
+import com.yandex.mapkit.search.SearchManager;
+import com.yandex.mapkit.search.SearchOptions;
+import com.yandex.mapkit.search.Session;
+import com.yandex.mapkit.search.SuggestItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * In-memory search manager that answers on the main looper.
+ *
+ * Suggest answers with suggestItems for every text, a new suggest request replaces the pending one
+ * like in MapKit. Items can only be mocks, whose every call allocates a lot, so there are none by
+ * default. Searches find one object named after the request at the searched point or in the middle
+ * of the searched window, and are answered only once release is called. Created through
+ * YandexFakes.
+ */
+public abstract class YandexFakeSearchManager implements SearchManager {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> searches = new ArrayList<>();
+    private Runnable pendingSuggest;
+
+    final List<SuggestItem> suggestItems = new ArrayList<>();
+
+    int suggestRequests;
+    int searchRequests;
+    int cancelledSearches;
+
+    /**
+     * Searches sent and neither answered nor cancelled yet.
+     */
+    int pendingSearches() {
+        return searches.size();
+    }
+
+    /**
+     * Answers the searches sent first.
+     */
+    void release(int count) {
+        for (int i = 0; i < count; i++) {
+            handler.post(searches.remove(0));
+        }
+    }
+
+    @Override
+    public void suggest(String text, BoundingBox window, SearchOptions searchOptions, final SuggestListener suggestListener) {
+        cancelSuggest();
+        suggestRequests++;
+
+        pendingSuggest = new Runnable() {
+            @Override
+            public void run() {
+                pendingSuggest = null;
+                suggestListener.onSuggestResponse(new ArrayList<>(suggestItems));
+            }
+        };
+        handler.post(pendingSuggest);
+    }
+
+    @Override
+    public void cancelSuggest() {
+        if (pendingSuggest != null) {
+            handler.removeCallbacks(pendingSuggest);
+            pendingSuggest = null;
+        }
+    }
+
+    @Override
+    public Session submit(String text, Geometry geometry, SearchOptions searchOptions, Session.SearchListener searchListener) {
+        BoundingBox window = geometry.getBoundingBox();
+        Point point = window != null
+                ? new Point(
+                        (window.getSouthWest().getLatitude() + window.getNorthEast().getLatitude()) / 2,
+                        (window.getSouthWest().getLongitude() + window.getNorthEast().getLongitude()) / 2
+                )
+                : geometry.getPoint();
+
+        return respond(text, point, searchListener);
+    }
+
+    @Override
+    public Session submit(Point point, Integer zoom, SearchOptions searchOptions, Session.SearchListener searchListener) {
+        return respond(point.getLatitude() + "," + point.getLongitude(), point, searchListener);
+    }
+
+    private Session respond(final String name, final Point point, final Session.SearchListener searchListener) {
+        final Runnable search = new Runnable() {
+            @Override
+            public void run() {
+                searchListener.onSearchResponse(response(name, point));
+            }
+        };
+
+        searchRequests++;
+        searches.add(search);
+
+        return YandexFakes.create(FakeSession.class, this, search);
+    }
+
+    private static Response response(String name, Point point) {
+        GeoObject object = mock(GeoObject.class);
+        GeoObjectCollection.Item item = mock(GeoObjectCollection.Item.class);
+        GeoObjectCollection collection = mock(GeoObjectCollection.class);
+        Response response = mock(Response.class);
+
+        when(object.getName()).thenReturn(name);
+        when(object.getGeometry()).thenReturn(Collections.singletonList(Geometry.fromPoint(point)));
+        when(item.getObj()).thenReturn(object);
+        when(collection.getChildren()).thenReturn(Collections.singletonList(item));
+        when(response.getCollection()).thenReturn(collection);
+
+        return response;
+    }
+
+    public abstract static class FakeSession implements Session {
+        private final YandexFakeSearchManager manager;
+        private final Runnable search;
+
+        public FakeSession(YandexFakeSearchManager manager, Runnable search) {
+            this.manager = manager;
+            this.search = search;
+        }
+
+        @Override
+        public void cancel() {
+            if (manager.searches.remove(search)) {
+                manager.cancelledSearches++;
+            }
+
+            manager.handler.removeCallbacks(search);
+        }
+    }
+}
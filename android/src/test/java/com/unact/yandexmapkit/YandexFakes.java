@@ -0,0 +1,54 @@
+package com.unact.yandexmapkit;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.ExceptionMethod;
+import net.bytebuddy.matcher.ElementMatchers;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates fakes of MapKit interfaces from abstract classes implementing only what the plugin uses.
+ *
+ * The other methods of the interface throw UnsupportedOperationException, so a test fails as soon
+ * as the plugin calls one of them. Unlike Mockito spies, implemented methods are called directly,
+ * which keeps the fakes out of measured allocations.
+ */
+class YandexFakes {
+    private static final Map<Class<?>, Constructor<?>> constructors = new HashMap<>();
+
+    private YandexFakes() {
+    }
+
+    /**
+     * @param type public abstract class with a single public constructor taking the arguments
+     */
+    static synchronized <T> T create(Class<T> type, Object... arguments) {
+        Constructor<?> constructor = constructors.get(type);
+
+        if (constructor == null) {
+            Class<? extends T> implementation = new ByteBuddy()
+                    .subclass(type)
+                    .method(ElementMatchers.isAbstract())
+                    .intercept(ExceptionMethod.throwing(UnsupportedOperationException.class, "Not implemented by the fake"))
+                    .make()
+                    .load(type.getClassLoader(), ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded();
+
+            constructor = implementation.getDeclaredConstructors()[0];
+            constructor.setAccessible(true);
+            constructors.put(type, constructor);
+        }
+
+        try {
+            return type.cast(constructor.newInstance(arguments));
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.unact.yandexmapkit;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.AssetManager;
+
+import com.unact.yandexmapkit.YandexFakeMapObjects.Placemark;
+import com.yandex.runtime.image.ImageProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.ShadowBitmapFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class YandexIconLoaderTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private static final MethodChannel.Result noReply = new MethodChannel.Result() {
+        @Override
+        public void success(Object result) {
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            throw new AssertionError(errorCode + ": " + errorMessage);
+        }
+
+        @Override
+        public void notImplemented() {
+            throw new AssertionError("Not implemented");
+        }
+    };
+
+    private final Map<String, byte[]> assets = new HashMap<>();
+    private YandexTestMapKit mapKit;
+    private YandexMapController controller;
+
+    @Before
+    public void setUp() throws IOException {
+        final AssetManager assetManager = mock(AssetManager.class);
+
+        when(assetManager.open(anyString())).thenAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws IOException {
+                String path = invocation.getArgument(0);
+
+                for (Map.Entry<String, byte[]> asset : assets.entrySet()) {
+                    if (path.equals(asset.getKey()) || path.endsWith("/" + asset.getKey())) {
+                        return new ByteArrayInputStream(asset.getValue());
+                    }
+                }
+
+                throw new FileNotFoundException(path);
+            }
+        });
+
+        Context context = new ContextWrapper(RuntimeEnvironment.application) {
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public AssetManager getAssets() {
+                return assetManager;
+            }
+        };
+
+        ShadowBitmapFactory.setAllowInvalidImageData(false);
+        mapKit = new YandexTestMapKit();
+        controller = new YandexMapController(0, context, mapKit.registrar);
+    }
+
+    @After
+    public void tearDown() {
+        controller.dispose();
+        mapKit.close();
+    }
+
+    @Test
+    public void decodedIconReplacesPlaceholder() throws Exception {
+        assets.put("decoded.png", png());
+        addMarker("decoded.png");
+
+        Placemark placemark = awaitIconChange(YandexIconLoader.placeholder());
+
+        assertNotNull(placemark.getIcon());
+    }
+
+    @Test
+    public void undecodableIconFallsBackToDefault() throws Exception {
+        assets.put("undecodable.png", "not an image".getBytes("UTF-8"));
+        Placemark placeholderPlacemark = addMarker("undecodable.png");
+
+        Placemark placemark = awaitIconChange(YandexIconLoader.placeholder());
+
+        assertNull(placemark.getIcon());
+        assertFalse(placeholderPlacemark.isValid());
+    }
+
+    @Test
+    public void missingIconFallsBackToDefault() throws Exception {
+        addMarker("missing.png");
+
+        assertNull(awaitIconChange(YandexIconLoader.placeholder()).getIcon());
+    }
+
+    @Test
+    public void undecodableUpdateFallsBackToDefault() throws Exception {
+        assets.put("previous.png", png());
+        assets.put("broken.png", "not an image".getBytes("UTF-8"));
+        addMarker("previous.png");
+
+        Placemark placemark = awaitIconChange(YandexIconLoader.placeholder());
+        Map<String, Object> arguments = new HashMap<>();
+
+        arguments.put("id", placemark.getUserData());
+        arguments.put("icon", icon("broken.png"));
+        controller.onMethodCall(new MethodCall("marker#update", arguments), noReply);
+
+        assertNull(awaitIconChange(placemark.getIcon()).getIcon());
+    }
+
+    @Test
+    public void defaultIconNeedsNoPlaceholder() throws Exception {
+        Map<String, Object> arguments = new HashMap<>();
+
+        arguments.put("points", new double[] { 55.75, 37.62, 55.76, 37.63, 55.77, 37.64 });
+        arguments.put("icon", new ArrayList<Object>(Arrays.asList("defaultMarker")));
+        controller.onMethodCall(new MethodCall("marker#addAll", arguments), noReply);
+
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (mapKit.mapObjects.children(Placemark.class).isEmpty()) {
+            assertTrue("Markers were not added in time", System.currentTimeMillis() < deadline);
+            YandexTestMapKit.runMainLooper();
+        }
+
+        List<Placemark> placemarks = mapKit.mapObjects.children(Placemark.class);
+        long quietUntil = System.currentTimeMillis() + 100;
+
+        while (System.currentTimeMillis() < quietUntil) {
+            assertTrue("Main looper did not go idle in time", System.currentTimeMillis() < deadline);
+
+            if (YandexTestMapKit.runMainLooper()) {
+                quietUntil = System.currentTimeMillis() + 100;
+            }
+        }
+
+        assertEquals(3, placemarks.size());
+        assertEquals(placemarks, mapKit.mapObjects.children(Placemark.class));
+
+        for (Placemark placemark : placemarks) {
+            assertTrue(placemark.isValid());
+            assertNull(placemark.getIcon());
+        }
+    }
+
+    /**
+     * Sends marker#init with the asset as its icon and returns the placemark showing the placeholder.
+     */
+    private Placemark addMarker(String assetName) {
+        Map<String, Object> arguments = new HashMap<>();
+
+        arguments.put("point", new double[] { 55.75, 37.62 });
+        arguments.put("icon", icon(assetName));
+        controller.onMethodCall(new MethodCall("marker#init", arguments), noReply);
+
+        return awaitIconChange(null);
+    }
+
+    private static List<Object> icon(String assetName) {
+        return new ArrayList<Object>(Arrays.asList("fromAssetImage", assetName, 2.0));
+    }
+
+    /**
+     * Runs the main looper until the only placemark shows another icon than the given one.
+     */
+    private Placemark awaitIconChange(ImageProvider icon) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (true) {
+            List<Placemark> placemarks = mapKit.mapObjects.children(Placemark.class);
+
+            if (!placemarks.isEmpty()) {
+                assertEquals(1, placemarks.size());
+
+                if (placemarks.get(0).getIcon() != icon) {
+                    return placemarks.get(0);
+                }
+            }
+
+            assertTrue("Icon did not change in time", System.currentTimeMillis() < deadline);
+            YandexTestMapKit.runMainLooper();
+        }
+    }
+
+    private static byte[] png() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB), "png", stream);
+
+        return stream.toByteArray();
+    }
+}
@@ -0,0 +1,622 @@
+package com.unact.yandexmapkit;
+
+import android.app.Activity;
+
+import com.google.gson.Gson;
+import com.unact.yandexmapkit.YandexFakeMapObjects.Placemark;
+import com.unact.yandexmapkit.YandexFakeMapObjects.PolygonObject;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.map.CameraPosition;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import io.flutter.plugin.common.EventChannel;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays channel traffic through YandexMapController.onMethodCall and
+ * YandexMapkitPlugin.onMethodCall against the fake map objects and search manager, and fails when a
+ * scenario regresses past perf-baseline.properties.
+ *
+ * Calls carry arguments of the types the Flutter codec gives the handlers. The test thread is the
+ * main thread and runs the main looper until every call is answered and what it started has
+ * finished. For each scenario it checks:
+ * - bytes allocated per call on all threads, so work of the pipeline and worker threads is included,
+ * - CPU time of the main thread per call,
+ * - calls per second.
+ * Times are first scaled by how long this machine takes for a fixed workload compared to the
+ * machine that recorded the baseline, and may still be TIME_MARGIN times worse, since they depend on
+ * the machine and its load. Allocations do not, and may be ALLOCATION_MARGIN times higher.
+ *
+ * Run with -PperfRecord to write the measured values as a new baseline to build/ instead.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class YandexPerformanceTest {
+    private static final long TIMEOUT_NANOS = 60000000000L;
+    private static final double TIME_MARGIN = 5;
+    private static final double ALLOCATION_MARGIN = 2;
+
+    /**
+     * Allowed over the allocation margin, for scenarios whose baseline allocates next to nothing.
+     */
+    private static final long ALLOCATION_SLACK = 256;
+
+    private static final Gson gson = new Gson();
+    private static final Random random = new Random(1);
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final MethodChannel.Result noReply = new MethodChannel.Result() {
+        @Override
+        public void success(Object result) {
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            throw new IllegalStateException(errorCode + ": " + errorMessage);
+        }
+
+        @Override
+        public void notImplemented() {
+            throw new IllegalStateException("Not implemented");
+        }
+    };
+
+    private static double calibrationResult;
+
+    private abstract static class Scenario {
+        final String name;
+        final int calls;
+        final int window;
+        YandexTestMapKit mapKit;
+        Replies replies;
+
+        /**
+         * @param window how many calls may wait for their answer at once
+         */
+        Scenario(String name, int calls, int window) {
+            this.name = name;
+            this.calls = calls;
+            this.window = window;
+        }
+
+        /**
+         * Creates the handlers and the calls to replay, which is not measured.
+         */
+        void setUp() {
+            mapKit = new YandexTestMapKit();
+        }
+
+        /**
+         * Sends call i, which is answered to replies.
+         */
+        abstract void call(int i);
+
+        /**
+         * Whether everything started by the calls has finished.
+         */
+        boolean settled() {
+            return true;
+        }
+
+        void tearDown() {
+            mapKit.close();
+        }
+    }
+
+    /**
+     * Scenario of calls to a map controller showing the fake map objects.
+     */
+    private abstract static class MapScenario extends Scenario {
+        YandexMapController controller;
+
+        MapScenario(String name, int calls, int window) {
+            super(name, calls, window);
+        }
+
+        @Override
+        void setUp() {
+            super.setUp();
+
+            controller = new YandexMapController(0, RuntimeEnvironment.application, mapKit.registrar);
+        }
+
+        @Override
+        void tearDown() {
+            controller.dispose();
+            super.tearDown();
+        }
+    }
+
+    /**
+     * Answers of calls or events of a stream, in the order the calls were sent.
+     */
+    private static class Replies implements MethodChannel.Result, EventChannel.EventSink {
+        final long[] sent;
+        final YandexMetrics.Histogram latencies = new YandexMetrics.Histogram();
+        int received;
+        Object last;
+
+        Replies(int calls) {
+            sent = new long[calls];
+        }
+
+        @Override
+        public void success(Object result) {
+            latencies.record(System.nanoTime() - sent[received++]);
+            last = result;
+        }
+
+        @Override
+        public void error(String errorCode, String errorMessage, Object errorDetails) {
+            throw new IllegalStateException(errorCode + ": " + errorMessage);
+        }
+
+        @Override
+        public void notImplemented() {
+            throw new IllegalStateException("Not implemented");
+        }
+
+        @Override
+        public void endOfStream() {
+        }
+    }
+
+    private static class Result {
+        double callsPerSecond;
+        long bytesPerCall;
+        long mainThreadNanosPerCall;
+        double p99Micros;
+    }
+
+    @Test
+    public void scenariosStayWithinBaseline() throws IOException {
+        Properties baseline = new Properties();
+        Properties measured = new Properties();
+        InputStream stream = YandexPerformanceTest.class.getResourceAsStream("/perf-baseline.properties");
+
+        assertNotNull("perf-baseline.properties is missing", stream);
+
+        try {
+            baseline.load(stream);
+        } finally {
+            stream.close();
+        }
+
+        long calibrationNanos = calibrate();
+        double scale = (double) calibrationNanos / Long.parseLong(baseline.getProperty("calibrationNanos"));
+        List<String> failures = new ArrayList<>();
+
+        measured.setProperty("calibrationNanos", Long.toString(calibrationNanos));
+        System.out.println(String.format("Calibration took %.2f times as long as for the baseline", scale));
+
+        for (Scenario scenario : scenarios()) {
+            measure(scenario);
+
+            Result result = measure(scenario);
+
+            System.out.println(String.format(
+                    "%-20s %12.0f calls/s %12d bytes/call %10d ns/call on main %10.1f us p99",
+                    scenario.name,
+                    result.callsPerSecond,
+                    result.bytesPerCall,
+                    result.mainThreadNanosPerCall,
+                    result.p99Micros
+            ));
+
+            measured.setProperty(scenario.name + ".bytesPerCall", Long.toString(result.bytesPerCall));
+            measured.setProperty(scenario.name + ".mainThreadNanosPerCall", Long.toString(result.mainThreadNanosPerCall));
+            measured.setProperty(scenario.name + ".callsPerSecond", Long.toString(Math.round(result.callsPerSecond)));
+
+            String bytesPerCall = baseline.getProperty(scenario.name + ".bytesPerCall");
+            String mainThreadNanosPerCall = baseline.getProperty(scenario.name + ".mainThreadNanosPerCall");
+            String callsPerSecond = baseline.getProperty(scenario.name + ".callsPerSecond");
+
+            if (bytesPerCall == null || mainThreadNanosPerCall == null || callsPerSecond == null) {
+                failures.add(scenario.name + " has no baseline");
+                continue;
+            }
+
+            long maxBytesPerCall = (long) (Long.parseLong(bytesPerCall) * ALLOCATION_MARGIN) + ALLOCATION_SLACK;
+            long maxMainThreadNanosPerCall = (long) (Long.parseLong(mainThreadNanosPerCall) * scale * TIME_MARGIN);
+            double minCallsPerSecond = Long.parseLong(callsPerSecond) / scale / TIME_MARGIN;
+
+            if (result.bytesPerCall > maxBytesPerCall) {
+                failures.add(scenario.name + " allocates " + result.bytesPerCall + " bytes/call, limit " + maxBytesPerCall);
+            }
+
+            if (result.mainThreadNanosPerCall > maxMainThreadNanosPerCall) {
+                failures.add(scenario.name + " takes " + result.mainThreadNanosPerCall + " ns/call on the main thread, limit " + maxMainThreadNanosPerCall);
+            }
+
+            if (result.callsPerSecond < minCallsPerSecond) {
+                failures.add(String.format("%s runs %.0f calls/s, limit %.0f", scenario.name, result.callsPerSecond, minCallsPerSecond));
+            }
+        }
+
+        if (Boolean.getBoolean("yandex.perf.record")) {
+            OutputStream output = new FileOutputStream(System.getProperty("yandex.perf.output"));
+
+            try {
+                measured.store(output, "Baseline of YandexPerformanceTest");
+            } finally {
+                output.close();
+            }
+
+            return;
+        }
+
+        assertTrue("Regressions:\n" + join(failures), failures.isEmpty());
+    }
+
+    /**
+     * Main thread CPU time of a fixed mix of allocation, hashing and floating point math, the best
+     * of five runs.
+     */
+    private static long calibrate() {
+        long best = Long.MAX_VALUE;
+
+        for (int run = 0; run < 5; run++) {
+            long start = threads.getCurrentThreadCpuTime();
+            Map<Integer, double[]> values = new HashMap<>();
+            double sum = 0;
+
+            for (int i = 0; i < 200000; i++) {
+                values.put(i, new double[] { Math.sin(i), Math.cos(i) });
+            }
+
+            for (int i = 0; i < 200000; i++) {
+                double[] value = values.get(i);
+
+                sum += value[0] * value[1];
+            }
+
+            calibrationResult = sum;
+            best = Math.min(best, threads.getCurrentThreadCpuTime() - start);
+        }
+
+        return best;
+    }
+
+    private static Result measure(Scenario scenario) {
+        scenario.replies = new Replies(scenario.calls);
+        scenario.setUp();
+
+        Replies replies = scenario.replies;
+        long[] threadIds = threads.getAllThreadIds();
+        long[] allocatedBefore = threads.getThreadAllocatedBytes(threadIds);
+        long mainThreadStart = threads.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < scenario.calls; i++) {
+            while (i - replies.received >= scenario.window) {
+                runNextMessages();
+            }
+
+            replies.sent[i] = System.nanoTime();
+            scenario.call(i);
+        }
+
+        while (replies.received < scenario.calls || !scenario.settled()) {
+            runNextMessages();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long mainThreadTime = threads.getCurrentThreadCpuTime() - mainThreadStart;
+        long allocated = allocatedSince(threadIds, allocatedBefore);
+        Result result = new Result();
+
+        scenario.tearDown();
+
+        result.callsPerSecond = scenario.calls * 1e9 / elapsed;
+        result.bytesPerCall = allocated / scenario.calls;
+        result.mainThreadNanosPerCall = mainThreadTime / scenario.calls;
+        result.p99Micros = replies.latencies.percentile(0.99) / 1000.0;
+
+        return result;
+    }
+
+    /**
+     * Bytes allocated by all threads since the given counts were taken. Threads started since
+     * then are counted from zero.
+     */
+    private static long allocatedSince(long[] threadIdsBefore, long[] allocatedBefore) {
+        long[] threadIds = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(threadIds);
+        long total = 0;
+
+        for (int i = 0; i < threadIds.length; i++) {
+            if (allocated[i] < 0) {
+                continue;
+            }
+
+            total += allocated[i];
+
+            for (int j = 0; j < threadIdsBefore.length; j++) {
+                if (threadIdsBefore[j] == threadIds[i] && allocatedBefore[j] > 0) {
+                    total -= allocatedBefore[j];
+                    break;
+                }
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Runs the main looper once there are messages for it.
+     */
+    private static void runNextMessages() {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+
+        while (!YandexTestMapKit.runMainLooper()) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Nothing happened on the main looper for " + TIMEOUT_NANOS / 1000000 + " ms");
+            }
+        }
+    }
+
+    /**
+     * Sends a call outside of measurements and returns its answer.
+     */
+    private static Object await(MethodChannel.MethodCallHandler handler, MethodCall call) {
+        Replies replies = new Replies(1);
+
+        replies.sent[0] = System.nanoTime();
+        handler.onMethodCall(call, replies);
+
+        while (replies.received == 0) {
+            runNextMessages();
+        }
+
+        return replies.last;
+    }
+
+    private static String join(List<String> lines) {
+        StringBuilder builder = new StringBuilder();
+
+        for (String line : lines) {
+            builder.append(line).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    private static double[] randomPoints(int count) {
+        double[] points = new double[count * 2];
+
+        for (int i = 0; i < count; i++) {
+            points[i * 2] = 55 + random.nextDouble();
+            points[i * 2 + 1] = 37 + random.nextDouble();
+        }
+
+        return points;
+    }
+
+    private static Map<String, Object> jsonPoint(double latitude, double longitude) {
+        Map<String, Object> point = new HashMap<>();
+
+        point.put("latitude", latitude);
+        point.put("longitude", longitude);
+
+        return point;
+    }
+
+    private static List<Scenario> scenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+
+        // marker#init bursts as sent by YandexMapController.addMarker: decoding on the pipeline
+        // thread, then a placemark per marker on the main thread.
+        scenarios.add(new MapScenario("markerInit", 10000, 10000) {
+            MethodCall[] markers;
+
+            @Override
+            void setUp() {
+                super.setUp();
+
+                double[] points = randomPoints(calls);
+
+                markers = new MethodCall[calls];
+
+                for (int i = 0; i < calls; i++) {
+                    Map<String, Object> arguments = new HashMap<>();
+
+                    arguments.put("alpha", 1.0);
+                    arguments.put("draggable", false);
+                    arguments.put("visible", true);
+                    arguments.put("zIndex", 0.0);
+                    arguments.put("point", new double[] { points[i * 2], points[i * 2 + 1] });
+                    markers[i] = new MethodCall("marker#init", arguments);
+                }
+            }
+
+            @Override
+            void call(int i) {
+                controller.onMethodCall(markers[i], replies);
+            }
+
+            @Override
+            boolean settled() {
+                return mapKit.mapObjects.children(Placemark.class).size() == calls;
+            }
+        });
+
+        // marker#update bursts of markers added with marker#addAll, changing alpha and zIndex.
+        scenarios.add(new MapScenario("markerUpdateBurst", 10000, 10000) {
+            MethodCall[] updates;
+
+            @Override
+            void setUp() {
+                super.setUp();
+
+                Map<String, Object> addArguments = new HashMap<>();
+
+                addArguments.put("points", randomPoints(calls));
+
+                int[] ids = (int[]) await(controller, new MethodCall("marker#addAll", addArguments));
+
+                updates = new MethodCall[calls];
+
+                for (int i = 0; i < calls; i++) {
+                    Map<String, Object> arguments = new HashMap<>();
+
+                    arguments.put("alpha", i % 2 == 0 ? 0.5 : 1.0);
+                    arguments.put("zIndex", (double) (i % 10));
+                    arguments.put("id", ids[i]);
+                    updates[i] = new MethodCall("marker#update", arguments);
+                }
+            }
+
+            @Override
+            void call(int i) {
+                controller.onMethodCall(updates[i], replies);
+            }
+        });
+
+        // polygon#add of large simplified polygons: decoding on the pipeline thread and
+        // simplification on the worker thread until the polygons are shown.
+        scenarios.add(new MapScenario("polygonAdd", 20, 20) {
+            MethodCall polygon;
+
+            @Override
+            void setUp() {
+                super.setUp();
+
+                int vertices = 100000;
+                double[] coordinates = new double[vertices * 2];
+                Map<String, Object> arguments = new HashMap<>();
+
+                for (int i = 0; i < vertices; i++) {
+                    double angle = 2 * Math.PI * i / vertices;
+                    double radius = 0.1 + 0.01 * Math.sin(angle * 50);
+
+                    coordinates[i * 2] = 55.75 + radius * Math.sin(angle);
+                    coordinates[i * 2 + 1] = 37.62 + radius * Math.cos(angle);
+                }
+
+                arguments.put("outerPoints", coordinates);
+                arguments.put("innerPoints", new double[0]);
+                arguments.put("innerRings", null);
+                arguments.put("fillColor", 0x8000ff00L);
+                arguments.put("strokeColor", 0xff00ff00L);
+                arguments.put("strokeWidth", 2.0);
+                arguments.put("zIndex", 0.0);
+                arguments.put("simplifyTolerance", 1.0);
+                polygon = new MethodCall("polygon#add", arguments);
+            }
+
+            @Override
+            void call(int i) {
+                controller.onMethodCall(polygon, replies);
+            }
+
+            @Override
+            boolean settled() {
+                return mapKit.mapObjects.children(PolygonObject.class).size() == calls;
+            }
+        });
+
+        // Suggest storms: a user typing and erasing queries over a slightly moving window, each
+        // request waiting for its result, which comes from the cache or the fake search manager.
+        scenarios.add(new Scenario("suggestStorm", 20000, 1) {
+            MethodCall[] requests;
+            YandexMapkitPlugin plugin;
+
+            @Override
+            void setUp() {
+                super.setUp();
+
+                String text = "Moscow, Tverskaya street 12";
+
+                plugin = new YandexMapkitPlugin(Robolectric.buildActivity(Activity.class).get());
+                plugin.onListen(null, replies);
+                requests = new MethodCall[calls];
+
+                for (int i = 0; i < calls; i++) {
+                    double latitude = 55.7 + (i % 50) * 0.0001;
+                    double longitude = 37.6 + (i % 30) * 0.0001;
+                    Map<String, Object> window = new HashMap<>();
+                    Map<String, Object> arguments = new HashMap<>();
+
+                    window.put("southWest", jsonPoint(latitude, longitude));
+                    window.put("northEast", jsonPoint(latitude + 0.1, longitude + 0.1));
+                    arguments.put("text", text.substring(0, 1 + (i * 7 % text.length())));
+                    arguments.put("window", window);
+                    arguments.put("type", "geo");
+                    arguments.put("sessionId", 1);
+                    arguments.put("seq", i + 1);
+                    arguments.put("debounce", 0);
+                    requests[i] = new MethodCall("suggest", gson.toJson(arguments));
+                }
+            }
+
+            @Override
+            void call(int i) {
+                plugin.onMethodCall(requests[i], noReply);
+            }
+        });
+
+        // onCameraPositionChanged during gestures, filtered to 30 events per second. Gestures
+        // have no answer, so each is answered once camera listeners returned.
+        scenarios.add(new MapScenario("cameraEvents", 100000, 1) {
+            CameraPosition[] positions;
+
+            @Override
+            void setUp() {
+                super.setUp();
+
+                Map<String, Object> filter = new HashMap<>();
+
+                filter.put("mode", "all");
+                filter.put("maxEventsPerSecond", 30);
+                filter.put("minZoomDelta", 0.01);
+                filter.put("minTargetDelta", 1.0);
+                filter.put("minAzimuthDelta", 1.0);
+                await(controller, new MethodCall("camera#setEventFilter", filter));
+
+                positions = new CameraPosition[calls];
+
+                for (int i = 0; i < calls; i++) {
+                    positions[i] = new CameraPosition(new Point(55.75 + i * 0.000001, 37.62), 12 + (i % 100) * 0.001f, 0, 0);
+                }
+            }
+
+            @Override
+            void call(int i) {
+                mapKit.gesture(positions[i], i % 60 == 59);
+                replies.success(null);
+            }
+
+            @Override
+            boolean settled() {
+                return mapKit.events > 0;
+            }
+        });
+
+        return scenarios;
+    }
+}
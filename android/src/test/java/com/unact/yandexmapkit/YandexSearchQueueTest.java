@@ -0,0 +1,307 @@
+package com.unact.yandexmapkit;
+
+import com.yandex.mapkit.geometry.Point;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.LooperMode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class YandexSearchQueueTest {
+    private static final Point[] POINTS = {
+            new Point(55.75, 37.62),
+            new Point(55.76, 37.63),
+            new Point(59.94, 30.31),
+            new Point(43.12, 131.89)
+    };
+    private static final String[] TAGS = { "first", "second", "third", null };
+
+    private YandexTestMapKit mapKit;
+    private YandexSearchQueue queue;
+
+    @Before
+    public void setUp() {
+        mapKit = new YandexTestMapKit();
+        queue = new YandexSearchQueue(RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        mapKit.close();
+    }
+
+    @Test
+    public void identicalRequestsAreCoalesced() {
+        Results results = new Results();
+
+        queue.reverse(POINTS[0], 16, "geo", null, results.callback(0));
+        queue.reverse(POINTS[0], 16, "geo", "tag", results.callback(1));
+        // Within the reverse geocoding quantum of the first point.
+        queue.reverse(new Point(55.75002, 37.62003), 16, "geo", null, results.callback(2));
+
+        assertEquals(1, mapKit.searchManager.searchRequests);
+
+        mapKit.searchManager.release(1);
+        runMainLooper();
+        queue.reverse(POINTS[0], 16, "geo", null, results.callback(3));
+
+        assertEquals(1, mapKit.searchManager.searchRequests);
+        assertEquals(Arrays.asList(
+                Collections.singletonList(found(POINTS[0])),
+                Collections.singletonList(found(POINTS[0])),
+                Collections.singletonList(found(POINTS[0])),
+                Collections.singletonList(found(POINTS[0]))
+        ), results.received);
+    }
+
+    @Test
+    public void concurrencyLimitHoldsRequestsBack() {
+        Results results = new Results();
+
+        queue.setMaxConcurrent(2);
+
+        for (int i = 0; i < POINTS.length; i++) {
+            queue.reverse(POINTS[i], 16, "geo", null, results.callback(i));
+        }
+
+        assertEquals(2, mapKit.searchManager.pendingSearches());
+
+        for (int i = 0; i < POINTS.length; i++) {
+            mapKit.searchManager.release(1);
+            runMainLooper();
+
+            assertEquals(Math.min(2, POINTS.length - i - 1), mapKit.searchManager.pendingSearches());
+            assertEquals(Collections.singletonList(found(POINTS[i])), results.received.get(i));
+        }
+
+        assertEquals(POINTS.length, mapKit.searchManager.searchRequests);
+    }
+
+    @Test
+    public void cancelAnswersCancelled() {
+        Results results = new Results();
+
+        queue.setMaxConcurrent(1);
+        queue.reverse(POINTS[0], 16, "geo", "first", results.callback(0));
+        queue.reverse(POINTS[0], 16, "geo", "second", results.callback(1));
+        queue.reverse(POINTS[1], 16, "geo", "first", results.callback(2));
+        queue.reverse(POINTS[2], 16, "geo", "first", results.callback(3));
+        queue.reverse(POINTS[2], 16, "geo", null, results.callback(4));
+        queue.cancel("first");
+
+        // The first request still has a waiter, the second is dropped before it is sent.
+        assertEquals(Collections.singletonList("cancelled"), results.received.get(0));
+        assertEquals(Collections.singletonList("cancelled"), results.received.get(2));
+        assertEquals(Collections.singletonList("cancelled"), results.received.get(3));
+        assertEquals(1, mapKit.searchManager.searchRequests);
+
+        queue.cancel("second");
+
+        // The first request has no waiters left, so it is cancelled and the third one is sent.
+        assertEquals(Collections.singletonList("cancelled"), results.received.get(1));
+        assertEquals(1, mapKit.searchManager.cancelledSearches);
+        assertEquals(2, mapKit.searchManager.searchRequests);
+
+        mapKit.searchManager.release(1);
+        runMainLooper();
+
+        assertEquals(Collections.singletonList(found(POINTS[2])), results.received.get(4));
+        assertEquals(0, mapKit.searchManager.pendingSearches());
+    }
+
+    @Test
+    public void randomOperationsMatchModel() {
+        Random random = new Random(1);
+        Results results = new Results();
+        Model model = new Model();
+
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(10);
+
+            if (operation < 5) {
+                int key = random.nextInt(POINTS.length);
+                String tag = TAGS[random.nextInt(TAGS.length)];
+                int callback = results.received.size();
+
+                queue.reverse(POINTS[key], 16, "geo", tag, results.callback(callback));
+                model.enqueue(key, tag, callback);
+            } else if (operation < 7) {
+                String tag = TAGS[random.nextInt(TAGS.length)];
+
+                queue.cancel(tag);
+                model.cancel(tag);
+            } else if (operation < 9) {
+                int count = random.nextInt(model.inFlight.size() + 1);
+
+                mapKit.searchManager.release(count);
+                runMainLooper();
+                model.release(count);
+            } else {
+                int maxConcurrent = random.nextInt(4);
+
+                queue.setMaxConcurrent(maxConcurrent);
+                model.setMaxConcurrent(maxConcurrent);
+            }
+
+            assertEquals("operation " + i, model.received, results.received);
+            assertEquals("operation " + i, model.sent, mapKit.searchManager.searchRequests);
+            assertEquals("operation " + i, model.inFlight.size(), mapKit.searchManager.pendingSearches());
+            assertEquals("operation " + i, model.cancelled, mapKit.searchManager.cancelledSearches);
+        }
+    }
+
+    private static void runMainLooper() {
+        while (YandexTestMapKit.runMainLooper()) {
+            // Answers may post more messages.
+        }
+    }
+
+    /**
+     * What the fake search manager answers a reverse search of the point with.
+     */
+    private static String found(Point point) {
+        return point.getLatitude() + "," + point.getLongitude();
+    }
+
+    /**
+     * Answers received by numbered callbacks, as the name of the first item found or the error.
+     */
+    private static class Results {
+        final List<List<String>> received = new ArrayList<>();
+
+        YandexSearchQueue.Callback callback(final int index) {
+            while (received.size() <= index) {
+                received.add(new ArrayList<String>());
+            }
+
+            return new YandexSearchQueue.Callback() {
+                @Override
+                public void onResult(Map<String, Object> result) {
+                    List<?> items = (List<?>) result.get("items");
+
+                    received.get(index).add(items != null
+                            ? (String) ((Map<?, ?>) items.get(0)).get("name")
+                            : (String) result.get("error"));
+                }
+            };
+        }
+    }
+
+    /**
+     * The queue kept as plain lists: requests by point with their waiting callbacks, the points
+     * queued and in flight in the order they were sent, and the points answered once.
+     */
+    private static class Model {
+        final List<List<String>> received = new ArrayList<>();
+        final Map<Integer, List<Object[]>> waiting = new HashMap<>();
+        final ArrayDeque<Integer> queued = new ArrayDeque<>();
+        final List<Integer> inFlight = new ArrayList<>();
+        final Set<Integer> answered = new HashSet<>();
+
+        int maxConcurrent = 4;
+        int sent;
+        int cancelled;
+
+        void enqueue(int key, String tag, int callback) {
+            received.add(new ArrayList<String>());
+
+            if (answered.contains(key)) {
+                received.get(callback).add(found(POINTS[key]));
+                return;
+            }
+
+            if (!waiting.containsKey(key)) {
+                waiting.put(key, new ArrayList<Object[]>());
+                queued.add(key);
+            }
+
+            waiting.get(key).add(new Object[] { tag, callback });
+            pump();
+        }
+
+        void cancel(String tag) {
+            if (tag == null) {
+                return;
+            }
+
+            Iterator<Map.Entry<Integer, List<Object[]>>> iterator = waiting.entrySet().iterator();
+
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, List<Object[]>> request = iterator.next();
+                Iterator<Object[]> waiters = request.getValue().iterator();
+
+                while (waiters.hasNext()) {
+                    Object[] waiter = waiters.next();
+
+                    if (tag.equals(waiter[0])) {
+                        received.get((Integer) waiter[1]).add("cancelled");
+                        waiters.remove();
+                    }
+                }
+
+                if (request.getValue().isEmpty()) {
+                    iterator.remove();
+
+                    if (inFlight.remove(request.getKey())) {
+                        cancelled++;
+                    } else {
+                        queued.remove(request.getKey());
+                    }
+                }
+            }
+
+            pump();
+        }
+
+        /**
+         * Answers the count points sent first, sending queued ones as slots free up.
+         */
+        void release(int count) {
+            List<Integer> keys = new ArrayList<>(inFlight.subList(0, count));
+
+            for (Integer key : keys) {
+                inFlight.remove(key);
+                answered.add(key);
+
+                for (Object[] waiter : waiting.remove(key)) {
+                    received.get((Integer) waiter[1]).add(found(POINTS[key]));
+                }
+
+                pump();
+            }
+        }
+
+        void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            pump();
+        }
+
+        private void pump() {
+            while (inFlight.size() < maxConcurrent && !queued.isEmpty()) {
+                inFlight.add(queued.poll());
+                sent++;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.unact.yandexmapkit;
+
+import android.os.Looper;
+
+import com.yandex.mapkit.Animation;
+import com.yandex.mapkit.MapKit;
+import com.yandex.mapkit.MapKitFactory;
+import com.yandex.mapkit.geometry.Point;
+import com.yandex.mapkit.map.CameraListener;
+import com.yandex.mapkit.map.CameraPosition;
+import com.yandex.mapkit.map.CameraUpdateSource;
+import com.yandex.mapkit.map.Map;
+import com.yandex.mapkit.map.VisibleRegion;
+import com.yandex.mapkit.mapview.MapView;
+import com.yandex.mapkit.search.Search;
+import com.yandex.mapkit.search.SearchFactory;
+import com.yandex.mapkit.search.SearchManagerType;
+
+import org.mockito.MockedConstruction;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.PluginRegistry;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * MapKit for Robolectric tests.
+ *
+ * MapKitFactory and SearchFactory are mocked, every MapView created shows a mocked Map with the
+ * fake map objects, and every search manager created is the fake one. The map keeps the camera
+ * position, applies moves at once and reports them to camera listeners as finished. Gestures are
+ * simulated with gesture. The visible region is the area around the camera target that a 256 pixel
+ * square would show at the camera zoom.
+ *
+ * The mocks only apply on the thread that created this, which has to be the main thread.
+ */
+class YandexTestMapKit implements Closeable {
+    final YandexFakeMapObjects mapObjects = YandexFakes.create(YandexFakeMapObjects.class, (Object) null);
+    final YandexFakeSearchManager searchManager = YandexFakes.create(YandexFakeSearchManager.class);
+    final Map map = mock(Map.class);
+    final PluginRegistry.Registrar registrar = mock(PluginRegistry.Registrar.class);
+
+    /**
+     * Messages sent to Dart over the channels of map controllers.
+     */
+    int events;
+
+    private final List<CameraListener> cameraListeners = new ArrayList<>();
+    private final MockedStatic<MapKitFactory> mapKitFactory = mockStatic(MapKitFactory.class);
+    private final MockedStatic<SearchFactory> searchFactory = mockStatic(SearchFactory.class);
+    private final MockedConstruction<MapView> mapViews;
+    private CameraPosition cameraPosition = new CameraPosition(new Point(55.75, 37.62), 10, 0, 0);
+
+    YandexTestMapKit() {
+        final MapKit mapKit = mock(MapKit.class);
+        final Search search = mock(Search.class);
+        BinaryMessenger messenger = mock(BinaryMessenger.class, new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                if (invocation.getMethod().getName().equals("send")) {
+                    events++;
+                }
+
+                return null;
+            }
+        });
+
+        when(search.createSearchManager(SearchManagerType.COMBINED)).thenReturn(searchManager);
+        when(registrar.messenger()).thenReturn(messenger);
+        mapKitFactory.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                MapKitFactory.getInstance();
+            }
+        }).thenReturn(mapKit);
+        searchFactory.when(new MockedStatic.Verification() {
+            @Override
+            public void apply() {
+                SearchFactory.getInstance();
+            }
+        }).thenReturn(search);
+
+        mapViews = mockConstruction(MapView.class, new MockedConstruction.MockInitializer<MapView>() {
+            @Override
+            public void prepare(MapView mapView, MockedConstruction.Context context) {
+                when(mapView.getMap()).thenReturn(map);
+            }
+        });
+
+        when(map.getMapObjects()).thenReturn(mapObjects);
+        when(map.getCameraPosition()).thenAnswer(new Answer<CameraPosition>() {
+            @Override
+            public CameraPosition answer(InvocationOnMock invocation) {
+                return cameraPosition;
+            }
+        });
+        when(map.getVisibleRegion()).thenAnswer(new Answer<VisibleRegion>() {
+            @Override
+            public VisibleRegion answer(InvocationOnMock invocation) {
+                return visibleRegion();
+            }
+        });
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                cameraListeners.add(invocation.<CameraListener>getArgument(0));
+                return null;
+            }
+        }).when(map).addCameraListener(any(CameraListener.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                cameraListeners.remove(invocation.<CameraListener>getArgument(0));
+                return null;
+            }
+        }).when(map).removeCameraListener(any(CameraListener.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                move(invocation.<CameraPosition>getArgument(0), CameraUpdateSource.APPLICATION, true);
+                return null;
+            }
+        }).when(map).move(any(CameraPosition.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Map.CameraCallback callback = invocation.getArgument(2);
+
+                move(invocation.<CameraPosition>getArgument(0), CameraUpdateSource.APPLICATION, true);
+
+                if (callback != null) {
+                    callback.onMoveFinished(true);
+                }
+
+                return null;
+            }
+        }).when(map).move(
+                any(CameraPosition.class),
+                org.mockito.ArgumentMatchers.<Animation>any(),
+                org.mockito.ArgumentMatchers.<Map.CameraCallback>any()
+        );
+    }
+
+    /**
+     * Runs the messages due on the paused main looper, or waits a little for other threads to post
+     * some. Returns whether any message was due.
+     */
+    static boolean runMainLooper() {
+        ShadowLooper looper = shadowOf(Looper.getMainLooper());
+
+        if (looper.isIdle()) {
+            LockSupport.parkNanos(100000);
+
+            return false;
+        }
+
+        looper.idle();
+
+        return true;
+    }
+
+    /**
+     * Moves the camera as a user gesture would.
+     */
+    void gesture(CameraPosition cameraPosition, boolean finished) {
+        move(cameraPosition, CameraUpdateSource.GESTURES, finished);
+    }
+
+    @Override
+    public void close() {
+        mapViews.close();
+        searchFactory.close();
+        mapKitFactory.close();
+    }
+
+    private void move(CameraPosition cameraPosition, CameraUpdateSource source, boolean finished) {
+        this.cameraPosition = cameraPosition;
+
+        for (int i = 0; i < cameraListeners.size(); i++) {
+            cameraListeners.get(i).onCameraPositionChanged(map, cameraPosition, source, finished);
+        }
+    }
+
+    private VisibleRegion visibleRegion() {
+        Point target = cameraPosition.getTarget();
+        double longitudeSpan = 360 / Math.pow(2, cameraPosition.getZoom());
+        double latitudeSpan = longitudeSpan * Math.cos(Math.toRadians(target.getLatitude()));
+        double north = Math.min(90, target.getLatitude() + latitudeSpan / 2);
+        double south = Math.max(-90, target.getLatitude() - latitudeSpan / 2);
+        double west = target.getLongitude() - longitudeSpan / 2;
+        double east = target.getLongitude() + longitudeSpan / 2;
+
+        return new VisibleRegion(
+                new Point(north, west),
+                new Point(north, east),
+                new Point(south, west),
+                new Point(south, east)
+        );
+    }
+}
@@ -46,10 +46,10 @@ public class JsonPosition: Codable {
 }
 
 public class JsonMapObjectEventWithPoint: Codable {
-    let id: String
+    let id: Int
     let point: JsonPoint
     
-    public required init(id: String, point: JsonPoint) {
+    public required init(id: Int, point: JsonPoint) {
         self.id = id
         self.point = point
     }
@@ -119,6 +119,8 @@ public class JsonSuggestResult: Encodable {
     let isError: Bool
     let error: String?
     let items: [JsonSuggestItem]
+    var sessionId: Int = 0
+    var seq: Int = 0
 
     public required init(items: [YMKSuggestItem]?, error: Error?) {
         self.isError = error != nil;
@@ -10,6 +10,39 @@ extension FlutterMethodCall {
     }
 }
 
+extension FlutterStandardTypedData {
+    func toDoubles() -> [Double] {
+        return data.withUnsafeBytes { (pointer: UnsafePointer<Double>) -> [Double] in
+            return Array(UnsafeBufferPointer(start: pointer, count: data.count / MemoryLayout<Double>.size))
+        }
+    }
+
+    func toInts() -> [Int] {
+        return data.withUnsafeBytes { (pointer: UnsafePointer<Int32>) -> [Int] in
+            return UnsafeBufferPointer(start: pointer, count: data.count / MemoryLayout<Int32>.size).map { Int($0) }
+        }
+    }
+
+    func toPoints() -> [YMKPoint] {
+        let coordinates = toDoubles()
+
+        return stride(from: 0, to: coordinates.count - 1, by: 2).map {
+            YMKPoint(latitude: coordinates[$0], longitude: coordinates[$0 + 1])
+        }
+    }
+
+    func toCameraPosition() -> YMKCameraPosition {
+        let values = toDoubles()
+
+        return YMKCameraPosition(
+            target: YMKPoint(latitude: values[0], longitude: values[1]),
+            zoom: Float(values[2]),
+            azimuth: Float(values[3]),
+            tilt: Float(values[4])
+        )
+    }
+}
+
 extension UIColor {
     static func fromInteger(_ intValue: Int) -> UIColor {
         let intAlpha = (UInt(intValue) & UInt(0xFF000000)) >> 24;
@@ -122,7 +155,7 @@ public class SwiftYandexMapkitPlugin: NSObject, FlutterPlugin, FlutterStreamHand
     let suggestChannel: FlutterEventChannel
 
     var controller: YandexMapController?
-    var manager: YMKSearchManager?
+    var suggestSessions: [Int: SuggestSession] = [:]
 
     var eventSink: FlutterEventSink?
 
@@ -161,23 +194,21 @@ public class SwiftYandexMapkitPlugin: NSObject, FlutterPlugin, FlutterStreamHand
         return nil
     }
 
-    private func getSearchManager() -> YMKSearchManager {
-        if self.manager == nil {
-            self.manager = YMKSearch.sharedInstance().createSearchManager(with: .online)
+    private func getSuggestSession(_ sessionId: Int) -> SuggestSession {
+        if let session = self.suggestSessions[sessionId] {
+            return session
         }
-        
-        return self.manager!
+
+        let session = SuggestSession(plugin: self, id: sessionId)
+        self.suggestSessions[sessionId] = session
+
+        return session
     }
-    
-    private func suggestResponseHandler(items: [YMKSuggestItem]?, error: Error?) {
-        DispatchQueue.main.async {
-            if self.eventSink != nil {
-                let data = try! JSONEncoder().encode(JsonSuggestResult(items: items, error: error))
-                self.eventSink!(String(data: data, encoding: .utf8))
-            }
-        }
+
+    private static func sessionIdFromArguments(_ arguments: Any?) -> Int {
+        return (arguments as? [String: Any])?["sessionId"] as? Int ?? 0
     }
-    
+
     public func handle(_ call: FlutterMethodCall, result: @escaping FlutterResult) {
         switch call.method {
         case "setApiKey":
@@ -185,28 +216,21 @@ public class SwiftYandexMapkitPlugin: NSObject, FlutterPlugin, FlutterStreamHand
             result(nil)
             break;
         case "cancelSuggest":
-            self.manager?.cancelSuggest()
+            let sessionId = SwiftYandexMapkitPlugin.sessionIdFromArguments(call.arguments)
+
+            self.suggestSessions[sessionId]?.cancel()
+            result(nil)
+            break;
+        case "closeSuggestSession":
+            let sessionId = SwiftYandexMapkitPlugin.sessionIdFromArguments(call.arguments)
+
+            self.suggestSessions.removeValue(forKey: sessionId)?.cancel()
             result(nil)
             break;
         case "suggest":
             let params: SuggestArguments = try! call.fromJson(SuggestArguments.self)
-            let options: YMKSearchOptions = YMKSearchOptions()
-
-            if params.type == "biz" {
-                options.searchTypes = YMKSearchType.biz
-            } else if params.type == "geo" {
-                options.searchTypes = YMKSearchType.geo
-            }
-
-            DispatchQueue.main.async {
-                self.getSearchManager().suggest(
-                    withText: params.text,
-                    window: params.window.toBoundingBox(),
-                    searchOptions: options,
-                    responseHandler: self.suggestResponseHandler
-                )
-            }
 
+            getSuggestSession(params.sessionId ?? 0).suggest(params)
             result(nil)
             break;
         default:
@@ -218,6 +242,99 @@ public class SwiftYandexMapkitPlugin: NSObject, FlutterPlugin, FlutterStreamHand
         let text: String
         let type: String
         let window: JsonBoundingBox
+        let sessionId: Int?
+        let seq: Int?
+        let debounce: Int?
+    }
+
+    /// Suggest requests of one search field.
+    ///
+    /// Each session has its own search manager, so sessions do not cancel each other.
+    /// Requests are debounced, requests older than the latest seen sequence number are dropped
+    /// and only the response to the latest request is delivered.
+    internal class SuggestSession {
+        let id: Int
+
+        private unowned let plugin: SwiftYandexMapkitPlugin
+        private var manager: YMKSearchManager?
+        private var latestSeq: Int = 0
+        private var generation: Int = 0
+        private var pendingRequest: DispatchWorkItem?
+
+        init(plugin: SwiftYandexMapkitPlugin, id: Int) {
+            self.plugin = plugin
+            self.id = id
+        }
+
+        func suggest(_ params: SuggestArguments) {
+            let seq = params.seq ?? 0
+
+            if seq < latestSeq {
+                return
+            }
+
+            cancel()
+            latestSeq = seq
+
+            let requestGeneration = generation
+            let request = DispatchWorkItem { [weak self] in
+                self?.pendingRequest = nil
+                self?.request(params, seq: seq, requestGeneration: requestGeneration)
+            }
+
+            pendingRequest = request
+
+            let debounce = params.debounce ?? 0
+
+            if debounce > 0 {
+                DispatchQueue.main.asyncAfter(deadline: .now() + .milliseconds(debounce), execute: request)
+            } else {
+                request.perform()
+            }
+        }
+
+        func cancel() {
+            generation += 1
+
+            pendingRequest?.cancel()
+            pendingRequest = nil
+            manager?.cancelSuggest()
+        }
+
+        private func request(_ params: SuggestArguments, seq: Int, requestGeneration: Int) {
+            let options: YMKSearchOptions = YMKSearchOptions()
+
+            if params.type == "biz" {
+                options.searchTypes = YMKSearchType.biz
+            } else if params.type == "geo" {
+                options.searchTypes = YMKSearchType.geo
+            }
+
+            if manager == nil {
+                manager = YMKSearch.sharedInstance().createSearchManager(with: .online)
+            }
+
+            manager!.suggest(
+                withText: params.text,
+                window: params.window.toBoundingBox(),
+                searchOptions: options,
+                responseHandler: { [weak self] (items: [YMKSuggestItem]?, error: Error?) in
+                    DispatchQueue.main.async {
+                        self?.send(JsonSuggestResult(items: items, error: error), seq: seq, requestGeneration: requestGeneration)
+                    }
+                }
+            )
+        }
+
+        private func send(_ result: JsonSuggestResult, seq: Int, requestGeneration: Int) {
+            if requestGeneration == generation && plugin.eventSink != nil {
+                result.sessionId = id
+                result.seq = seq
+
+                let data = try! JSONEncoder().encode(result)
+                plugin.eventSink!(String(data: data, encoding: .utf8))
+            }
+        }
     }
 
     private func setApiKey(_ call: FlutterMethodCall) {
@@ -4,13 +4,15 @@ import UIKit
 import YandexMapKit
 
 public class YandexMapMarkerController: NSObject, YMKMapObjectTapListener, YMKMapObjectDragListener {
-    public let id: String
+    public let id: Int
     private let controller: YandexMapController
     
     private var mapObject: YMKPlacemarkMapObject
+    private var iconData: [String]?
     
     public required init(point: YMKPoint, controller: YandexMapController) {
-        self.id = UUID().uuidString
+        controller.lastMapObjectId += 1
+        self.id = controller.lastMapObjectId
 
         self.controller = controller
         
@@ -29,6 +31,12 @@ public class YandexMapMarkerController: NSObject, YMKMapObjectTapListener, YMKMa
     }
     
     public func setIcon(data: [String]) {
+        if (data == iconData) {
+            return
+        }
+
+        iconData = data
+
         let image: UIImage? = UIImage.fromFlutter(registrar: controller.registrar, data: data)
         
         if (image != nil) {
@@ -120,7 +128,9 @@ public class YandexMapController: NSObject, FlutterPlatformView {
     
     private let cameraPositionListener: CameraListener!
     
-    public var idToController : [String: YandexMapMarkerController]
+    public var idToController : [Int: YandexMapMarkerController]
+    public var lastMapObjectId = 0
+    public var idToPolygon : [Int: YMKPolygonMapObject] = [:]
     
     private var userLocationController: YandexMapUserLayerController?
 
@@ -133,7 +143,7 @@ public class YandexMapController: NSObject, FlutterPlatformView {
         self.cameraPositionListener = CameraListener(channel: methodChannel)
         self.registrar = registrar
         
-        idToController = [String: YandexMapMarkerController]()
+        idToController = [Int: YandexMapMarkerController]()
         
         super.init()
         self.mapView.mapWindow.map.addCameraListener(with: self.cameraPositionListener)
@@ -163,7 +173,35 @@ public class YandexMapController: NSObject, FlutterPlatformView {
             break;
             
         case "polygon#add":
-            addPolygon(call)
+            result(addPolygon(call))
+            break;
+        case "polygon#update":
+            let arguments = call.arguments as! [String: Any]
+
+            if let mapObject = idToPolygon[arguments["id"] as! Int] {
+                updatePolygon(mapObject, arguments)
+            }
+
+            result(nil)
+            break;
+        case "polygon#updateAll":
+            let arguments = call.arguments as! [String: Any]
+
+            for id in (arguments["ids"] as! FlutterStandardTypedData).toInts() {
+                if let mapObject = idToPolygon[id] {
+                    updatePolygon(mapObject, arguments)
+                }
+            }
+
+            result(nil)
+            break;
+        case "polygon#remove":
+            let arguments = call.arguments as! [String: Any]
+
+            if let mapObject = idToPolygon.removeValue(forKey: arguments["id"] as! Int) {
+                mapView.mapWindow.map.mapObjects.remove(with: mapObject)
+            }
+
             result(nil)
             break;
         case "marker#init":
@@ -173,9 +211,19 @@ public class YandexMapController: NSObject, FlutterPlatformView {
             updateMarker(call.arguments as! [String: Any])
             result(nil)
             break;
+        case "marker#addAll":
+            result(addMarkers(call))
+            break;
+        case "marker#updateAll":
+            updateMarkers(call)
+            result(nil)
+            break;
         case "marker#remove":
-            let id = call.arguments as! String
-            idToController[id]?.remove()
+            removeMarker(call)
+            result(nil)
+            break;
+        case "marker#removeAll":
+            removeMarkers(call)
             result(nil)
             break;
         default:
@@ -185,44 +233,151 @@ public class YandexMapController: NSObject, FlutterPlatformView {
     }
 
     private func move(_ call: FlutterMethodCall) {
-        let params: JsonCameraMoveParameters = try! call.fromJson(JsonCameraMoveParameters.self)
-        let position = params.position.toCameraPosition()
-        let animation = params.getAnimation()
+        var position: YMKCameraPosition
+        var animation: YMKAnimation?
+
+        if (call.arguments is String) {
+            let params: JsonCameraMoveParameters = try! call.fromJson(JsonCameraMoveParameters.self)
+            position = params.position.toCameraPosition()
+            animation = params.getAnimation()
+        } else {
+            let params = call.arguments as! [String: Any]
+            position = (params["position"] as! FlutterStandardTypedData).toCameraPosition()
+
+            if let animationParams = params["animation"] as? [String: Any] {
+                let smooth = animationParams["smooth"] as! Bool
+                let duration = animationParams["duration"] as! Int
+
+                animation = YMKAnimation(
+                    type: smooth ? YMKAnimationType.smooth : YMKAnimationType.linear,
+                    duration: Float(duration) / Float(1000)
+                )
+            }
+        }
 
         if (animation != nil) {
-            mapView.mapWindow.map.move(with: position, animationType: animation ?? YMKAnimation())
+            mapView.mapWindow.map.move(with: position, animationType: animation!)
         } else {
             mapView.mapWindow.map.move(with: position)
         }
     }
 
-    private func addPolygon(_ call: FlutterMethodCall) {
-        let polygon: JsonPolygon = try! call.fromJson(JsonPolygon.self)
-
+    private func addPolygon(_ call: FlutterMethodCall) -> Int {
         let mapObjects = mapView.mapWindow.map.mapObjects
-        let mapObject = mapObjects.addPolygon(with: polygon.getPolygon())
+        lastMapObjectId += 1
+        let id = lastMapObjectId
+
+        if (call.arguments is String) {
+            let polygon: JsonPolygon = try! call.fromJson(JsonPolygon.self)
+            let mapObject = mapObjects.addPolygon(with: polygon.getPolygon())
+
+            mapObject.fillColor = UIColor.fromInteger(polygon.fillColor)
+            mapObject.strokeColor = UIColor.fromInteger(polygon.strokeColor)
+            mapObject.strokeWidth = polygon.strokeWidth
+            mapObject.zIndex = polygon.zIndex
+            idToPolygon[id] = mapObject
+        } else {
+            let params = call.arguments as! [String: Any]
+            let mapObject = mapObjects.addPolygon(with: toPolygon(params))
+
+            updatePolygonStyle(mapObject, params)
+            idToPolygon[id] = mapObject
+        }
+
+        return id
+    }
+
+    private func toPolygon(_ params: [String: Any]) -> YMKPolygon {
+        var innerRings: [YMKLinearRing] = []
+
+        if let packedRings = params["innerRings"] as? [FlutterStandardTypedData] {
+            for packedRing in packedRings {
+                let points = packedRing.toPoints()
+
+                if !points.isEmpty {
+                    innerRings.append(YMKLinearRing(points: points))
+                }
+            }
+        } else if let innerPoints = (params["innerPoints"] as? FlutterStandardTypedData)?.toPoints(), !innerPoints.isEmpty {
+            innerRings.append(YMKLinearRing(points: innerPoints))
+        }
 
-        mapObject.fillColor = UIColor.fromInteger(polygon.fillColor)
-        mapObject.strokeColor = UIColor.fromInteger(polygon.strokeColor)
-        mapObject.strokeWidth = polygon.strokeWidth
-        mapObject.zIndex = polygon.zIndex
+        return YMKPolygon(
+            outerRing: YMKLinearRing(points: (params["outerPoints"] as! FlutterStandardTypedData).toPoints()),
+            innerRings: innerRings
+        )
     }
 
-     private func addMarker(_ call: FlutterMethodCall) -> String {
+    private func updatePolygon(_ mapObject: YMKPolygonMapObject, _ params: [String: Any]) {
+        if params["outerPoints"] is FlutterStandardTypedData {
+            mapObject.geometry = toPolygon(params)
+        }
+
+        updatePolygonStyle(mapObject, params)
+    }
+
+    private func updatePolygonStyle(_ mapObject: YMKPolygonMapObject, _ params: [String: Any]) {
+        if let fillColor = params["fillColor"] as? NSNumber {
+            mapObject.fillColor = UIColor.fromInteger(fillColor.intValue)
+        }
+
+        if let strokeColor = params["strokeColor"] as? NSNumber {
+            mapObject.strokeColor = UIColor.fromInteger(strokeColor.intValue)
+        }
+
+        if let strokeWidth = params["strokeWidth"] as? NSNumber {
+            mapObject.strokeWidth = strokeWidth.floatValue
+        }
+
+        if let zIndex = params["zIndex"] as? NSNumber {
+            mapObject.zIndex = zIndex.floatValue
+        }
+    }
+
+     private func addMarker(_ call: FlutterMethodCall) -> Int {
         let arguments = call.arguments as! [String: Any]
-        
-        let jsonString = arguments["point"] as! String;
-        let point: JsonPoint = try! JSONDecoder().decode(JsonPoint.self, from: jsonString.data(using: .utf8)!)
-    
-        let markerController = YandexMapMarkerController(point: point.toPoint(), controller: self)
+        var point: YMKPoint
+
+        if let packedPoint = arguments["point"] as? FlutterStandardTypedData {
+            point = packedPoint.toPoints()[0]
+        } else {
+            let jsonString = arguments["point"] as! String;
+            point = try! JSONDecoder().decode(JsonPoint.self, from: jsonString.data(using: .utf8)!).toPoint()
+        }
+
+        let markerController = YandexMapMarkerController(point: point, controller: self)
         
         updateMarkerWithController(markerController, arguments)
         
         return markerController.id
     }
     
+    private func addMarkers(_ call: FlutterMethodCall) -> FlutterStandardTypedData {
+        let arguments = call.arguments as! [String: Any]
+        var ids: [Int32] = []
+
+        for point in (arguments["points"] as! FlutterStandardTypedData).toPoints() {
+            let markerController = YandexMapMarkerController(point: point, controller: self)
+
+            updateMarkerWithController(markerController, arguments)
+            ids.append(Int32(markerController.id))
+        }
+
+        return FlutterStandardTypedData(int32: ids.withUnsafeBufferPointer { Data(buffer: $0) })
+    }
+
+    private func updateMarkers(_ call: FlutterMethodCall) {
+        let arguments = call.arguments as! [String: Any]
+
+        for id in (arguments["ids"] as! FlutterStandardTypedData).toInts() {
+            if let markerController = idToController[id] {
+                updateMarkerWithController(markerController, arguments)
+            }
+        }
+    }
+
     private func updateMarker(_ arguments: [String: Any]) {
-        let id = arguments["id"] as! String
+        let id = arguments["id"] as! Int
         
         let markerController = idToController[id]
         
@@ -236,7 +391,7 @@ public class YandexMapController: NSObject, FlutterPlatformView {
         let visible = arguments["visible"] as! Bool?
         let draggable = arguments["draggable"] as! Bool?
         let zIndex = arguments["zIndex"] as! Float?
-        let opacity = arguments["opacity"] as! Float?
+        let opacity = (arguments["alpha"] ?? arguments["opacity"]) as! Float?
                 
         if (icon != nil) {
             markerController.setIcon(data: icon!)
@@ -260,7 +415,8 @@ public class YandexMapController: NSObject, FlutterPlatformView {
     }
     
     private func removeMarker(_ call: FlutterMethodCall) {
-        let markerId = call.arguments as! String;
+        let arguments = call.arguments as! [String: Any]
+        let markerId = arguments["id"] as! Int
         
         let objectController = idToController[markerId]
         
@@ -269,6 +425,14 @@ public class YandexMapController: NSObject, FlutterPlatformView {
         }
     }
 
+    private func removeMarkers(_ call: FlutterMethodCall) {
+        let arguments = call.arguments as! [String: Any]
+
+        for id in (arguments["ids"] as! FlutterStandardTypedData).toInts() {
+            idToController[id]?.remove()
+        }
+    }
+
     internal class CameraListener: NSObject, YMKMapCameraListener {
         private let methodChannel: FlutterMethodChannel!
 
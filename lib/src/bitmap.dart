@@ -1,4 +1,5 @@
 import 'dart:typed_data';
+import 'dart:ui' show hashList, hashValues;
 
 import 'package:flutter/painting.dart';
 import 'package:flutter/services.dart';
@@ -92,4 +93,44 @@ class BitmapDescriptor {
   final dynamic _json;
 
   dynamic toMap() => _json;
+
+  /// Descriptors are equal when they describe the same image, so equal icons
+  /// created separately are decoded once.
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      other is BitmapDescriptor && _valueEquals(_json, other._json);
+
+  @override
+  int get hashCode => _valueHash(_json);
+
+  static bool _valueEquals(dynamic a, dynamic b) {
+    if (a is List && b is List) {
+      if (a.length != b.length) {
+        return false;
+      }
+
+      for (int i = 0; i < a.length; i++) {
+        if (!_valueEquals(a[i], b[i])) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    return a == b;
+  }
+
+  static int _valueHash(dynamic value) {
+    if (value is Uint8List) {
+      return hashValues(value.length, hashList(value.take(32)));
+    }
+
+    if (value is List) {
+      return hashList(value.map<int>(_valueHash));
+    }
+
+    return value.hashCode;
+  }
 }
@@ -4,6 +4,8 @@ import 'package:meta/meta.dart';
 import 'package:yandex_geometry/yandex_geometry.dart';
 import 'package:yandex_geometry/json_conversion.dart';
 
+import 'packed_conversion.dart';
+
 class MapAnimation {
   final Duration duration;
   final bool smooth;
@@ -40,6 +42,70 @@ class MapAnimation {
       );
 }
 
+/// Controls which camera position changes are sent from the native side.
+///
+/// Intermediate events are sent at most [maxEventsPerSecond] times per second
+/// and only when the camera moved by at least one of the thresholds since the
+/// last sent event. Finished events are always sent unless the camera settled
+/// within the thresholds of the previous finished event.
+@immutable
+class CameraEventFilter {
+  /// Send only events with `finished == true`.
+  final bool finishedOnly;
+
+  /// 0 means no limit.
+  final int maxEventsPerSecond;
+
+  final double minZoomDelta;
+
+  /// Minimal target movement in meters.
+  final double minTargetDelta;
+
+  /// Minimal azimuth change in degrees.
+  final double minAzimuthDelta;
+
+  const CameraEventFilter({
+    this.finishedOnly = false,
+    this.maxEventsPerSecond = 0,
+    this.minZoomDelta = 0,
+    this.minTargetDelta = 0,
+    this.minAzimuthDelta = 0,
+  });
+
+  Map toMap() {
+    return {
+      "mode": finishedOnly ? "finished" : "all",
+      "maxEventsPerSecond": maxEventsPerSecond,
+      "minZoomDelta": minZoomDelta,
+      "minTargetDelta": minTargetDelta,
+      "minAzimuthDelta": minAzimuthDelta,
+    };
+  }
+
+  @override
+  String toString() =>
+      'CameraEventFilter{finishedOnly: $finishedOnly, maxEventsPerSecond: $maxEventsPerSecond, minZoomDelta: $minZoomDelta, minTargetDelta: $minTargetDelta, minAzimuthDelta: $minAzimuthDelta}';
+
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      other is CameraEventFilter &&
+          runtimeType == other.runtimeType &&
+          finishedOnly == other.finishedOnly &&
+          maxEventsPerSecond == other.maxEventsPerSecond &&
+          minZoomDelta == other.minZoomDelta &&
+          minTargetDelta == other.minTargetDelta &&
+          minAzimuthDelta == other.minAzimuthDelta;
+
+  @override
+  int get hashCode =>
+      finishedOnly.hashCode ^
+      maxEventsPerSecond.hashCode ^
+      minZoomDelta.hashCode ^
+      minTargetDelta.hashCode ^
+      minAzimuthDelta.hashCode;
+}
+
 @immutable
 class SuggestItem {
   final SuggestItemType type;
@@ -149,10 +215,18 @@ class SuggestResult {
   final String error;
   final List<SuggestItem> items;
 
+  /// Session the result belongs to, 0 for [YandexSuggestController.sharedInstance].
+  final int sessionId;
+
+  /// Sequence number of the request the result answers.
+  final int seq;
+
   SuggestResult({
     this.isError = false,
     this.error,
     this.items,
+    this.sessionId = 0,
+    this.seq = 0,
   });
 
   factory SuggestResult.fromMap(Map map) => SuggestResult(
@@ -160,6 +234,8 @@ class SuggestResult {
         error: stringFromJson(map, 'error'),
         items: collectionFromJson<SuggestItem, Map>(
             map, 'items', (Map map) => SuggestItem.fromMap(map)),
+        sessionId: (map['sessionId'] as num)?.toInt() ?? 0,
+        seq: (map['seq'] as num)?.toInt() ?? 0,
       );
 
   factory SuggestResult.fromString(String string) {
@@ -186,7 +262,8 @@ class SuggestResult {
 
   @override
   String toString() =>
-      'SuggestResult{isError: $isError, error: $error, items: $items}';
+      'SuggestResult{isError: $isError, error: $error, items: $items, '
+      'sessionId: $sessionId, seq: $seq}';
 
   @override
   bool operator ==(Object other) =>
@@ -195,10 +272,228 @@ class SuggestResult {
           runtimeType == other.runtimeType &&
           isError == other.isError &&
           error == other.error &&
-          items == other.items;
+          items == other.items &&
+          sessionId == other.sessionId &&
+          seq == other.seq;
+
+  @override
+  int get hashCode =>
+      isError.hashCode ^
+      error.hashCode ^
+      items.hashCode ^
+      sessionId.hashCode ^
+      seq.hashCode;
+}
+
+@immutable
+class IconCacheStats {
+  final int hits;
+  final int misses;
+  final int evictions;
+
+  /// Bytes of decoded bitmaps currently held by the cache.
+  final int size;
+
+  /// Byte budget of the cache.
+  final int maxSize;
+
+  IconCacheStats({
+    @required this.hits,
+    @required this.misses,
+    @required this.evictions,
+    @required this.size,
+    @required this.maxSize,
+  });
+
+  factory IconCacheStats.fromMap(Map map) => IconCacheStats(
+        hits: map['hits'] as int,
+        misses: map['misses'] as int,
+        evictions: map['evictions'] as int,
+        size: map['size'] as int,
+        maxSize: map['maxSize'] as int,
+      );
+
+  @override
+  String toString() =>
+      'IconCacheStats{hits: $hits, misses: $misses, evictions: $evictions, size: $size, maxSize: $maxSize}';
+
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      other is IconCacheStats &&
+          runtimeType == other.runtimeType &&
+          hits == other.hits &&
+          misses == other.misses &&
+          evictions == other.evictions &&
+          size == other.size &&
+          maxSize == other.maxSize;
+
+  @override
+  int get hashCode =>
+      hits.hashCode ^
+      misses.hashCode ^
+      evictions.hashCode ^
+      size.hashCode ^
+      maxSize.hashCode;
+}
+
+/// Histogram of values recorded natively. Percentiles are upper bounds of
+/// power of two buckets, so they may exceed the real ones up to twice.
+class MetricsHistogram {
+  final int count;
+  final int sum;
+  final int max;
+  final int p50;
+  final int p90;
+  final int p99;
+
+  MetricsHistogram({
+    @required this.count,
+    @required this.sum,
+    @required this.max,
+    @required this.p50,
+    @required this.p90,
+    @required this.p99,
+  });
+
+  factory MetricsHistogram.fromMap(Map map) => MetricsHistogram(
+        count: map['count'] as int,
+        sum: map['sum'] as int,
+        max: map['max'] as int,
+        p50: map['p50'] as int,
+        p90: map['p90'] as int,
+        p99: map['p99'] as int,
+      );
 
   @override
-  int get hashCode => isError.hashCode ^ error.hashCode ^ items.hashCode;
+  String toString() =>
+      'MetricsHistogram{count: $count, sum: $sum, max: $max, p50: $p50, p90: $p90, p99: $p99}';
+}
+
+/// Metrics of one channel method.
+class MethodMetrics {
+  final int count;
+
+  /// Nanoseconds spent reading arguments off the main thread.
+  final MetricsHistogram decode;
+
+  /// Nanoseconds spent on the main thread.
+  final MetricsHistogram apply;
+
+  /// Estimated argument sizes in bytes.
+  final MetricsHistogram payload;
+
+  MethodMetrics({
+    @required this.count,
+    @required this.decode,
+    @required this.apply,
+    @required this.payload,
+  });
+
+  factory MethodMetrics.fromMap(Map map) => MethodMetrics(
+        count: map['count'] as int,
+        decode: MetricsHistogram.fromMap(map['decode']),
+        apply: MetricsHistogram.fromMap(map['apply']),
+        payload: MetricsHistogram.fromMap(map['payload']),
+      );
+
+  @override
+  String toString() =>
+      'MethodMetrics{count: $count, decode: $decode, apply: $apply, payload: $payload}';
+}
+
+class MetricsSnapshot {
+  /// Time since the plugin was loaded, to compute rates between snapshots.
+  final Duration uptime;
+
+  final bool enabled;
+
+  /// Metrics of channel methods by method name.
+  final Map<String, MethodMetrics> methods;
+
+  /// Number of events sent to Dart by event name.
+  final Map<String, int> events;
+
+  /// Nanoseconds spent decoding marker icons.
+  final MetricsHistogram iconDecode;
+
+  /// Number of live markers, polygons and polylines over all maps.
+  final Map<String, int> objects;
+
+  MetricsSnapshot({
+    @required this.uptime,
+    @required this.enabled,
+    @required this.methods,
+    @required this.events,
+    @required this.iconDecode,
+    @required this.objects,
+  });
+
+  factory MetricsSnapshot.fromMap(Map map) => MetricsSnapshot(
+        uptime: Duration(milliseconds: map['uptime'] as int),
+        enabled: map['enabled'] as bool,
+        methods: (map['methods'] as Map).map<String, MethodMetrics>(
+            (dynamic key, dynamic value) =>
+                MapEntry(key as String, MethodMetrics.fromMap(value))),
+        events: Map<String, int>.from(map['events']),
+        iconDecode: MetricsHistogram.fromMap(map['iconDecode']),
+        objects: Map<String, int>.from(map['objects']),
+      );
+
+  @override
+  String toString() =>
+      'MetricsSnapshot{uptime: $uptime, enabled: $enabled, methods: $methods, events: $events, iconDecode: $iconDecode, objects: $objects}';
+}
+
+/// Object found by [YandexSearchController].
+@immutable
+class SearchItem {
+  final String name;
+  final String description;
+
+  /// Null for objects without a point geometry.
+  final Point point;
+
+  SearchItem({@required this.name, this.description, this.point});
+
+  factory SearchItem.fromMap(Map map) => SearchItem(
+        name: map['name'],
+        description: map['description'],
+        point: map['point'] != null ? unpackPoint(map['point']) : null,
+      );
+
+  @override
+  String toString() =>
+      'SearchItem{name: $name, description: $description, point: $point}';
+}
+
+/// Result of one request of [YandexSearchController].
+@immutable
+class SearchResult {
+  /// Position of the request in its batch.
+  final int index;
+  final List<SearchItem> items;
+
+  /// Set when the request failed or was cancelled, then [items] is empty.
+  final String error;
+
+  SearchResult({@required this.index, this.items = const [], this.error});
+
+  factory SearchResult.fromMap(Map map) => SearchResult(
+        index: map['index'] ?? 0,
+        items: map['items'] != null
+            ? (map['items'] as List)
+                .map<SearchItem>((dynamic item) => SearchItem.fromMap(item))
+                .toList(growable: false)
+            : const [],
+        error: map['error'],
+      );
+
+  bool get isError => error != null;
+
+  @override
+  String toString() =>
+      'SearchResult{index: $index, items: $items, error: $error}';
 }
 
 enum SuggestItemAction { Search, Substitute }
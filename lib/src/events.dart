@@ -1,10 +1,13 @@
 import 'dart:convert';
+import 'dart:typed_data';
 
 import 'package:flutter/foundation.dart';
 import 'package:yandex_geometry/yandex_geometry.dart';
 
+import 'packed_conversion.dart';
+
 class MapObjectEvent {
-  final String id;
+  final int id;
 
   MapObjectEvent({
     @required this.id,
@@ -17,10 +20,15 @@ class MapObjectEvent {
   factory MapObjectEvent.fromMap(Map map) => MapObjectEvent(
         id: map['id'],
       );
+
+  /// Reads a bare marker id or the legacy JSON string representation.
+  factory MapObjectEvent.fromArguments(dynamic arguments) => arguments is int
+      ? MapObjectEvent(id: arguments)
+      : MapObjectEvent.fromString(arguments);
 }
 
 class MapObjectEventWithPoint {
-  final String id;
+  final int id;
   final Point point;
 
   MapObjectEventWithPoint({
@@ -35,6 +43,34 @@ class MapObjectEventWithPoint {
 
   factory MapObjectEventWithPoint.fromMap(Map map) => MapObjectEventWithPoint(
       id: map['id'], point: Point.fromMap(map['point']));
+
+  factory MapObjectEventWithPoint.fromPacked(Map map) =>
+      MapObjectEventWithPoint(id: map['id'], point: unpackPoint(map['point']));
+
+  /// Reads either the packed map or the legacy JSON string representation.
+  factory MapObjectEventWithPoint.fromArguments(dynamic arguments) =>
+      arguments is String
+          ? MapObjectEventWithPoint.fromString(arguments)
+          : MapObjectEventWithPoint.fromPacked(arguments);
+}
+
+class ClusterTapEvent {
+  /// Ids of the markers in the tapped cluster.
+  final List<int> ids;
+  final Point point;
+
+  ClusterTapEvent({
+    @required this.ids,
+    @required this.point,
+  });
+
+  factory ClusterTapEvent.fromPacked(Map map) => ClusterTapEvent(
+        ids: map['ids'] as Int32List,
+        point: unpackPoint(map['point']),
+      );
+
+  @override
+  String toString() => 'ClusterTapEvent{ids: $ids, point: $point}';
 }
 
 class CameraPositionEvent {
@@ -66,4 +102,63 @@ class CameraPositionEvent {
   factory CameraPositionEvent.fromMap(Map map) => CameraPositionEvent(
       position: Position.fromMap(map['position']),
       finished: map['finished'] as bool);
+
+  factory CameraPositionEvent.fromPacked(Map map) => CameraPositionEvent(
+      position: unpackPosition(map['position']),
+      finished: map['finished'] as bool);
+
+  /// Reads either the packed map or the legacy JSON string representation.
+  factory CameraPositionEvent.fromArguments(dynamic arguments) =>
+      arguments is String
+          ? CameraPositionEvent.fromString(arguments)
+          : CameraPositionEvent.fromPacked(arguments);
+}
+
+/// Progress of [YandexMapController.loadGeoJson].
+class LayerLoadProgress {
+  final int bytesRead;
+
+  /// Size of the file in bytes.
+  final int totalBytes;
+
+  /// Number of markers and polygons added so far.
+  final int markers;
+  final int polygons;
+
+  /// Number of geometries of unsupported types.
+  final int skipped;
+
+  final bool done;
+
+  /// Set when reading failed, objects added before the failure stay on the
+  /// map.
+  final String error;
+
+  LayerLoadProgress({
+    this.bytesRead,
+    this.totalBytes,
+    this.markers,
+    this.polygons,
+    this.skipped,
+    this.done,
+    this.error,
+  });
+
+  double get fraction => totalBytes > 0 ? bytesRead / totalBytes : 0;
+
+  @override
+  String toString() =>
+      'LayerLoadProgress{bytesRead: $bytesRead, totalBytes: $totalBytes, '
+      'markers: $markers, polygons: $polygons, skipped: $skipped, '
+      'done: $done, error: $error}';
+
+  factory LayerLoadProgress.fromMap(Map map) => LayerLoadProgress(
+        bytesRead: map['bytesRead'],
+        totalBytes: map['totalBytes'],
+        markers: map['markers'],
+        polygons: map['polygons'],
+        skipped: map['skipped'],
+        done: map['done'] as bool,
+        error: map['error'],
+      );
 }
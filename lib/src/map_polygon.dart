@@ -0,0 +1,73 @@
+import 'package:flutter/material.dart';
+import 'package:yandex_geometry/yandex_geometry.dart';
+
+@immutable
+class MapPolygonId {
+  MapPolygonId(this.value) : assert(value != null);
+
+  final String value;
+
+  @override
+  bool operator ==(Object other) {
+    if (identical(this, other)) return true;
+    if (other.runtimeType != runtimeType) return false;
+    final MapPolygonId typedOther = other;
+    return value == typedOther.value;
+  }
+
+  @override
+  int get hashCode => value.hashCode;
+
+  @override
+  String toString() {
+    return 'MapPolygonId{value: $value}';
+  }
+}
+
+/// Desired state of a polygon for [YandexMapController.syncMapObjects].
+@immutable
+class MapPolygon {
+  final MapPolygonId polygonId;
+
+  final List<Point> outerPoints;
+
+  final List<List<Point>> innerRings;
+
+  final Color fillColor;
+
+  final Color strokeColor;
+
+  final double strokeWidth;
+
+  final double zIndex;
+
+  /// See [YandexMapController.addPolygon].
+  final double simplifyTolerance;
+
+  MapPolygon({
+    @required this.polygonId,
+    @required this.outerPoints,
+    this.innerRings = const <List<Point>>[],
+    this.fillColor = const Color(0x00000000),
+    this.strokeColor = const Color(0xFF000000),
+    this.strokeWidth = 1,
+    this.zIndex = 0,
+    this.simplifyTolerance,
+  })  : assert(polygonId != null),
+        assert(outerPoints != null);
+
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      other is MapPolygon &&
+          runtimeType == other.runtimeType &&
+          polygonId == other.polygonId;
+
+  @override
+  int get hashCode => polygonId.hashCode;
+
+  @override
+  String toString() {
+    return 'MapPolygon{polygonId: $polygonId, fillColor: $fillColor, strokeColor: $strokeColor, strokeWidth: $strokeWidth, zIndex: $zIndex}';
+  }
+}
@@ -85,3 +85,50 @@ class MarkerUpdate {
     return 'MarkerUpdate{alpha: $alpha, icon: $icon, zIndex: $zIndex, draggable: $draggable, visible: $visible, onTap: $onTap}';
   }
 }
+
+/// Desired state of a marker for [YandexMapController.syncMapObjects].
+@immutable
+class Marker {
+  final MarkerId markerId;
+
+  final Point point;
+
+  final double alpha;
+
+  final BitmapDescriptor icon;
+
+  final double zIndex;
+
+  final bool draggable;
+
+  final bool visible;
+
+  final MarkerOnTapHandler onTap;
+
+  Marker({
+    @required this.markerId,
+    @required this.point,
+    this.alpha = 1.0,
+    this.icon = BitmapDescriptor.defaultMarker,
+    this.zIndex = 1,
+    this.draggable = false,
+    this.visible = true,
+    this.onTap,
+  })  : assert(markerId != null),
+        assert(point != null);
+
+  @override
+  bool operator ==(Object other) =>
+      identical(this, other) ||
+      other is Marker &&
+          runtimeType == other.runtimeType &&
+          markerId == other.markerId;
+
+  @override
+  int get hashCode => markerId.hashCode;
+
+  @override
+  String toString() {
+    return 'Marker{markerId: $markerId, point: $point, alpha: $alpha, icon: $icon, zIndex: $zIndex, draggable: $draggable, visible: $visible}';
+  }
+}
@@ -0,0 +1,49 @@
+import 'dart:typed_data';
+
+import 'package:yandex_geometry/yandex_geometry.dart';
+
+/// Packs [points] as flat latitude/longitude pairs.
+Float64List packPoints(List<Point> points) {
+  Float64List coordinates = Float64List(points.length * 2);
+
+  for (int i = 0; i < points.length; i++) {
+    coordinates[i * 2] = points[i].latitude;
+    coordinates[i * 2 + 1] = points[i].longitude;
+  }
+
+  return coordinates;
+}
+
+Float64List packPoint(Point point) =>
+    Float64List.fromList(<double>[point.latitude, point.longitude]);
+
+List<Point> unpackPoints(Float64List coordinates) {
+  List<Point> points = List<Point>(coordinates.length ~/ 2);
+
+  for (int i = 0; i < points.length; i++) {
+    points[i] = unpackPoint(coordinates, i * 2);
+  }
+
+  return points;
+}
+
+Point unpackPoint(Float64List coordinates, [int offset = 0]) => Point(
+      latitude: coordinates[offset],
+      longitude: coordinates[offset + 1],
+    );
+
+/// Packs [position] as latitude, longitude, zoom, azimuth and tilt.
+Float64List packPosition(Position position) => Float64List.fromList(<double>[
+      position.target.latitude,
+      position.target.longitude,
+      position.zoom,
+      position.azimuth,
+      position.tilt,
+    ]);
+
+Position unpackPosition(Float64List values) => Position(
+      target: unpackPoint(values),
+      zoom: values[2],
+      azimuth: values[3],
+      tilt: values[4],
+    );
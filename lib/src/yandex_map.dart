@@ -2,6 +2,8 @@ import 'package:flutter/foundation.dart';
 import 'package:flutter/gestures.dart';
 import 'package:flutter/material.dart';
 
+import 'map_polygon.dart';
+import 'marker.dart';
 import 'yandex_map_controller.dart';
 
 class YandexMap extends StatefulWidget {
@@ -9,7 +11,14 @@ class YandexMap extends StatefulWidget {
 
   final Function(YandexMapController) onCreated;
 
-  const YandexMap({Key key, this.onCreated}) : super(key: key);
+  /// Map objects applied with [YandexMapController.syncMapObjects] on every
+  /// rebuild when [markers] or [polygons] is set.
+  final Set<Marker> markers;
+
+  final Set<MapPolygon> polygons;
+
+  const YandexMap({Key key, this.onCreated, this.markers, this.polygons})
+      : super(key: key);
 
   @override
   _YandexMapState createState() => _YandexMapState();
@@ -39,12 +48,33 @@ class _YandexMapState extends State<YandexMap> {
     }
   }
 
+  @override
+  void didUpdateWidget(YandexMap oldWidget) {
+    super.didUpdateWidget(oldWidget);
+
+    _syncMapObjects();
+  }
+
   void _onPlatformViewCreated(int viewId) {
     _controller = YandexMapController.fromViewId(viewId);
 
+    _syncMapObjects();
+
     widget?.onCreated(_controller);
   }
 
+  void _syncMapObjects() {
+    if (_controller == null ||
+        (widget.markers == null && widget.polygons == null)) {
+      return;
+    }
+
+    _controller.syncMapObjects(
+      markers: widget.markers ?? const <Marker>{},
+      polygons: widget.polygons ?? const <MapPolygon>{},
+    );
+  }
+
   @override
   void dispose() {
     _controller?.dispose();
@@ -1,11 +1,12 @@
 import 'dart:async';
-import 'dart:convert';
+import 'dart:typed_data';
 
 import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
 import 'package:flutter/widgets.dart';
 import 'package:yandex_geometry/yandex_geometry.dart';
 import 'package:yandex_mapkit/src/events.dart';
+import 'package:yandex_mapkit/src/packed_conversion.dart';
 import 'package:yandex_mapkit/yandex_mapkit.dart';
 
 typedef MarkerOnTapHandler = void Function(Point point);
@@ -18,7 +19,7 @@ _kDefaultOnTap(Point point) {}
 _kDefaultOnDrag() {}
 
 class YandexMapMarkerController {
-  final String _id;
+  final int _id;
   final YandexMapController _controller;
 
   MarkerOnTapHandler _onTap = _kDefaultOnTap;
@@ -28,6 +29,9 @@ class YandexMapMarkerController {
 
   YandexMapMarkerController._(this._controller, this._id);
 
+  /// Native id of the marker, as returned by marker queries.
+  int get id => _id;
+
   void setOnTap(MarkerOnTapHandler callback) {
     _onTap = callback;
   }
@@ -52,7 +56,135 @@ class YandexMapMarkerController {
   }
 
   Future remove() {
-    return _controller._channel.invokeMethod('marker#remove', _id);
+    _controller.idToController.remove(_id);
+
+    return _controller._channel.invokeMethod('marker#remove', {'id': _id});
+  }
+}
+
+/// Reported position of a vehicle shown by [marker], see
+/// [YandexMapController.updateFleet].
+class FleetPosition {
+  final YandexMapMarkerController marker;
+  final Point point;
+
+  /// Heading in degrees clockwise from north, or null if unknown.
+  final double heading;
+
+  final DateTime timestamp;
+
+  FleetPosition({
+    @required this.marker,
+    @required this.point,
+    this.heading,
+    @required this.timestamp,
+  })  : assert(marker != null),
+        assert(point != null),
+        assert(timestamp != null);
+}
+
+class YandexMapPolygonController {
+  final int _id;
+  final YandexMapController _controller;
+
+  YandexMapPolygonController._(this._controller, this._id);
+
+  /// Native id of the polygon, as returned by [YandexMapController.polygonsAt].
+  int get id => _id;
+
+  /// Changes only the passed properties. The geometry is replaced when
+  /// [outerPoints] is passed, together with the holes given in [innerRings].
+  Future<void> update({
+    List<Point> outerPoints,
+    List<List<Point>> innerRings,
+    Color fillColor,
+    Color strokeColor,
+    double strokeWidth,
+    double zIndex,
+  }) {
+    assert(innerRings == null || outerPoints != null);
+
+    return _controller._channel.invokeMethod('polygon#update', {
+      'id': _id,
+      'outerPoints': outerPoints != null ? packPoints(outerPoints) : null,
+      'innerRings': outerPoints != null
+          ? (innerRings ?? const <List<Point>>[]).map(packPoints).toList()
+          : null,
+      'fillColor': fillColor?.value,
+      'strokeColor': strokeColor?.value,
+      'strokeWidth': strokeWidth,
+      'zIndex': zIndex,
+    });
+  }
+
+  Future<void> remove() {
+    return _controller._channel.invokeMethod('polygon#remove', {'id': _id});
+  }
+}
+
+/// Polyline whose points are kept natively, see
+/// [YandexMapController.addPolyline].
+class YandexMapPolylineController {
+  final int _id;
+  final YandexMapController _controller;
+
+  YandexMapPolylineController._(this._controller, this._id);
+
+  /// Adds [points] to the end of the polyline. Only the new points are sent.
+  Future<void> append(List<Point> points) {
+    return _controller._channel.invokeMethod('polyline#append', {
+      'id': _id,
+      'points': packPoints(points),
+    });
+  }
+
+  /// Changes only the passed properties.
+  Future<void> update({
+    Color strokeColor,
+    double strokeWidth,
+    double zIndex,
+  }) {
+    return _controller._channel.invokeMethod('polyline#update', {
+      'id': _id,
+      'strokeColor': strokeColor?.value,
+      'strokeWidth': strokeWidth,
+      'zIndex': zIndex,
+    });
+  }
+
+  Future<void> remove() {
+    return _controller._channel.invokeMethod('polyline#remove', {'id': _id});
+  }
+}
+
+/// Markers and polygons loaded from GeoJSON, see
+/// [YandexMapController.loadGeoJson].
+class YandexMapLayerController {
+  final int _id;
+  final YandexMapController _controller;
+  final StreamController<LayerLoadProgress> _progressController =
+      StreamController<LayerLoadProgress>();
+
+  YandexMapLayerController._(this._controller, this._id);
+
+  /// Progress sent after every batch of added objects. The stream ends after
+  /// the event with [LayerLoadProgress.done] set.
+  Stream<LayerLoadProgress> get progress => _progressController.stream;
+
+  /// Stops loading and removes every object of the layer.
+  Future<void> remove() {
+    _controller._layers.remove(_id);
+    _progressController.close();
+
+    return _controller._channel.invokeMethod('layer#remove', {'id': _id});
+  }
+
+  void _onProgress(LayerLoadProgress progress) {
+    _progressController.add(progress);
+
+    if (progress.done) {
+      _progressController.close();
+    }
   }
 }
 
@@ -65,12 +197,17 @@ class YandexMapController {
   Stream<CameraPositionEvent> get onCameraPositionChanged =>
       _cameraPositionController.stream;
 
+  final _clusterTapController = StreamController<ClusterTapEvent>.broadcast();
+
+  Stream<ClusterTapEvent> get onClusterTap => _clusterTapController.stream;
+
   YandexMapController(MethodChannel channel) : _channel = channel {
     _channel.setMethodCallHandler(_handleMethodCall);
   }
 
   dispose() {
     _cameraPositionController.close();
+    _clusterTapController.close();
   }
 
   factory YandexMapController.fromViewId(int id) => YandexMapController(
@@ -83,54 +220,439 @@ class YandexMapController {
   }) {
     return _channel.invokeMethod(
       'move',
-      json.encode({
-        'position': position.toMap(),
-        'animation': animation.toMap(),
-      }),
+      {
+        'position': packPosition(position),
+        'animation': animation?.toMap(),
+      },
     );
   }
 
+  /// Limits [onCameraPositionChanged] events. Filtering is done natively so
+  /// dropped events never cross the channel.
+  Future<void> setCameraEventFilter(CameraEventFilter filter) {
+    return _channel.invokeMethod('camera#setEventFilter', filter.toMap());
+  }
+
+  /// Keeps only markers near the visible region as native map objects.
+  ///
+  /// Markers inside the visible region extended by [margin] (a fraction of
+  /// the visible span on each side) are shown, the rest are kept natively in
+  /// a spatial index and shown once the camera gets close to them.
+  Future<void> setMarkerVirtualization({
+    @required bool enabled,
+    double margin = 0.5,
+  }) {
+    return _channel.invokeMethod('markers#setVirtualization', {
+      'enabled': enabled,
+      'margin': margin,
+    });
+  }
+
+  /// Groups markers that are closer than [cellSize] logical pixels into
+  /// cluster badges.
+  ///
+  /// Groups smaller than [minClusterSize] are shown as ordinary markers.
+  /// Taps on clusters are reported through [onClusterTap].
+  Future<void> setMarkerClustering({
+    @required bool enabled,
+    int cellSize = 64,
+    int minClusterSize = 2,
+  }) {
+    return _channel.invokeMethod('markers#setClustering', {
+      'enabled': enabled,
+      'cellSize': cellSize,
+      'minClusterSize': minClusterSize,
+    });
+  }
+
   Future<void> showUserLocation(BitmapDescriptor icon) {
     return _channel.invokeMethod('showUserLocation', icon.toMap());
   }
 
-  Map<String, YandexMapMarkerController> idToController = {};
+  Map<int, YandexMapMarkerController> idToController = {};
 
   Future<YandexMapMarkerController> addMarker(Point point,
       [MarkerUpdate marker]) async {
     Map<String, dynamic> map = marker.toMap();
-    map['point'] = jsonEncode(point.toMap());
+    map['point'] = packPoint(point);
 
-    String markerId = await _channel.invokeMethod('marker#init', map);
+    int markerId = await _channel.invokeMethod('marker#init', map);
 
     idToController[markerId] = YandexMapMarkerController._(this, markerId);
 
     return idToController[markerId];
   }
 
-  Future<void> addPolygon({
+  /// Adds a placemark for every point in [points] with a single channel call.
+  ///
+  /// All placemarks share the properties of [marker].
+  Future<List<YandexMapMarkerController>> addMarkers(List<Point> points,
+      [MarkerUpdate marker]) async {
+    Map<String, dynamic> map = marker?.toMap() ?? <String, dynamic>{};
+    map['points'] = packPoints(points);
+
+    Int32List markerIds = await _channel.invokeMethod('marker#addAll', map);
+
+    return markerIds.map<YandexMapMarkerController>((int markerId) {
+      return idToController[markerId] =
+          YandexMapMarkerController._(this, markerId);
+    }).toList();
+  }
+
+  /// Applies [parameters] to every marker in [markers] with a single channel
+  /// call.
+  Future<void> updateMarkers(
+      List<YandexMapMarkerController> markers, MarkerUpdate parameters) {
+    Map<String, dynamic> map = parameters.toMap();
+    map['ids'] = _markerIds(markers);
+
+    return _channel.invokeMethod('marker#updateAll', map);
+  }
+
+  /// Removes every marker in [markers] with a single channel call.
+  Future<void> removeMarkers(List<YandexMapMarkerController> markers) {
+    Int32List ids = _markerIds(markers);
+
+    ids.forEach(idToController.remove);
+
+    return _channel.invokeMethod('marker#removeAll', {'ids': ids});
+  }
+
+  /// Moves markers to reported vehicle positions with a single channel call.
+  ///
+  /// Android interpolates every marker from its shown position and heading
+  /// to the reported ones at the display frame rate. An interpolation lasts
+  /// as long as the time between the marker's last two reports, at most
+  /// [maxDuration]. Reports older than the last one of a marker are ignored.
+  /// Markers with a heading get rotating icons.
+  Future<void> updateFleet(
+    List<FleetPosition> positions, {
+    Duration maxDuration,
+  }) {
+    Int32List ids = Int32List(positions.length);
+    Float64List values = Float64List(positions.length * 4);
+
+    for (int i = 0; i < positions.length; i++) {
+      FleetPosition position = positions[i];
+
+      ids[i] = position.marker._id;
+      values[i * 4] = position.point.latitude;
+      values[i * 4 + 1] = position.point.longitude;
+      values[i * 4 + 2] = position.heading ?? double.nan;
+      values[i * 4 + 3] =
+          position.timestamp.millisecondsSinceEpoch.toDouble();
+    }
+
+    return _channel.invokeMethod('fleet#update', {
+      'ids': ids,
+      'values': values,
+      'maxDuration': maxDuration?.inMilliseconds,
+    });
+  }
+
+  static Int32List _markerIds(List<YandexMapMarkerController> markers) {
+    Int32List ids = Int32List(markers.length);
+
+    for (int i = 0; i < markers.length; i++) {
+      ids[i] = markers[i]._id;
+    }
+
+    return ids;
+  }
+
+  /// Adds a polygon to the map.
+  ///
+  /// Holes are given either as a single ring in [innerPoints] or as any
+  /// number of rings in [innerRings].
+  ///
+  /// With [simplifyTolerance] set, simplified versions of the polygon are
+  /// precomputed natively in background and the one matching the current zoom
+  /// is shown, deviating from the real outline by at most [simplifyTolerance]
+  /// screen pixels. The polygon appears once they are ready. Android only.
+  Future<YandexMapPolygonController> addPolygon({
     @required List<Point> outerPoints,
-    @required List<Point> innerPoints,
+    List<Point> innerPoints,
+    List<List<Point>> innerRings,
     @required Color fillColor,
     @required Color strokeColor,
     @required double strokeWidth,
     @required double zIndex,
-  }) {
-    return _channel.invokeMethod(
+    double simplifyTolerance,
+  }) async {
+    assert(innerPoints == null || innerRings == null);
+    assert(simplifyTolerance == null || simplifyTolerance > 0);
+
+    int polygonId = await _channel.invokeMethod(
       "polygon#add",
-      json.encode({
-        "outerPoints": outerPoints
-            .map<Map>((Point point) => point.toMap())
-            .toList(growable: false),
-        "innerPoints": innerPoints
-            .map<Map>((Point point) => point.toMap())
-            .toList(growable: false),
+      {
+        "outerPoints": packPoints(outerPoints),
+        "innerPoints": packPoints(innerPoints ?? const <Point>[]),
+        "innerRings": innerRings?.map(packPoints)?.toList(),
         "fillColor": fillColor.value,
         "strokeColor": strokeColor.value,
         "strokeWidth": strokeWidth,
         "zIndex": zIndex,
-      }),
+        "simplifyTolerance": simplifyTolerance,
+      },
+    );
+
+    return YandexMapPolygonController._(this, polygonId);
+  }
+
+  /// Applies the given properties to every polygon in [polygons] with a
+  /// single channel call. Only the passed properties are changed.
+  Future<void> updatePolygons(
+    List<YandexMapPolygonController> polygons, {
+    Color fillColor,
+    Color strokeColor,
+    double strokeWidth,
+    double zIndex,
+  }) {
+    return _channel.invokeMethod('polygon#updateAll', {
+      'ids': Int32List.fromList(polygons
+          .map<int>((YandexMapPolygonController polygon) => polygon._id)
+          .toList(growable: false)),
+      'fillColor': fillColor?.value,
+      'strokeColor': strokeColor?.value,
+      'strokeWidth': strokeWidth,
+      'zIndex': zIndex,
+    });
+  }
+
+  /// Adds a polyline to the map, use [YandexMapPolylineController.append] to
+  /// extend it.
+  ///
+  /// With [maxPoints] set only the last [maxPoints] points are kept.
+  /// With [thinningThreshold] set, once the polyline has more points than
+  /// that, all but the newest half of them are simplified, starting with a
+  /// deviation of [thinningTolerance] meters and doubling it until the polyline
+  /// is down to three quarters of the threshold. Android only.
+  Future<YandexMapPolylineController> addPolyline({
+    List<Point> points = const <Point>[],
+    @required Color strokeColor,
+    @required double strokeWidth,
+    double zIndex = 0,
+    int maxPoints,
+    int thinningThreshold,
+    double thinningTolerance = 1,
+  }) async {
+    assert(maxPoints == null || maxPoints > 0);
+    assert(thinningThreshold == null || thinningThreshold > 1);
+
+    int polylineId = await _channel.invokeMethod('polyline#add', {
+      'points': packPoints(points),
+      'strokeColor': strokeColor.value,
+      'strokeWidth': strokeWidth,
+      'zIndex': zIndex,
+      'maxPoints': maxPoints ?? 0,
+      'thinningThreshold': thinningThreshold ?? 0,
+      'thinningTolerance': thinningTolerance,
+    });
+
+    return YandexMapPolylineController._(this, polylineId);
+  }
+
+  Map<int, YandexMapLayerController> _layers = {};
+
+  /// Adds the points and polygons of a GeoJSON file to the map.
+  ///
+  /// The file is either the Flutter asset [asset] or the file at [path]. It is
+  /// read natively in background and its objects are added in batches, so
+  /// memory use does not depend on the file size. Points get the properties
+  /// of [marker], polygons the given style. Line strings, feature properties
+  /// and altitudes are ignored. Android only.
+  Future<YandexMapLayerController> loadGeoJson({
+    String asset,
+    String path,
+    MarkerUpdate marker,
+    @required Color fillColor,
+    @required Color strokeColor,
+    double strokeWidth = 1,
+    double zIndex = 0,
+    double simplifyTolerance,
+  }) async {
+    assert((asset == null) != (path == null));
+    assert(simplifyTolerance == null || simplifyTolerance > 0);
+
+    int layerId = await _channel.invokeMethod('layer#loadGeoJson', {
+      'asset': asset,
+      'path': path,
+      'marker': marker?.toMap(),
+      'polygon': {
+        'fillColor': fillColor.value,
+        'strokeColor': strokeColor.value,
+        'strokeWidth': strokeWidth,
+        'zIndex': zIndex,
+        'simplifyTolerance': simplifyTolerance,
+      },
+    });
+
+    return _layers[layerId] = YandexMapLayerController._(this, layerId);
+  }
+
+  /// Native ids of markers inside the box from [southWest] to [northEast].
+  ///
+  /// Marker queries run natively against every marker, including markers
+  /// of GeoJSON layers and markers hidden by virtualization or clustering.
+  /// Ids are those of [YandexMapMarkerController.id] and [syncedMarker].
+  /// Large queries are split between the cores of the device. Android only.
+  Future<Int32List> markersInBox(Point southWest, Point northEast) {
+    return _channel.invokeMethod('query#markersInBox', {
+      'southWest': packPoint(southWest),
+      'northEast': packPoint(northEast),
+    });
+  }
+
+  /// Native ids of markers within [radius] meters of [point], see
+  /// [markersInBox].
+  Future<Int32List> markersInRadius(Point point, double radius) {
+    return _channel.invokeMethod('query#markersInRadius', {
+      'point': packPoint(point),
+      'radius': radius,
+    });
+  }
+
+  /// Native ids of markers inside [polygon] or inside the polygon given by
+  /// [outerPoints] and [innerRings], see [markersInBox].
+  Future<Int32List> markersInPolygon({
+    YandexMapPolygonController polygon,
+    List<Point> outerPoints,
+    List<List<Point>> innerRings,
+  }) {
+    assert((polygon == null) != (outerPoints == null));
+
+    return _channel.invokeMethod('query#markersInPolygon', {
+      'id': polygon?._id,
+      'outerPoints': outerPoints != null ? packPoints(outerPoints) : null,
+      'innerRings': innerRings?.map(packPoints)?.toList(),
+    });
+  }
+
+  /// Native ids of at most [count] markers nearest to [point], nearest
+  /// first, optionally only those within [maxDistance] meters. See
+  /// [markersInBox].
+  Future<Int32List> nearestMarkers(Point point, int count,
+      {double maxDistance}) {
+    return _channel.invokeMethod('query#nearestMarkers', {
+      'point': packPoint(point),
+      'count': count,
+      'maxDistance': maxDistance,
+    });
+  }
+
+  /// Native ids of polygons containing [point]. Android only.
+  Future<Int32List> polygonsAt(Point point) {
+    return _channel.invokeMethod('query#polygonsAtPoint', {
+      'point': packPoint(point),
+    });
+  }
+
+  /// Marker passed to [syncMapObjects] that has the native [id].
+  Marker syncedMarker(int id) => _syncedMarkers[id];
+
+  Map<MarkerId, int> _syncedMarkerIds = {};
+  Map<int, Marker> _syncedMarkers = {};
+  Map<MapPolygonId, int> _syncedPolygonIds = {};
+
+  /// Makes [markers] and [polygons] the full set of declaratively managed map
+  /// objects.
+  ///
+  /// Objects are matched by their ids. The native side compares the desired
+  /// state with what it shows and only adds, changes or removes objects that
+  /// differ, so unchanged objects cost no map updates. Objects added with
+  /// [addMarker] or [addPolygon] are not affected. Android only.
+  Future<void> syncMapObjects({
+    Set<Marker> markers = const <Marker>{},
+    Set<MapPolygon> polygons = const <MapPolygon>{},
+  }) async {
+    List<Marker> markerList = markers.toList(growable: false);
+    List<MapPolygon> polygonList = polygons.toList(growable: false);
+    Map<dynamic, dynamic> result = await _channel.invokeMethod(
+      'mapObjects#sync',
+      {
+        'markers': _packMarkers(markerList),
+        'polygons': polygonList.map(_polygonToMap).toList(growable: false),
+      },
     );
+    Map<dynamic, dynamic> newMarkerIds = result['markers'];
+    Map<dynamic, dynamic> newPolygonIds = result['polygons'];
+    Map<MarkerId, int> syncedMarkerIds = {};
+    Map<int, Marker> syncedMarkers = {};
+    Map<MapPolygonId, int> syncedPolygonIds = {};
+
+    for (Marker marker in markerList) {
+      int nativeId = newMarkerIds[marker.markerId.value] ??
+          _syncedMarkerIds[marker.markerId];
+
+      syncedMarkerIds[marker.markerId] = nativeId;
+      syncedMarkers[nativeId] = marker;
+    }
+
+    for (MapPolygon polygon in polygonList) {
+      syncedPolygonIds[polygon.polygonId] =
+          newPolygonIds[polygon.polygonId.value] ??
+              _syncedPolygonIds[polygon.polygonId];
+    }
+
+    _syncedMarkerIds = syncedMarkerIds;
+    _syncedMarkers = syncedMarkers;
+    _syncedPolygonIds = syncedPolygonIds;
+  }
+
+  /// Packs markers column by column, with icons deduplicated into a table.
+  static Map<String, dynamic> _packMarkers(List<Marker> markers) {
+    Map<BitmapDescriptor, int> iconIndexes = {};
+    List<dynamic> icons = [];
+    Float64List points = Float64List(markers.length * 2);
+    Float64List alphas = Float64List(markers.length);
+    Float64List zIndexes = Float64List(markers.length);
+    Int32List flags = Int32List(markers.length);
+    Int32List markerIcons = Int32List(markers.length);
+
+    for (int i = 0; i < markers.length; i++) {
+      Marker marker = markers[i];
+
+      points[i * 2] = marker.point.latitude;
+      points[i * 2 + 1] = marker.point.longitude;
+      alphas[i] = marker.alpha;
+      zIndexes[i] = marker.zIndex;
+      flags[i] = (marker.visible ? 1 : 0) | (marker.draggable ? 2 : 0);
+
+      if (marker.icon == null) {
+        markerIcons[i] = -1;
+      } else {
+        markerIcons[i] = iconIndexes.putIfAbsent(marker.icon, () {
+          icons.add(marker.icon.toMap());
+
+          return icons.length - 1;
+        });
+      }
+    }
+
+    return {
+      'ids': markers
+          .map<String>((Marker marker) => marker.markerId.value)
+          .toList(growable: false),
+      'points': points,
+      'alphas': alphas,
+      'zIndexes': zIndexes,
+      'flags': flags,
+      'icons': icons,
+      'iconIndexes': markerIcons,
+    };
+  }
+
+  static Map<String, dynamic> _polygonToMap(MapPolygon polygon) {
+    return {
+      'id': polygon.polygonId.value,
+      'outerPoints': packPoints(polygon.outerPoints),
+      'innerRings': polygon.innerRings.map(packPoints).toList(growable: false),
+      'fillColor': polygon.fillColor.value,
+      'strokeColor': polygon.strokeColor.value,
+      'strokeWidth': polygon.strokeWidth,
+      'zIndex': polygon.zIndex,
+      'simplifyTolerance': polygon.simplifyTolerance,
+    };
   }
 
   Future<void> _handleMethodCall(MethodCall call) async {
@@ -138,6 +660,9 @@ class YandexMapController {
       case 'onMapObjectTap':
         _onMapObjectTap(call.arguments);
         break;
+      case 'onMapObjectEvents':
+        _onMapObjectEvents(call.arguments);
+        break;
       case 'onMapObjectDrag':
         _onMapObjectDrag(call.arguments);
         break;
@@ -150,35 +675,92 @@ class YandexMapController {
       case 'onCameraPositionChanged':
         _onCameraPositionChanged(call.arguments);
         break;
+      case 'onClusterTap':
+        _clusterTapController.sink
+            .add(ClusterTapEvent.fromPacked(call.arguments));
+        break;
+      case 'onLayerProgress':
+        LayerLoadProgress progress =
+            LayerLoadProgress.fromMap(call.arguments);
+        YandexMapLayerController layer = progress.done
+            ? _layers.remove(call.arguments['id'])
+            : _layers[call.arguments['id']];
+
+        layer?._onProgress(progress);
+        break;
       default:
         throw MissingPluginException();
     }
   }
 
+  int _lastEventBatch = 0;
+
+  /// Fans out a batch of marker events collected natively during one frame.
+  void _onMapObjectEvents(dynamic arguments) {
+    int seq = arguments['seq'];
+
+    if (seq <= _lastEventBatch) {
+      return;
+    }
+
+    _lastEventBatch = seq;
+
+    Int32List types = arguments['types'];
+    Int32List ids = arguments['ids'];
+    Float64List points = arguments['points'];
+
+    for (int i = 0; i < types.length; i++) {
+      switch (types[i]) {
+        case 0:
+          _dispatchTap(ids[i], unpackPoint(points, i * 2));
+          break;
+        case 1:
+          idToController[ids[i]]?._onDragStart();
+          break;
+        case 2:
+          idToController[ids[i]]?._onDrag(unpackPoint(points, i * 2));
+          break;
+        case 3:
+          idToController[ids[i]]?._onDragEnd();
+          break;
+      }
+    }
+  }
+
+  void _dispatchTap(int id, Point point) {
+    idToController[id]?._onTap(point);
+
+    Marker marker = _syncedMarkers[id];
+
+    if (marker?.onTap != null) {
+      marker.onTap(point);
+    }
+  }
+
   void _onMapObjectTap(dynamic arguments) {
     MapObjectEventWithPoint event =
-        MapObjectEventWithPoint.fromString(arguments);
-    idToController[event.id]?._onTap(event.point);
+        MapObjectEventWithPoint.fromArguments(arguments);
+    _dispatchTap(event.id, event.point);
   }
 
   void _onMapObjectDrag(dynamic arguments) {
     MapObjectEventWithPoint event =
-        MapObjectEventWithPoint.fromString(arguments);
+        MapObjectEventWithPoint.fromArguments(arguments);
     idToController[event.id]?._onDrag(event.point);
   }
 
   void _onMapObjectDragEnd(dynamic arguments) {
-    MapObjectEvent event = MapObjectEvent.fromString(arguments);
-    idToController[event.id]?._onDragEnd;
+    MapObjectEvent event = MapObjectEvent.fromArguments(arguments);
+    idToController[event.id]?._onDragEnd();
   }
 
   void _onMapObjectDragStart(dynamic arguments) {
-    MapObjectEvent event = MapObjectEvent.fromString(arguments);
-    idToController[event.id]?._onDragStart;
+    MapObjectEvent event = MapObjectEvent.fromArguments(arguments);
+    idToController[event.id]?._onDragStart();
   }
 
-  void _onCameraPositionChanged(String arguments) {
+  void _onCameraPositionChanged(dynamic arguments) {
     _cameraPositionController.sink
-        .add(CameraPositionEvent.fromString(arguments));
+        .add(CameraPositionEvent.fromArguments(arguments));
   }
 }
@@ -8,9 +8,11 @@ import 'package:meta/meta.dart';
 import 'package:yandex_geometry/yandex_geometry.dart';
 
 import 'src/entities.dart';
+import 'src/packed_conversion.dart';
 
 export 'src/entities.dart';
 export 'src/events.dart';
+export 'src/map_polygon.dart';
 export 'src/marker.dart';
 export 'src/yandex_map.dart';
 export 'src/yandex_map_controller.dart';
@@ -25,6 +27,61 @@ class YandexMapkit {
   static Future<void> setup(String apiKey) async {
     await _channel.invokeMethod('setApiKey', apiKey);
   }
+
+  /// Limits the shared marker icon cache to [maxBytes] of decoded bitmaps.
+  ///
+  /// Cached icons are dropped, hit/miss/eviction counters are kept.
+  static Future<void> configureIconCache({@required int maxBytes}) async {
+    assert(maxBytes != null && maxBytes > 0);
+
+    await _channel.invokeMethod('iconCache#configure', {'maxBytes': maxBytes});
+  }
+
+  static Future<IconCacheStats> iconCacheStats() async {
+    return IconCacheStats.fromMap(
+        await _channel.invokeMethod('iconCache#stats'));
+  }
+
+  static final StreamController<MetricsSnapshot> _metricsController =
+      StreamController<MetricsSnapshot>.broadcast();
+
+  /// Snapshots sent every push interval given to [configureMetrics].
+  static Stream<MetricsSnapshot> get onMetrics => _metricsController.stream;
+
+  /// Enables or disables recording of channel calls, sent events and icon
+  /// decoding. With [pushInterval] set, snapshots are sent to [onMetrics].
+  /// Live map object counts are always kept. Android only.
+  static Future<void> configureMetrics({
+    bool enabled = true,
+    Duration pushInterval,
+  }) async {
+    _channel.setMethodCallHandler(_handleMethodCall);
+
+    await _channel.invokeMethod('metrics#configure', {
+      'enabled': enabled,
+      'pushInterval': pushInterval?.inMilliseconds,
+    });
+  }
+
+  static Future<MetricsSnapshot> metricsSnapshot() async {
+    return MetricsSnapshot.fromMap(
+        await _channel.invokeMethod('metrics#snapshot'));
+  }
+
+  /// Drops recorded metrics except live map object counts.
+  static Future<void> resetMetrics() async {
+    await _channel.invokeMethod('metrics#reset');
+  }
+
+  static Future<void> _handleMethodCall(MethodCall call) async {
+    switch (call.method) {
+      case 'onMetrics':
+        _metricsController.add(MetricsSnapshot.fromMap(call.arguments));
+        break;
+      default:
+        throw MissingPluginException();
+    }
+  }
 }
 
 class YandexSuggestController {
@@ -35,6 +92,7 @@ class YandexSuggestController {
   );
 
   Stream<SuggestResult> _onSuggestResult;
+  int _lastSessionId = 0;
 
   Stream<SuggestResult> get onSuggestResult {
     if (_onSuggestResult == null) {
@@ -61,6 +119,24 @@ class YandexSuggestController {
     assert(text != null);
     assert(window != null);
 
+    YandexMapkit._channel.invokeMethod(
+        "suggest", json.encode(_suggestArguments(text, window, type)));
+  }
+
+  /// Creates an independent suggest session, e.g. one per search field.
+  ///
+  /// Requests of a session are debounced natively by [debounce] and only the
+  /// result of the latest request is delivered to its [YandexSuggestSession.onSuggestResult].
+  YandexSuggestSession createSession({
+    Duration debounce = const Duration(milliseconds: 300),
+  }) {
+    assert(debounce != null);
+
+    return YandexSuggestSession._(this, ++_lastSessionId, debounce);
+  }
+
+  static Map<String, dynamic> _suggestArguments(
+      String text, BoundingBox window, SearchType type) {
     String stringType = "unknown";
 
     switch (type) {
@@ -68,17 +144,15 @@ class YandexSuggestController {
         stringType = "geo";
         break;
       case SearchType.Biz:
-        stringType = "Biz";
+        stringType = "biz";
         break;
     }
 
-    YandexMapkit._channel.invokeMethod(
-        "suggest",
-        json.encode({
-          "text": text,
-          "window": window.toMap(),
-          "type": stringType,
-        }));
+    return {
+      "text": text,
+      "window": window.toMap(),
+      "type": stringType,
+    };
   }
 
   static YandexSuggestController get sharedInstance {
@@ -89,3 +163,179 @@ class YandexSuggestController {
     return _sharedInstance;
   }
 }
+
+class YandexSuggestSession {
+  final YandexSuggestController _controller;
+  final int id;
+  final Duration debounce;
+
+  int _seq = 0;
+  bool _closed = false;
+  Stream<SuggestResult> _onSuggestResult;
+
+  YandexSuggestSession._(this._controller, this.id, this.debounce);
+
+  Stream<SuggestResult> get onSuggestResult {
+    if (_onSuggestResult == null) {
+      _onSuggestResult = _controller.onSuggestResult
+          .where((SuggestResult result) => result.sessionId == id);
+    }
+
+    return _onSuggestResult;
+  }
+
+  void suggest({
+    @required String text,
+    @required BoundingBox window,
+    SearchType type = SearchType.Geo,
+  }) {
+    assert(text != null);
+    assert(window != null);
+    assert(!_closed);
+
+    Map<String, dynamic> arguments =
+        YandexSuggestController._suggestArguments(text, window, type);
+
+    arguments["sessionId"] = id;
+    arguments["seq"] = ++_seq;
+    arguments["debounce"] = debounce.inMilliseconds;
+
+    YandexMapkit._channel.invokeMethod("suggest", json.encode(arguments));
+  }
+
+  void cancel() {
+    YandexMapkit._channel.invokeMethod("cancelSuggest", {"sessionId": id});
+  }
+
+  /// Cancels pending requests and releases the native session.
+  void close() {
+    _closed = true;
+    YandexMapkit._channel.invokeMethod("closeSuggestSession", {"sessionId": id});
+  }
+}
+
+/// Reverse geocoding and text search through a native request queue.
+///
+/// At most [configure]'s maxConcurrent requests are in flight, the rest
+/// wait in a queue. Identical requests in flight are sent once and
+/// successful results are cached natively, reverse geocoding results for
+/// points within about 10 meters of each other are shared. Android only.
+class YandexSearchController {
+  static YandexSearchController _sharedInstance;
+
+  static const EventChannel _resultChannel = EventChannel(
+    'yandex_mapkit_search_result',
+  );
+
+  Stream<dynamic> _onResult;
+  int _lastBatchId = 0;
+
+  YandexSearchController._internal();
+
+  static YandexSearchController get sharedInstance {
+    if (_sharedInstance == null) {
+      _sharedInstance = YandexSearchController._internal();
+    }
+
+    return _sharedInstance;
+  }
+
+  Stream<dynamic> get _results {
+    if (_onResult == null) {
+      _onResult = _resultChannel.receiveBroadcastStream();
+    }
+
+    return _onResult;
+  }
+
+  Future<void> configure({@required int maxConcurrent}) async {
+    assert(maxConcurrent != null && maxConcurrent > 0);
+
+    await YandexMapkit._channel
+        .invokeMethod('search#configure', {'maxConcurrent': maxConcurrent});
+  }
+
+  /// Finds objects at every point of [points].
+  ///
+  /// Results come as soon as each request is answered, so their order
+  /// differs from [points], see [SearchResult.index]. The stream ends after
+  /// the last one. Cancelling the subscription cancels the requests that are
+  /// not answered yet.
+  Stream<SearchResult> reverseBatch(
+    List<Point> points, {
+    int zoom,
+    SearchType type = SearchType.Geo,
+  }) {
+    int batchId = ++_lastBatchId;
+    int remaining = points.length;
+    StreamSubscription<dynamic> subscription;
+    StreamController<SearchResult> controller;
+
+    controller = StreamController<SearchResult>(
+      onListen: () {
+        subscription = _results
+            .where((dynamic event) => event['batchId'] == batchId)
+            .listen((dynamic event) {
+          controller.add(SearchResult.fromMap(event));
+
+          if (--remaining == 0) {
+            subscription.cancel();
+            controller.close();
+          }
+        });
+
+        if (remaining == 0) {
+          subscription.cancel();
+          controller.close();
+          return;
+        }
+
+        YandexMapkit._channel.invokeMethod('search#reverseBatch', {
+          'batchId': batchId,
+          'points': packPoints(points),
+          'zoom': zoom,
+          'type': _searchType(type),
+        });
+      },
+      onCancel: () {
+        if (remaining > 0) {
+          YandexMapkit._channel
+              .invokeMethod('search#cancelBatch', {'batchId': batchId});
+        }
+
+        return subscription.cancel();
+      },
+    );
+
+    return controller.stream;
+  }
+
+  /// Finds objects matching [text] in [window].
+  Future<SearchResult> byText({
+    @required String text,
+    @required BoundingBox window,
+    SearchType type = SearchType.Geo,
+  }) async {
+    assert(text != null);
+    assert(window != null);
+
+    return SearchResult.fromMap(
+        await YandexMapkit._channel.invokeMethod('search#byText', {
+      'batchId': ++_lastBatchId,
+      'text': text,
+      'window': packPoints(<Point>[window.southWest, window.northEast]),
+      'type': _searchType(type),
+    }));
+  }
+
+  static String _searchType(SearchType type) {
+    switch (type) {
+      case SearchType.Geo:
+        return 'geo';
+      case SearchType.Biz:
+        return 'biz';
+    }
+
+    return 'unknown';
+  }
+}